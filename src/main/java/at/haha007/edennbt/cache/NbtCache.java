@@ -0,0 +1,254 @@
+package at.haha007.edennbt.cache;
+
+import at.haha007.edennbt.element.*;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Cache of decoded trees, bounded by their estimated heap size instead of their number.
+ * The least recently used trees are evicted first.
+ * <br>
+ * Keys identify the source of a tree, e.g. a record of region file and chunk coordinates.
+ * Concurrent requests for a missing key share one load. A load may return null if there is no tree,
+ * null is returned to the callers and not cached. {@link #invalidate(Object)} drops the cached tree
+ * and discards the result of a load that is still running, call it whenever the source is written.
+ * <br>
+ * Cached trees are shared between all callers, they have to be copied before they are changed.
+ *
+ * @param <K> the key type
+ */
+public class NbtCache<K> {
+    private final long maxWeight;
+    private final ToLongFunction<NbtElement> weigher;
+    //access ordered, guarded by itself
+    private final LinkedHashMap<K, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<K, CompletableFuture<NbtElement>> loading = new ConcurrentHashMap<>();
+    private long weight;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxWeight the maximum estimated heap size of all cached trees in bytes
+     */
+    public NbtCache(long maxWeight) {
+        this(maxWeight, NbtCache::estimateWeight);
+    }
+
+    public NbtCache(long maxWeight, ToLongFunction<NbtElement> weigher) {
+        if (maxWeight <= 0)
+            throw new IllegalArgumentException("maxWeight must be positive");
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    /**
+     * Estimates the heap size of a tree in bytes, assuming compressed references.
+     */
+    public static long estimateWeight(NbtElement element) {
+        return switch (element) {
+            case NbtString string -> 16 + 24 + 16 + string.getValue().length();
+            case NbtByteArray array -> 16 + 16 + array.peekValue().length;
+            case NbtIntArray array -> 16 + 16 + 4L * array.peekValue().length;
+            case NbtLongArray array -> 16 + 16 + 8L * array.peekValue().length;
+            case NbtList<?> list -> {
+                long weight = 32 + 24 + 16 + 4L * list.size();
+                for (NbtElement child : list) {
+                    weight += estimateWeight(child);
+                }
+                yield weight;
+            }
+            case NbtCompound compound -> {
+                long weight = 32 + 56 + 16 + 4L * compound.size();
+                for (Map.Entry<String, NbtElement> entry : compound.getElements().entrySet()) {
+                    //map node, key string
+                    weight += 40 + 40 + entry.getKey().length() + estimateWeight(entry.getValue());
+                }
+                yield weight;
+            }
+            default -> 24;
+        };
+    }
+
+    /**
+     * @return the cached tree, null if there is none
+     */
+    public NbtElement getIfPresent(K key) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.element;
+    }
+
+    /**
+     * Returns the cached tree or loads it on the calling thread.
+     * Callers requesting the same key while it is loaded wait for that load.
+     */
+    public NbtElement get(K key, Function<? super K, ? extends NbtElement> loader) {
+        NbtElement cached = getIfPresent(key);
+        if (cached != null)
+            return cached;
+        CompletableFuture<NbtElement> future = new CompletableFuture<>();
+        CompletableFuture<NbtElement> running = loading.putIfAbsent(key, future);
+        if (running == null) {
+            try {
+                NbtElement element = loader.apply(key);
+                completed(key, future, element);
+                future.complete(element);
+            } catch (Throwable t) {
+                failed(key, future, t);
+                throw t;
+            }
+        }
+        try {
+            return (running == null ? future : running).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException r ? r : e;
+        }
+    }
+
+    /**
+     * Returns the cached tree or starts an asynchronous load, e.g. with
+     * {@link at.haha007.edennbt.parser.AsyncNbtFiles#load(java.nio.file.Path)}.
+     * Callers requesting the same key while it is loaded get the same future.
+     */
+    public CompletableFuture<NbtElement> getAsync(K key, Function<? super K, ? extends CompletableFuture<? extends NbtElement>> loader) {
+        NbtElement cached = getIfPresent(key);
+        if (cached != null)
+            return CompletableFuture.completedFuture(cached);
+        CompletableFuture<NbtElement> future = new CompletableFuture<>();
+        CompletableFuture<NbtElement> running = loading.putIfAbsent(key, future);
+        if (running != null)
+            return running;
+        try {
+            loader.apply(key).whenComplete((element, throwable) -> {
+                if (throwable != null) {
+                    failed(key, future, throwable);
+                    return;
+                }
+                //a failing weigher has to fail the future, whenComplete would swallow its exception
+                try {
+                    completed(key, future, element);
+                    future.complete(element);
+                } catch (Throwable t) {
+                    failed(key, future, t);
+                }
+            });
+        } catch (Throwable t) {
+            failed(key, future, t);
+        }
+        return future;
+    }
+
+    /**
+     * Caches a tree that was just written to its source.
+     */
+    public void put(K key, NbtElement element) {
+        Objects.requireNonNull(element, "element");
+        long elementWeight = weigher.applyAsLong(element);
+        loading.remove(key);
+        synchronized (entries) {
+            store(key, element, elementWeight);
+        }
+    }
+
+    /**
+     * Drops the cached tree of key, a load of key that is still running will not be cached.
+     */
+    public void invalidate(K key) {
+        loading.remove(key);
+        synchronized (entries) {
+            Entry entry = entries.remove(key);
+            if (entry != null)
+                weight -= entry.weight;
+        }
+    }
+
+    public void invalidateAll() {
+        loading.clear();
+        synchronized (entries) {
+            entries.clear();
+            weight = 0;
+        }
+    }
+
+    public Stats getStats() {
+        synchronized (entries) {
+            return new Stats(hits.sum(), misses.sum(), evictions.sum(), entries.size(), weight);
+        }
+    }
+
+    /**
+     * Caches a loaded tree. The tree is weighed before the lock is taken, weighing a large tree must not
+     * block other callers.
+     */
+    private void completed(K key, CompletableFuture<NbtElement> future, NbtElement element) {
+        if (element == null) {
+            loading.remove(key, future);
+            return;
+        }
+        long elementWeight = weigher.applyAsLong(element);
+        //only cache if nobody invalidated the key meanwhile
+        synchronized (entries) {
+            if (loading.remove(key, future))
+                store(key, element, elementWeight);
+        }
+    }
+
+    private void failed(K key, CompletableFuture<NbtElement> future, Throwable throwable) {
+        loading.remove(key, future);
+        future.completeExceptionally(throwable);
+    }
+
+    //guarded by entries
+    private void store(K key, NbtElement element, long elementWeight) {
+        Entry previous = entries.remove(key);
+        if (previous != null)
+            weight -= previous.weight;
+        if (elementWeight > maxWeight) {
+            evictions.increment();
+            return;
+        }
+        entries.put(key, new Entry(element, elementWeight));
+        weight += elementWeight;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (weight > maxWeight) {
+            weight -= iterator.next().weight;
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * @param hits      requests answered from the cache
+     * @param misses    requests that needed a load or returned null
+     * @param evictions trees dropped because the cache was full
+     * @param size      the number of cached trees
+     * @param weight    the estimated heap size of the cached trees
+     */
+    public record Stats(long hits, long misses, long evictions, int size, long weight) {
+        public double hitRate() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+    }
+
+    private record Entry(NbtElement element, long weight) {
+    }
+}
@@ -0,0 +1,59 @@
+package at.haha007.edennbt.codec;
+
+import at.haha007.edennbt.element.ElementType;
+import at.haha007.edennbt.parser.IOStreamParser;
+import lombok.SneakyThrows;
+
+import java.io.*;
+
+/**
+ * Reads and writes values of type T directly from and to binary nbt, without building {@link at.haha007.edennbt.element.NbtElement}s.
+ * The root methods use the same layout as {@link IOStreamParser}: type, empty name, payload.
+ *
+ * @param <T> the mapped java type
+ */
+public interface NbtCodec<T> {
+    /**
+     * @return the tag type the payload is written as
+     */
+    ElementType getType();
+
+    /**
+     * Writes the payload of value, without type and name.
+     */
+    void write(DataOutput out, T value) throws IOException;
+
+    /**
+     * Reads a payload written by {@link #write(DataOutput, Object)}.
+     */
+    T read(DataInput in) throws IOException;
+
+    default void writeRoot(OutputStream os, T value) throws IOException {
+        DataOutputStream out = new DataOutputStream(os);
+        out.writeByte(getType().getId());
+        out.writeShort(0);
+        write(out, value);
+        out.flush();
+    }
+
+    default T readRoot(InputStream is) throws IOException {
+        DataInputStream in = new DataInputStream(is);
+        ElementType type = ElementType.byId(in.readByte());
+        if (type != getType())
+            throw new IllegalArgumentException("Expected " + getType() + " but found " + type);
+        in.skipNBytes(in.readUnsignedShort()); //skip name
+        return read(in);
+    }
+
+    @SneakyThrows
+    default byte[] encode(T value) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        writeRoot(bos, value);
+        return bos.toByteArray();
+    }
+
+    @SneakyThrows
+    default T decode(byte[] bytes) {
+        return readRoot(new ByteArrayInputStream(bytes));
+    }
+}
@@ -0,0 +1,305 @@
+package at.haha007.edennbt.codec;
+
+import at.haha007.edennbt.element.ElementType;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves and caches {@link NbtCodec}s for java types.
+ * <br>
+ * Supported: primitives and their wrappers (boolean as byte), String, enums (by name),
+ * byte[], int[], long[], List and Set of supported types, Map with String keys,
+ * records and classes annotated with {@link NbtSerializable}.
+ * Fields and record components of type Optional are omitted when empty, null values are always omitted.
+ */
+public final class NbtCodecs {
+    public static final NbtCodec<Byte> BYTE = new SimpleCodec<>(ElementType.BYTE,
+            (out, value) -> out.writeByte(value), DataInput::readByte);
+    public static final NbtCodec<Boolean> BOOLEAN = new SimpleCodec<>(ElementType.BYTE,
+            DataOutput::writeBoolean, DataInput::readBoolean);
+    public static final NbtCodec<Short> SHORT = new SimpleCodec<>(ElementType.SHORT,
+            (out, value) -> out.writeShort(value), DataInput::readShort);
+    public static final NbtCodec<Integer> INT = new SimpleCodec<>(ElementType.INT,
+            DataOutput::writeInt, DataInput::readInt);
+    public static final NbtCodec<Long> LONG = new SimpleCodec<>(ElementType.LONG,
+            DataOutput::writeLong, DataInput::readLong);
+    public static final NbtCodec<Float> FLOAT = new SimpleCodec<>(ElementType.FLOAT,
+            DataOutput::writeFloat, DataInput::readFloat);
+    public static final NbtCodec<Double> DOUBLE = new SimpleCodec<>(ElementType.DOUBLE,
+            DataOutput::writeDouble, DataInput::readDouble);
+    public static final NbtCodec<String> STRING = new SimpleCodec<>(ElementType.STRING,
+            DataOutput::writeUTF, DataInput::readUTF);
+    public static final NbtCodec<byte[]> BYTE_ARRAY = new SimpleCodec<>(ElementType.BYTE_ARRAY,
+            (out, value) -> {
+                out.writeInt(value.length);
+                out.write(value);
+            },
+            in -> {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                return bytes;
+            });
+    public static final NbtCodec<int[]> INT_ARRAY = new SimpleCodec<>(ElementType.INT_ARRAY,
+            (out, value) -> {
+                out.writeInt(value.length);
+                for (int i : value) {
+                    out.writeInt(i);
+                }
+            },
+            in -> {
+                int[] ints = new int[in.readInt()];
+                for (int i = 0; i < ints.length; i++) {
+                    ints[i] = in.readInt();
+                }
+                return ints;
+            });
+    public static final NbtCodec<long[]> LONG_ARRAY = new SimpleCodec<>(ElementType.LONG_ARRAY,
+            (out, value) -> {
+                out.writeInt(value.length);
+                for (long l : value) {
+                    out.writeLong(l);
+                }
+            },
+            in -> {
+                long[] longs = new long[in.readInt()];
+                for (int i = 0; i < longs.length; i++) {
+                    longs[i] = in.readLong();
+                }
+                return longs;
+            });
+
+    private static final Map<Type, NbtCodec<?>> CODECS = new ConcurrentHashMap<>();
+
+    static {
+        CODECS.put(byte.class, BYTE);
+        CODECS.put(Byte.class, BYTE);
+        CODECS.put(boolean.class, BOOLEAN);
+        CODECS.put(Boolean.class, BOOLEAN);
+        CODECS.put(short.class, SHORT);
+        CODECS.put(Short.class, SHORT);
+        CODECS.put(int.class, INT);
+        CODECS.put(Integer.class, INT);
+        CODECS.put(long.class, LONG);
+        CODECS.put(Long.class, LONG);
+        CODECS.put(float.class, FLOAT);
+        CODECS.put(Float.class, FLOAT);
+        CODECS.put(double.class, DOUBLE);
+        CODECS.put(Double.class, DOUBLE);
+        CODECS.put(String.class, STRING);
+        CODECS.put(byte[].class, BYTE_ARRAY);
+        CODECS.put(int[].class, INT_ARRAY);
+        CODECS.put(long[].class, LONG_ARRAY);
+    }
+
+    private NbtCodecs() {
+    }
+
+    /**
+     * Registers a custom codec, replacing the one that would be resolved otherwise.
+     */
+    public static <T> void register(Class<T> type, NbtCodec<T> codec) {
+        CODECS.put(type, codec);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> NbtCodec<T> of(Class<T> type) {
+        return (NbtCodec<T>) of((Type) type);
+    }
+
+    /**
+     * Resolves the codec for a possibly parameterized type like {@code List<String>}.
+     *
+     * @throws IllegalArgumentException if the type cannot be mapped
+     */
+    public static NbtCodec<?> of(Type type) {
+        NbtCodec<?> codec = CODECS.get(type);
+        if (codec != null)
+            return codec;
+        //object codecs resolve their properties lazily, so recursive types don't recurse here
+        codec = create(type);
+        NbtCodec<?> previous = CODECS.putIfAbsent(type, codec);
+        return previous == null ? codec : previous;
+    }
+
+    /**
+     * Skips the payload of a tag of the given type.
+     */
+    public static void skip(DataInput in, ElementType type) throws IOException {
+        switch (type) {
+            case END -> throw new IllegalArgumentException("Unexpected END tag");
+            case BYTE -> skipFully(in, 1);
+            case SHORT -> skipFully(in, 2);
+            case INT, FLOAT -> skipFully(in, 4);
+            case LONG, DOUBLE -> skipFully(in, 8);
+            case BYTE_ARRAY -> skipFully(in, in.readInt());
+            case STRING -> skipFully(in, in.readUnsignedShort());
+            case LIST -> {
+                ElementType listType = ElementType.byId(in.readByte());
+                int size = in.readInt();
+                for (int i = 0; i < size; i++) {
+                    skip(in, listType);
+                }
+            }
+            case COMPOUND -> {
+                ElementType subType = ElementType.byId(in.readByte());
+                while (subType != ElementType.END) {
+                    skipFully(in, in.readUnsignedShort());
+                    skip(in, subType);
+                    subType = ElementType.byId(in.readByte());
+                }
+            }
+            case INT_ARRAY -> skipFully(in, in.readInt() * 4L);
+            case LONG_ARRAY -> skipFully(in, in.readInt() * 8L);
+        }
+    }
+
+    private static void skipFully(DataInput in, long bytes) throws IOException {
+        while (bytes > 0) {
+            int skipped = in.skipBytes((int) Math.min(bytes, Integer.MAX_VALUE));
+            if (skipped <= 0) {
+                //skipBytes may skip less without reaching the end, readByte throws if the end is reached
+                in.readByte();
+                skipped = 1;
+            }
+            bytes -= skipped;
+        }
+    }
+
+    private static NbtCodec<?> create(Type type) {
+        if (type instanceof Class<?> clazz) {
+            if (clazz.isEnum()) {
+                @SuppressWarnings({"unchecked", "rawtypes"})
+                NbtCodec<?> codec = new EnumCodec(clazz);
+                return codec;
+            }
+            if (clazz.isRecord() || clazz.isAnnotationPresent(NbtSerializable.class)) {
+                return new ObjectCodec<>(clazz);
+            }
+        }
+        if (type instanceof ParameterizedType parameterized && parameterized.getRawType() instanceof Class<?> raw) {
+            Type[] arguments = parameterized.getActualTypeArguments();
+            if (raw == List.class || raw == Collection.class || raw == Iterable.class) {
+                return new CollectionCodec<>(of(arguments[0]), ArrayList::new);
+            }
+            if (raw == Set.class) {
+                return new CollectionCodec<>(of(arguments[0]), LinkedHashSet::new);
+            }
+            if (raw == Map.class && arguments[0] == String.class) {
+                return new MapCodec<>(of(arguments[1]));
+            }
+        }
+        throw new IllegalArgumentException("No nbt codec for " + type.getTypeName());
+    }
+
+    @FunctionalInterface
+    interface Writer<T> {
+        void write(DataOutput out, T value) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface Reader<T> {
+        T read(DataInput in) throws IOException;
+    }
+
+    private record SimpleCodec<T>(ElementType getType, Writer<T> writer, Reader<T> reader) implements NbtCodec<T> {
+        @Override
+        public void write(DataOutput out, T value) throws IOException {
+            writer.write(out, value);
+        }
+
+        @Override
+        public T read(DataInput in) throws IOException {
+            return reader.read(in);
+        }
+    }
+
+    private record EnumCodec<E extends Enum<E>>(Class<E> enumClass) implements NbtCodec<E> {
+        @Override
+        public ElementType getType() {
+            return ElementType.STRING;
+        }
+
+        @Override
+        public void write(DataOutput out, E value) throws IOException {
+            out.writeUTF(value.name());
+        }
+
+        @Override
+        public E read(DataInput in) throws IOException {
+            return Enum.valueOf(enumClass, in.readUTF());
+        }
+    }
+
+    private record CollectionCodec<E, C extends Collection<E>>(NbtCodec<E> elementCodec,
+                                                               java.util.function.IntFunction<C> factory)
+            implements NbtCodec<C> {
+        @Override
+        public ElementType getType() {
+            return ElementType.LIST;
+        }
+
+        @Override
+        public void write(DataOutput out, C value) throws IOException {
+            out.writeByte((value.isEmpty() ? ElementType.END : elementCodec.getType()).getId());
+            out.writeInt(value.size());
+            for (E e : value) {
+                if (e == null)
+                    throw new NullPointerException("Nbt lists can not contain null");
+                elementCodec.write(out, e);
+            }
+        }
+
+        @Override
+        public C read(DataInput in) throws IOException {
+            ElementType listType = ElementType.byId(in.readByte());
+            int size = in.readInt();
+            if (size > 0 && listType != elementCodec.getType())
+                throw new IllegalArgumentException("Expected list of " + elementCodec.getType() + " but found " + listType);
+            C collection = factory.apply(size);
+            for (int i = 0; i < size; i++) {
+                collection.add(elementCodec.read(in));
+            }
+            return collection;
+        }
+    }
+
+    private record MapCodec<V>(NbtCodec<V> valueCodec) implements NbtCodec<Map<String, V>> {
+        @Override
+        public ElementType getType() {
+            return ElementType.COMPOUND;
+        }
+
+        @Override
+        public void write(DataOutput out, Map<String, V> value) throws IOException {
+            byte header = valueCodec.getType().getId();
+            for (Map.Entry<String, V> entry : value.entrySet()) {
+                if (entry.getValue() == null)
+                    continue;
+                out.writeByte(header);
+                out.writeUTF(entry.getKey());
+                valueCodec.write(out, entry.getValue());
+            }
+            out.writeByte(0);
+        }
+
+        @Override
+        public Map<String, V> read(DataInput in) throws IOException {
+            Map<String, V> map = new LinkedHashMap<>();
+            ElementType subType = ElementType.byId(in.readByte());
+            while (subType != ElementType.END) {
+                String key = in.readUTF();
+                if (subType != valueCodec.getType())
+                    throw new IllegalArgumentException("Expected " + valueCodec.getType() + " for key " + key + " but found " + subType);
+                map.put(key, valueCodec.read(in));
+                subType = ElementType.byId(in.readByte());
+            }
+            return map;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package at.haha007.edennbt.codec;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a plain class as mappable by {@link NbtCodecs}.
+ * All non-static, non-transient, non-final fields are mapped, the class needs a no-args constructor.
+ * Records do not need this annotation.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface NbtSerializable {
+}
@@ -0,0 +1,222 @@
+package at.haha007.edennbt.codec;
+
+import at.haha007.edennbt.element.ElementType;
+import lombok.SneakyThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.*;
+import java.util.*;
+
+/**
+ * Maps records and {@link NbtSerializable} classes to compounds.
+ * Accessors are resolved once into {@link MethodHandle}s on first use.
+ */
+class ObjectCodec<T> implements NbtCodec<T> {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final Class<T> type;
+    private volatile Mapping mapping;
+
+    ObjectCodec(Class<T> type) {
+        this.type = type;
+    }
+
+    @Override
+    public ElementType getType() {
+        return ElementType.COMPOUND;
+    }
+
+    @Override
+    public void write(DataOutput out, T value) throws IOException {
+        for (Property property : mapping().properties) {
+            Object v = property.get(value);
+            if (v == null)
+                continue;
+            if (property.optional) {
+                Optional<?> optional = (Optional<?>) v;
+                if (optional.isEmpty())
+                    continue;
+                v = optional.get();
+            }
+            out.write(property.header);
+            property.codec.write(out, v);
+        }
+        out.writeByte(0);
+    }
+
+    @Override
+    public T read(DataInput in) throws IOException {
+        Mapping mapping = mapping();
+        Object[] values = mapping.defaults.clone();
+        ElementType subType = ElementType.byId(in.readByte());
+        while (subType != ElementType.END) {
+            String key = in.readUTF();
+            Property property = mapping.byName.get(key);
+            if (property == null) {
+                NbtCodecs.skip(in, subType);
+            } else {
+                if (subType != property.codec.getType())
+                    throw new IllegalArgumentException("Expected " + property.codec.getType() + " for key "
+                            + key + " in " + type.getName() + " but found " + subType);
+                Object value = property.codec.read(in);
+                values[property.index] = property.optional ? Optional.of(value) : value;
+            }
+            subType = ElementType.byId(in.readByte());
+        }
+        return mapping.create(values);
+    }
+
+    private Mapping mapping() {
+        Mapping mapping = this.mapping;
+        if (mapping == null) {
+            synchronized (this) {
+                mapping = this.mapping;
+                if (mapping == null) {
+                    mapping = type.isRecord() ? recordMapping() : classMapping();
+                    this.mapping = mapping;
+                }
+            }
+        }
+        return mapping;
+    }
+
+    @SneakyThrows
+    private Mapping recordMapping() {
+        RecordComponent[] components = type.getRecordComponents();
+        Property[] properties = new Property[components.length];
+        Class<?>[] parameterTypes = new Class<?>[components.length];
+        for (int i = 0; i < components.length; i++) {
+            RecordComponent component = components[i];
+            Method accessor = component.getAccessor();
+            accessor.setAccessible(true);
+            NbtName name = component.getAnnotation(NbtName.class);
+            properties[i] = property(name == null ? component.getName() : name.value(), component.getGenericType(), i,
+                    LOOKUP.unreflect(accessor).asType(GETTER), null);
+            parameterTypes[i] = component.getType();
+        }
+        Constructor<T> constructor = type.getDeclaredConstructor(parameterTypes);
+        constructor.setAccessible(true);
+        MethodHandle factory = LOOKUP.unreflectConstructor(constructor)
+                .asSpreader(Object[].class, components.length)
+                .asType(MethodType.methodType(Object.class, Object[].class));
+        return new Mapping(properties, factory, null);
+    }
+
+    @SneakyThrows
+    private Mapping classMapping() {
+        List<Field> fields = new ArrayList<>();
+        for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+            List<Field> declared = new ArrayList<>();
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || Modifier.isFinal(modifiers)
+                        || field.isSynthetic())
+                    continue;
+                declared.add(field);
+            }
+            //superclass fields first
+            fields.addAll(0, declared);
+        }
+        Property[] properties = new Property[fields.size()];
+        for (int i = 0; i < properties.length; i++) {
+            Field field = fields.get(i);
+            field.setAccessible(true);
+            NbtName name = field.getAnnotation(NbtName.class);
+            properties[i] = property(name == null ? field.getName() : name.value(), field.getGenericType(), i,
+                    LOOKUP.unreflectGetter(field).asType(GETTER), LOOKUP.unreflectSetter(field).asType(SETTER));
+        }
+        Constructor<T> constructor;
+        try {
+            constructor = type.getDeclaredConstructor();
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException(type.getName() + " needs a no-args constructor to be mapped", e);
+        }
+        constructor.setAccessible(true);
+        MethodHandle factory = LOOKUP.unreflectConstructor(constructor).asType(MethodType.methodType(Object.class));
+        return new Mapping(properties, null, factory);
+    }
+
+    private static Property property(String name, Type genericType, int index, MethodHandle getter, MethodHandle setter)
+            throws IOException {
+        boolean optional = false;
+        if (genericType instanceof ParameterizedType parameterized && parameterized.getRawType() == Optional.class) {
+            optional = true;
+            genericType = parameterized.getActualTypeArguments()[0];
+        }
+        @SuppressWarnings("unchecked")
+        NbtCodec<Object> codec = (NbtCodec<Object>) NbtCodecs.of(genericType);
+
+        //type and name are the same for every write, encode them once
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bos);
+        out.writeByte(codec.getType().getId());
+        out.writeUTF(name);
+
+        Object defaultValue = null;
+        if (optional) {
+            defaultValue = Optional.empty();
+        } else if (genericType instanceof Class<?> clazz && clazz.isPrimitive()) {
+            defaultValue = Array.get(Array.newInstance(clazz, 1), 0);
+        }
+        return new Property(name, index, codec, optional, bos.toByteArray(), getter, setter, defaultValue);
+    }
+
+    private record Property(String name, int index, NbtCodec<Object> codec, boolean optional, byte[] header,
+                            MethodHandle getter, MethodHandle setter, Object defaultValue) {
+        @SneakyThrows
+        Object get(Object instance) {
+            return (Object) getter.invokeExact(instance);
+        }
+
+        @SneakyThrows
+        void set(Object instance, Object value) {
+            setter.invokeExact(instance, value);
+        }
+    }
+
+    private static final class Mapping {
+        private final Property[] properties;
+        private final Map<String, Property> byName = new HashMap<>();
+        private final Object[] defaults;
+        //records are created from all values at once, plain classes are created first and filled after
+        private final MethodHandle recordFactory;
+        private final MethodHandle classFactory;
+
+        private Mapping(Property[] properties, MethodHandle recordFactory, MethodHandle classFactory) {
+            this.properties = properties;
+            this.recordFactory = recordFactory;
+            this.classFactory = classFactory;
+            this.defaults = new Object[properties.length];
+            for (Property property : properties) {
+                if (byName.put(property.name, property) != null)
+                    throw new IllegalArgumentException("Duplicate nbt key: " + property.name);
+                //plain classes keep their field initializers for missing keys
+                if (recordFactory != null)
+                    defaults[property.index] = property.defaultValue;
+            }
+        }
+
+        @SneakyThrows
+        @SuppressWarnings("unchecked")
+        private <T> T create(Object[] values) {
+            if (recordFactory != null)
+                return (T) (Object) recordFactory.invokeExact(values);
+            Object instance = (Object) classFactory.invokeExact();
+            for (Property property : properties) {
+                Object value = values[property.index];
+                if (value != null)
+                    property.set(instance, value);
+            }
+            return (T) instance;
+        }
+    }
+}
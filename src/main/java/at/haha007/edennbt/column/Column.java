@@ -0,0 +1,293 @@
+package at.haha007.edennbt.column;
+
+import at.haha007.edennbt.element.*;
+import at.haha007.edennbt.parser.NbtCursor;
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Values of one key of every compound in a list, stored in a primitive array.
+ * Rows where the key is missing or has an incompatible type are null.
+ */
+public abstract sealed class Column permits Column.IntColumn, Column.LongColumn, Column.DoubleColumn, Column.StringColumn {
+    @Getter
+    private final String key;
+    private final int size;
+    private final BitSet present;
+
+    private Column(String key, int size) {
+        this.key = key;
+        this.size = size;
+        this.present = new BitSet(size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isNull(int row) {
+        return !present.get(row);
+    }
+
+    public int nullCount() {
+        return size - present.cardinality();
+    }
+
+    /**
+     * @return a copy of the mask of non-null rows
+     */
+    public BitSet getPresent() {
+        return (BitSet) present.clone();
+    }
+
+    /**
+     * Stores the value of row from a tree element.
+     */
+    void set(int row, NbtElement element) {
+        if (accept(row, element))
+            present.set(row);
+    }
+
+    /**
+     * Stores the value of row from the payload at the cursor position, the cursor position is undefined afterwards.
+     */
+    void set(int row, ElementType type, NbtCursor cursor) {
+        if (accept(row, type, cursor))
+            present.set(row);
+    }
+
+    abstract boolean accept(int row, NbtElement element);
+
+    abstract boolean accept(int row, ElementType type, NbtCursor cursor);
+
+    void finish() {
+    }
+
+    private static boolean isIntegral(ElementType type) {
+        return type == ElementType.BYTE || type == ElementType.SHORT || type == ElementType.INT || type == ElementType.LONG;
+    }
+
+    private static long readIntegral(ElementType type, NbtCursor cursor) {
+        return switch (type) {
+            case BYTE -> cursor.readByte();
+            case SHORT -> cursor.readShort();
+            case INT -> cursor.readInt();
+            case LONG -> cursor.readLong();
+            default -> throw new IllegalArgumentException("Not integral: " + type);
+        };
+    }
+
+    /**
+     * Byte, short and int values.
+     */
+    public static final class IntColumn extends Column {
+        private final int[] values;
+
+        IntColumn(String key, int size) {
+            super(key, size);
+            values = new int[size];
+        }
+
+        public int get(int row) {
+            return values[row];
+        }
+
+        /**
+         * @return the backing array, null rows are 0
+         */
+        public int[] getValues() {
+            return values;
+        }
+
+        @Override
+        boolean accept(int row, NbtElement element) {
+            switch (element) {
+                case NbtByte b -> values[row] = b.getValue();
+                case NbtShort s -> values[row] = s.getValue();
+                case NbtInt i -> values[row] = i.getValue();
+                default -> {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        boolean accept(int row, ElementType type, NbtCursor cursor) {
+            if (!isIntegral(type) || type == ElementType.LONG)
+                return false;
+            values[row] = (int) readIntegral(type, cursor);
+            return true;
+        }
+    }
+
+    /**
+     * Byte, short, int and long values.
+     */
+    public static final class LongColumn extends Column {
+        private final long[] values;
+
+        LongColumn(String key, int size) {
+            super(key, size);
+            values = new long[size];
+        }
+
+        public long get(int row) {
+            return values[row];
+        }
+
+        /**
+         * @return the backing array, null rows are 0
+         */
+        public long[] getValues() {
+            return values;
+        }
+
+        @Override
+        boolean accept(int row, NbtElement element) {
+            switch (element) {
+                case NbtByte b -> values[row] = b.getValue();
+                case NbtShort s -> values[row] = s.getValue();
+                case NbtInt i -> values[row] = i.getValue();
+                case NbtLong l -> values[row] = l.getValue();
+                default -> {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        boolean accept(int row, ElementType type, NbtCursor cursor) {
+            if (!isIntegral(type))
+                return false;
+            values[row] = readIntegral(type, cursor);
+            return true;
+        }
+    }
+
+    /**
+     * Values of all numeric types.
+     */
+    public static final class DoubleColumn extends Column {
+        private final double[] values;
+
+        DoubleColumn(String key, int size) {
+            super(key, size);
+            values = new double[size];
+        }
+
+        public double get(int row) {
+            return values[row];
+        }
+
+        /**
+         * @return the backing array, null rows are 0
+         */
+        public double[] getValues() {
+            return values;
+        }
+
+        @Override
+        boolean accept(int row, NbtElement element) {
+            switch (element) {
+                case NbtByte b -> values[row] = b.getValue();
+                case NbtShort s -> values[row] = s.getValue();
+                case NbtInt i -> values[row] = i.getValue();
+                case NbtLong l -> values[row] = l.getValue();
+                case NbtFloat f -> values[row] = f.getValue();
+                case NbtDouble d -> values[row] = d.getValue();
+                default -> {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        boolean accept(int row, ElementType type, NbtCursor cursor) {
+            switch (type) {
+                case FLOAT -> values[row] = cursor.readFloat();
+                case DOUBLE -> values[row] = cursor.readDouble();
+                default -> {
+                    if (!isIntegral(type))
+                        return false;
+                    values[row] = readIntegral(type, cursor);
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * String values, dictionary encoded: every distinct string is stored once and rows hold its index.
+     */
+    public static final class StringColumn extends Column {
+        private final int[] codes;
+        private Map<String, Integer> lookup = new HashMap<>();
+        private String[] dictionary = new String[16];
+
+        StringColumn(String key, int size) {
+            super(key, size);
+            codes = new int[size];
+            Arrays.fill(codes, -1);
+        }
+
+        public String get(int row) {
+            int code = codes[row];
+            return code < 0 ? null : dictionary[code];
+        }
+
+        /**
+         * @return the dictionary index of every row, -1 for null rows
+         */
+        public int[] getCodes() {
+            return codes;
+        }
+
+        /**
+         * @return the distinct strings in order of first occurrence
+         */
+        public String[] getDictionary() {
+            return dictionary;
+        }
+
+        @Override
+        boolean accept(int row, NbtElement element) {
+            if (!(element instanceof NbtString string))
+                return false;
+            codes[row] = code(string.getValue());
+            return true;
+        }
+
+        @Override
+        boolean accept(int row, ElementType type, NbtCursor cursor) {
+            if (type != ElementType.STRING)
+                return false;
+            codes[row] = code(cursor.readString());
+            return true;
+        }
+
+        private int code(String value) {
+            Integer code = lookup.get(value);
+            if (code != null)
+                return code;
+            int next = lookup.size();
+            if (next == dictionary.length)
+                dictionary = Arrays.copyOf(dictionary, next * 2);
+            dictionary[next] = value;
+            lookup.put(value, next);
+            return next;
+        }
+
+        @Override
+        void finish() {
+            dictionary = Arrays.copyOf(dictionary, lookup.size());
+            lookup = null;
+        }
+    }
+}
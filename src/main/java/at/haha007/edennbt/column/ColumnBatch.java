@@ -0,0 +1,52 @@
+package at.haha007.edennbt.column;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Columns extracted from the same list of compounds, row i of every column belongs to the i-th compound.
+ */
+public final class ColumnBatch {
+    private final int size;
+    private final Map<String, Column> columns;
+
+    ColumnBatch(int size, Map<String, Column> columns) {
+        this.size = size;
+        this.columns = Collections.unmodifiableMap(columns);
+    }
+
+    /**
+     * @return the number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    public Collection<Column> getColumns() {
+        return columns.values();
+    }
+
+    public Column getColumn(String key) {
+        Column column = columns.get(key);
+        if (column == null)
+            throw new IllegalArgumentException("No column " + key);
+        return column;
+    }
+
+    public Column.IntColumn getInts(String key) {
+        return (Column.IntColumn) getColumn(key);
+    }
+
+    public Column.LongColumn getLongs(String key) {
+        return (Column.LongColumn) getColumn(key);
+    }
+
+    public Column.DoubleColumn getDoubles(String key) {
+        return (Column.DoubleColumn) getColumn(key);
+    }
+
+    public Column.StringColumn getStrings(String key) {
+        return (Column.StringColumn) getColumn(key);
+    }
+}
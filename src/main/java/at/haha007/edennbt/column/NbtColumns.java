@@ -0,0 +1,179 @@
+package at.haha007.edennbt.column;
+
+import at.haha007.edennbt.element.ElementType;
+import at.haha007.edennbt.element.NbtCompound;
+import at.haha007.edennbt.element.NbtElement;
+import at.haha007.edennbt.element.NbtList;
+import at.haha007.edennbt.parser.ModifiedUtf8;
+import at.haha007.edennbt.parser.NbtCursor;
+import at.haha007.edennbt.path.NbtLocation;
+import at.haha007.edennbt.path.NbtPath;
+
+import java.util.*;
+import java.util.function.BiFunction;
+
+/**
+ * Extracts fields of a list of compounds into primitive column arrays, one row per compound.
+ * <br>
+ * From binary only the selected keys are decoded, straight into the columns, all other entries are skipped.
+ *
+ * <pre>{@code
+ * NbtColumns columns = NbtColumns.builder().strings("id").ints("Count").build();
+ * ColumnBatch items = columns.extract(bytes, NbtPath.compile("Inventory"));
+ * int[] counts = items.getInts("Count").getValues();
+ * }</pre>
+ */
+public final class NbtColumns {
+    private final String[] keys;
+    private final byte[][] encodedKeys;
+    private final List<BiFunction<String, Integer, Column>> factories;
+
+    private NbtColumns(List<String> keys, List<BiFunction<String, Integer, Column>> factories) {
+        this.keys = keys.toArray(String[]::new);
+        this.encodedKeys = new byte[this.keys.length][];
+        for (int i = 0; i < this.keys.length; i++) {
+            encodedKeys[i] = ModifiedUtf8.encode(this.keys[i]);
+        }
+        this.factories = List.copyOf(factories);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @param list a list of compounds, other elements become rows of nulls
+     */
+    public ColumnBatch extract(NbtList<?> list) {
+        Column[] columns = create(list.size());
+        for (int row = 0; row < list.size(); row++) {
+            if (!(list.get(row) instanceof NbtCompound compound))
+                continue;
+            for (Column column : columns) {
+                NbtElement value = compound.get(column.getKey());
+                if (value != null)
+                    column.set(row, value);
+            }
+        }
+        return finish(list.size(), columns);
+    }
+
+    /**
+     * Extracts the compounds of all lists the path matches in encoded binary nbt, in encoded order.
+     *
+     * @throws IllegalArgumentException if the path matches something else than lists
+     */
+    public ColumnBatch extract(byte[] encoded, NbtPath path) {
+        List<NbtLocation> lists = path.locate(encoded);
+        int size = 0;
+        for (NbtLocation location : lists) {
+            if (location.type() != ElementType.LIST)
+                throw new IllegalArgumentException("Expected LIST but found " + location.type());
+            size = Math.addExact(size, new NbtCursor(encoded, location.payload() + 1).readInt());
+        }
+        Column[] columns = create(size);
+        int row = 0;
+        for (NbtLocation location : lists) {
+            NbtCursor cursor = new NbtCursor(encoded, location.payload());
+            ElementType elementType = cursor.readType();
+            int length = cursor.readInt();
+            if (elementType != ElementType.COMPOUND) {
+                row += length;
+                continue;
+            }
+            for (int i = 0; i < length; i++) {
+                readRow(cursor, columns, row++);
+            }
+        }
+        return finish(size, columns);
+    }
+
+    /**
+     * Reads the compound payload at the cursor position and moves past it.
+     */
+    private void readRow(NbtCursor cursor, Column[] columns, int row) {
+        byte[] data = cursor.getData();
+        ElementType type = cursor.readType();
+        while (type != ElementType.END) {
+            int length = cursor.readUnsignedShort();
+            int keyStart = cursor.getPosition();
+            int payload = keyStart + length;
+            for (int i = 0; i < columns.length; i++) {
+                byte[] key = encodedKeys[i];
+                if (Arrays.equals(data, keyStart, payload, key, 0, key.length)) {
+                    cursor.setPosition(payload);
+                    columns[i].set(row, type, cursor);
+                    break;
+                }
+            }
+            cursor.setPosition(payload);
+            cursor.skip(type);
+            type = cursor.readType();
+        }
+    }
+
+    private Column[] create(int size) {
+        Column[] columns = new Column[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            columns[i] = factories.get(i).apply(keys[i], size);
+        }
+        return columns;
+    }
+
+    private static ColumnBatch finish(int size, Column[] columns) {
+        Map<String, Column> map = new LinkedHashMap<>();
+        for (Column column : columns) {
+            column.finish();
+            map.put(column.getKey(), column);
+        }
+        return new ColumnBatch(size, map);
+    }
+
+    public static final class Builder {
+        private final List<String> keys = new ArrayList<>();
+        private final List<BiFunction<String, Integer, Column>> factories = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Adds a column of byte, short and int values.
+         */
+        public Builder ints(String key) {
+            return add(key, Column.IntColumn::new);
+        }
+
+        /**
+         * Adds a column of integral values.
+         */
+        public Builder longs(String key) {
+            return add(key, Column.LongColumn::new);
+        }
+
+        /**
+         * Adds a column of numeric values.
+         */
+        public Builder doubles(String key) {
+            return add(key, Column.DoubleColumn::new);
+        }
+
+        /**
+         * Adds a dictionary encoded column of string values.
+         */
+        public Builder strings(String key) {
+            return add(key, Column.StringColumn::new);
+        }
+
+        public NbtColumns build() {
+            return new NbtColumns(keys, factories);
+        }
+
+        private Builder add(String key, BiFunction<String, Integer, Column> factory) {
+            if (keys.contains(key))
+                throw new IllegalArgumentException("Duplicate column " + key);
+            keys.add(key);
+            factories.add(factory);
+            return this;
+        }
+    }
+}
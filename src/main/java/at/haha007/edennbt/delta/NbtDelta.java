@@ -0,0 +1,411 @@
+package at.haha007.edennbt.delta;
+
+import at.haha007.edennbt.element.*;
+import at.haha007.edennbt.parser.BinaryCodecs;
+import at.haha007.edennbt.parser.NbtBinaryReader;
+import at.haha007.edennbt.parser.NbtBinaryWriter;
+import at.haha007.edennbt.parser.NbtOutputBuffer;
+import lombok.SneakyThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Binary deltas between two trees, for sending only the changes of replicated state.
+ * <br>
+ * {@link #diff(NbtElement, NbtElement)} walks both trees once and records which compound entries were put or removed,
+ * which list elements were set, appended or cut off and which ranges of arrays changed.
+ * Unchanged subtrees cost nothing, the delta of equal trees is a single byte.
+ * {@link #apply(NbtElement, byte[])} changes the base tree in place, so change tracking sees every change.
+ *
+ * <pre>{@code
+ * byte[] delta = NbtDelta.diff(lastSent, current);
+ * lastSent = current.deepCopy();
+ * ...
+ * replica = NbtDelta.apply(replica, delta);
+ * }</pre>
+ */
+public final class NbtDelta {
+    //root
+    private static final int UNCHANGED = 0;
+    private static final int REPLACE = 1;
+    private static final int PATCH = 2;
+    //operations inside a container, END closes it
+    private static final int END = 0;
+    private static final int PUT = 1;
+    private static final int REMOVE = 2;
+    private static final int NESTED = 3;
+    private static final int RESIZE = 4;
+    private static final int RANGE = 5;
+
+    //unchanged array elements between two changed ranges that are sent anyway to save a range header
+    private static final int MERGE_GAP = 4;
+
+    private NbtDelta() {
+    }
+
+    /**
+     * @return the changes that turn base into target
+     */
+    public static byte[] diff(NbtElement base, NbtElement target) {
+        NbtBinaryWriter out = new NbtBinaryWriter();
+        if (base == target || base.equals(target) && base.getType() == target.getType() && !isContainer(base)) {
+            out.writeByte(UNCHANGED);
+        } else if (isPatchable(base, target)) {
+            out.writeByte(PATCH);
+            if (!diffPayload(base, target, out)) {
+                out.getBuffer().truncate(0);
+                out.writeByte(UNCHANGED);
+            }
+        } else {
+            out.writeByte(REPLACE);
+            out.writeType(target.getType());
+            out.writePayload(target);
+        }
+        return out.getBuffer().toByteArray();
+    }
+
+    /**
+     * Applies a delta created by {@link #diff(NbtElement, NbtElement)} to its base, pass a copy to keep the base.
+     *
+     * @return base, changed in place, or the new root if the root was replaced
+     * @throws IllegalArgumentException if the delta does not fit the base
+     */
+    @SneakyThrows
+    public static NbtElement apply(NbtElement base, byte[] delta) {
+        NbtBinaryReader in = new NbtBinaryReader(new ByteArrayInputStream(delta), BinaryCodecs.DEFAULT);
+        return switch (in.readByte()) {
+            case UNCHANGED -> base;
+            case REPLACE -> in.readPayload(in.readType());
+            case PATCH -> {
+                applyPayload(base, in);
+                yield base;
+            }
+            default -> throw new ParseException("Invalid delta header", 0);
+        };
+    }
+
+    private static boolean isContainer(NbtElement element) {
+        return element instanceof NbtCompound || element instanceof NbtList<?>;
+    }
+
+    /**
+     * @return true if target can be reached by changing base instead of replacing it
+     */
+    private static boolean isPatchable(NbtElement base, NbtElement target) {
+        if (base.getType() != target.getType())
+            return false;
+        return switch (base) {
+            case NbtCompound ignored -> true;
+            //an untyped list takes the subtype of the first added element, an empty target has to replace it
+            case NbtList<?> list -> list.getSubType() == ((NbtList<?>) target).getSubType()
+                    || list.getClazz() == null && !((NbtList<?>) target).isEmpty();
+            case NbtByteArray ignored -> true;
+            case NbtIntArray ignored -> true;
+            case NbtLongArray ignored -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * @return true if the encodings differ, empty lists are equal regardless of their subtype
+     */
+    private static boolean differs(NbtElement base, NbtElement target) {
+        return !base.equals(target) || base.getType() != target.getType()
+                || base instanceof NbtList<?> list && list.getSubType() != ((NbtList<?>) target).getSubType();
+    }
+
+    /**
+     * Writes the operations turning the patchable base into target, followed by END.
+     *
+     * @return false if there are none, nothing is written then
+     */
+    private static boolean diffPayload(NbtElement base, NbtElement target, NbtBinaryWriter out) {
+        int start = out.getBuffer().size();
+        switch (base) {
+            case NbtCompound compound -> diffCompound(compound, (NbtCompound) target, out);
+            case NbtList<?> list -> diffList(list, (NbtList<?>) target, out);
+            case NbtByteArray array -> {
+                byte[] from = array.peekValue();
+                byte[] to = ((NbtByteArray) target).peekValue();
+                if (from != to)
+                    diffArray(from.length, to.length, (i, j) -> Arrays.mismatch(from, i, j, to, i, j),
+                            (i, j) -> {
+                                for (int k = i; k < j; k++) {
+                                    out.writeByte(to[k]);
+                                }
+                            }, (i) -> from[i] == to[i], out);
+            }
+            case NbtIntArray array -> {
+                int[] from = array.peekValue();
+                int[] to = ((NbtIntArray) target).peekValue();
+                if (from != to)
+                    diffArray(from.length, to.length, (i, j) -> Arrays.mismatch(from, i, j, to, i, j),
+                            (i, j) -> out.writeInts(Arrays.copyOfRange(to, i, j)), (i) -> from[i] == to[i], out);
+            }
+            case NbtLongArray array -> {
+                long[] from = array.peekValue();
+                long[] to = ((NbtLongArray) target).peekValue();
+                if (from != to)
+                    diffArray(from.length, to.length, (i, j) -> Arrays.mismatch(from, i, j, to, i, j),
+                            (i, j) -> out.writeLongs(Arrays.copyOfRange(to, i, j)), (i) -> from[i] == to[i], out);
+            }
+            default -> throw new IllegalStateException(base.getType().toString());
+        }
+        if (out.getBuffer().size() == start)
+            return false;
+        out.writeByte(END);
+        return true;
+    }
+
+    private static void diffCompound(NbtCompound base, NbtCompound target, NbtBinaryWriter out) {
+        Map<String, NbtElement> from = base.getElements();
+        Map<String, NbtElement> to = target.getElements();
+        for (Map.Entry<String, NbtElement> entry : to.entrySet()) {
+            NbtElement value = entry.getValue();
+            NbtElement previous = from.get(entry.getKey());
+            if (previous == value)
+                continue;
+            if (previous != null && isPatchable(previous, value)) {
+                int mark = out.getBuffer().size();
+                out.writeByte(NESTED);
+                out.writeString(entry.getKey());
+                if (!diffPayload(previous, value, out))
+                    out.getBuffer().truncate(mark);
+            } else if (previous == null || differs(previous, value)) {
+                out.writeByte(PUT);
+                out.writeType(value.getType());
+                out.writeString(entry.getKey());
+                out.writePayload(value);
+            }
+        }
+        for (String key : from.keySet()) {
+            if (!to.containsKey(key)) {
+                out.writeByte(REMOVE);
+                out.writeString(key);
+            }
+        }
+    }
+
+    private static void diffList(NbtList<?> base, NbtList<?> target, NbtBinaryWriter out) {
+        int common = Math.min(base.size(), target.size());
+        for (int i = 0; i < common; i++) {
+            NbtElement previous = base.get(i);
+            NbtElement value = target.get(i);
+            if (previous == value)
+                continue;
+            if (isPatchable(previous, value)) {
+                int mark = out.getBuffer().size();
+                out.writeByte(NESTED);
+                writeVarInt(out, i);
+                if (!diffPayload(previous, value, out))
+                    out.getBuffer().truncate(mark);
+            } else if (differs(previous, value)) {
+                out.writeByte(PUT);
+                writeVarInt(out, i);
+                out.writePayload(value);
+            }
+        }
+        if (base.size() != target.size()) {
+            out.writeByte(RESIZE);
+            out.writeType(target.getSubType());
+            writeVarInt(out, target.size());
+            for (int i = common; i < target.size(); i++) {
+                out.writePayload(target.get(i));
+            }
+        }
+    }
+
+    /**
+     * Writes RESIZE if the length changed, then a RANGE for every run of changed elements.
+     */
+    private static void diffArray(int fromLength, int toLength, Mismatch mismatch, RangeWriter values,
+                                  Equality equal, NbtBinaryWriter out) {
+        if (fromLength != toLength) {
+            out.writeByte(RESIZE);
+            writeVarInt(out, toLength);
+        }
+        //elements beyond the old length are always changed
+        int common = Math.min(fromLength, toLength);
+        int i = 0;
+        while (i < toLength) {
+            int offset = i >= common ? -1 : mismatch.find(i, common);
+            int start = offset < 0 ? Math.max(i, common) : i + offset;
+            if (start >= toLength)
+                return;
+            //extend the range until MERGE_GAP equal elements in a row are found
+            int end = start + 1;
+            int equalRun = 0;
+            while (end < toLength && equalRun < MERGE_GAP) {
+                if (end < common && equal.test(end))
+                    equalRun++;
+                else
+                    equalRun = 0;
+                end++;
+            }
+            end -= equalRun;
+            out.writeByte(RANGE);
+            writeVarInt(out, start);
+            writeVarInt(out, end - start);
+            values.write(start, end);
+            i = end;
+        }
+    }
+
+    private static void applyPayload(NbtElement base, NbtBinaryReader in) throws IOException, ParseException {
+        switch (base) {
+            case NbtCompound compound -> applyCompound(compound, in);
+            case NbtList<?> list -> {
+                @SuppressWarnings("unchecked")
+                NbtList<NbtElement> elements = (NbtList<NbtElement>) list;
+                applyList(elements, in);
+            }
+            case NbtByteArray array -> applyByteArray(array, in);
+            case NbtIntArray array -> applyIntArray(array, in);
+            case NbtLongArray array -> applyLongArray(array, in);
+            default -> throw new IllegalArgumentException("Can't patch " + base.getType());
+        }
+    }
+
+    private static void applyCompound(NbtCompound compound, NbtBinaryReader in) throws IOException, ParseException {
+        for (int op = in.readByte(); op != END; op = in.readByte()) {
+            switch (op) {
+                case PUT -> {
+                    ElementType type = in.readType();
+                    compound.put(in.readString(), in.readPayload(type));
+                }
+                case REMOVE -> compound.remove(in.readString());
+                case NESTED -> {
+                    String key = in.readString();
+                    NbtElement child = compound.get(key);
+                    if (child == null)
+                        throw new IllegalArgumentException("Delta does not fit, missing key " + key);
+                    applyPayload(child, in);
+                }
+                default -> throw new ParseException("Invalid compound operation " + op, 0);
+            }
+        }
+    }
+
+    private static void applyList(NbtList<NbtElement> list, NbtBinaryReader in) throws IOException, ParseException {
+        for (int op = in.readByte(); op != END; op = in.readByte()) {
+            switch (op) {
+                case PUT -> {
+                    int index = checkIndex(readVarInt(in), list.size());
+                    list.set(index, in.readPayload(list.getSubType()));
+                }
+                case NESTED -> applyPayload(list.get(checkIndex(readVarInt(in), list.size())), in);
+                case RESIZE -> {
+                    ElementType type = in.readType();
+                    if (list.getClazz() != null && type != list.getSubType())
+                        throw new IllegalArgumentException("Delta does not fit, " + type + " elements for a list of " + list.getSubType());
+                    int size = readVarInt(in);
+                    while (list.size() > size) {
+                        list.remove(list.size() - 1);
+                    }
+                    while (list.size() < size) {
+                        list.add(in.readPayload(type));
+                    }
+                }
+                default -> throw new ParseException("Invalid list operation " + op, 0);
+            }
+        }
+    }
+
+    private static void applyByteArray(NbtByteArray array, NbtBinaryReader in) throws IOException, ParseException {
+        for (int op = in.readByte(); op != END; op = in.readByte()) {
+            switch (op) {
+                case RESIZE -> array.setValue(Arrays.copyOf(array.peekValue(), readVarInt(in)));
+                case RANGE -> {
+                    int start = readVarInt(in);
+                    byte[] values = in.readBytes(readVarInt(in));
+                    System.arraycopy(values, 0, array.getValue(), checkRange(start, values.length, array.peekValue().length), values.length);
+                }
+                default -> throw new ParseException("Invalid array operation " + op, 0);
+            }
+        }
+        array.markDirty();
+    }
+
+    private static void applyIntArray(NbtIntArray array, NbtBinaryReader in) throws IOException, ParseException {
+        for (int op = in.readByte(); op != END; op = in.readByte()) {
+            switch (op) {
+                case RESIZE -> array.setValue(Arrays.copyOf(array.peekValue(), readVarInt(in)));
+                case RANGE -> {
+                    int start = readVarInt(in);
+                    int[] values = in.readInts(readVarInt(in));
+                    System.arraycopy(values, 0, array.getValue(), checkRange(start, values.length, array.peekValue().length), values.length);
+                }
+                default -> throw new ParseException("Invalid array operation " + op, 0);
+            }
+        }
+        array.markDirty();
+    }
+
+    private static void applyLongArray(NbtLongArray array, NbtBinaryReader in) throws IOException, ParseException {
+        for (int op = in.readByte(); op != END; op = in.readByte()) {
+            switch (op) {
+                case RESIZE -> array.setValue(Arrays.copyOf(array.peekValue(), readVarInt(in)));
+                case RANGE -> {
+                    int start = readVarInt(in);
+                    long[] values = in.readLongs(readVarInt(in));
+                    System.arraycopy(values, 0, array.getValue(), checkRange(start, values.length, array.peekValue().length), values.length);
+                }
+                default -> throw new ParseException("Invalid array operation " + op, 0);
+            }
+        }
+        array.markDirty();
+    }
+
+    private static int checkIndex(int index, int size) {
+        if (index >= size)
+            throw new IllegalArgumentException("Delta does not fit, index " + index + " of " + size + " elements");
+        return index;
+    }
+
+    private static int checkRange(int start, int length, int size) {
+        if ((long) start + length > size)
+            throw new IllegalArgumentException("Delta does not fit, range " + start + "+" + length + " of " + size + " elements");
+        return start;
+    }
+
+    private static void writeVarInt(NbtBinaryWriter out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(NbtBinaryReader in) throws IOException, ParseException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                if (value < 0)
+                    throw new ParseException("Negative varint", 0);
+                return value;
+            }
+        }
+        throw new ParseException("Varint too long", 0);
+    }
+
+    private interface Mismatch {
+        /**
+         * @return the relative index of the first differing element in [from, to), -1 if there is none
+         */
+        int find(int from, int to);
+    }
+
+    private interface RangeWriter {
+        void write(int from, int to);
+    }
+
+    private interface Equality {
+        boolean test(int index);
+    }
+}
@@ -0,0 +1,316 @@
+package at.haha007.edennbt.element;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Compound that can be shared between threads without external locking.
+ * <br>
+ * The entries are an immutable, insertion ordered snapshot. Reads never lock,
+ * writes copy the snapshot and swap it in with a compare and set, retrying if another write came first.
+ * The compute and merge functions may therefore be called more than once and should not have side effects.
+ * Writes cost O(n), this is meant for small, read mostly state.
+ * <br>
+ * {@link #getElements()}, {@link #entrySet()}, {@link #keySet()} and {@link #values()} return the current
+ * snapshot, which never changes, so the writers always see a consistent state. The views can't be modified.
+ * Only the entries of this compound are protected, nested containers need their own synchronization.
+ * Concurrent compounds and the tracked containers they are part of don't cache their encoding,
+ * see {@link #setTracking(boolean)}.
+ */
+public class ConcurrentNbtCompound extends NbtCompound {
+    private final AtomicReference<Map<String, NbtElement>> snapshot =
+            new AtomicReference<>(Collections.emptyMap());
+    private volatile boolean tracking;
+    //orders successful swaps with their attach, detach and markDirty, guards tracking changes
+    private final Object lock = new Object();
+
+    public ConcurrentNbtCompound() {
+        super();
+    }
+
+    public ConcurrentNbtCompound(Map<String, NbtElement> elements) {
+        super();
+        //not through putAll, it can be overridden
+        Map<String, NbtElement> initial = new LinkedHashMap<>(elements);
+        initial.forEach((key, value) -> {
+            Objects.requireNonNull(key);
+            Objects.requireNonNull(value, key);
+        });
+        snapshot.set(Collections.unmodifiableMap(initial));
+    }
+
+    /**
+     * Copies the current snapshot, the copy is a concurrent compound as well.
+     */
+    @Override
+    public ConcurrentNbtCompound deepCopy() {
+        Map<String, NbtElement> current = snapshot.get();
+        Map<String, NbtElement> copies = LinkedHashMap.newLinkedHashMap(current.size());
+        current.forEach((key, value) -> copies.put(key, value.deepCopy()));
+        return new ConcurrentNbtCompound(copies);
+    }
+
+    /**
+     * @return the current entries, unmodifiable and unaffected by later writes
+     */
+    public Map<String, NbtElement> snapshot() {
+        return snapshot.get();
+    }
+
+    @Override
+    public Map<String, NbtElement> getElements() {
+        return snapshot.get();
+    }
+
+    /**
+     * Concurrent compounds don't cache their encoding, a writer could store the encoding of an outdated snapshot.
+     * For the same reason the tracking containers this compound is part of stop caching while it is in them.
+     * While tracking, the entries are still attached, so changes here or in nested containers invalidate
+     * the caches of the tracking containers in between.
+     * Tracking should be enabled before the compound is shared between threads.
+     */
+    @Override
+    public void setTracking(boolean tracking) {
+        synchronized (lock) {
+            if (this.tracking == tracking)
+                return;
+            this.tracking = tracking;
+            for (NbtElement element : snapshot.get().values()) {
+                if (tracking)
+                    attach(element);
+                else
+                    detach(element);
+            }
+        }
+    }
+
+    @Override
+    public boolean isTracking() {
+        return tracking;
+    }
+
+    @Override
+    boolean cachesEncoding() {
+        return false;
+    }
+
+    @Override
+    boolean containsConcurrent() {
+        return true;
+    }
+
+    //always counted as concurrent, nested containers don't change that
+    @Override
+    void concurrentChildAdded() {
+    }
+
+    @Override
+    void concurrentChildRemoved() {
+    }
+
+    @Override
+    public int size() {
+        return snapshot.get().size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return snapshot.get().isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return snapshot.get().containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return snapshot.get().containsValue(value);
+    }
+
+    @Override
+    public NbtElement get(Object key) {
+        return snapshot.get().get(key);
+    }
+
+    @Override
+    public NbtElement getOrDefault(Object key, NbtElement defaultValue) {
+        return snapshot.get().getOrDefault(key, defaultValue);
+    }
+
+    @Nullable
+    @Override
+    public NbtElement put(String key, NbtElement value) {
+        Objects.requireNonNull(value);
+        return update(key, previous -> value);
+    }
+
+    @Override
+    public NbtElement remove(Object key) {
+        if (!(key instanceof String k))
+            return null;
+        return update(k, previous -> null);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        if (!(key instanceof String k) || value == null)
+            return false;
+        boolean[] removed = new boolean[1];
+        update(k, current -> (removed[0] = value.equals(current)) ? null : current);
+        return removed[0];
+    }
+
+    @Override
+    public void putAll(@NotNull Map<? extends String, ? extends NbtElement> m) {
+        for (Map<String, NbtElement> current = snapshot.get(); ; current = snapshot.get()) {
+            Map<String, NbtElement> next = new LinkedHashMap<>(current);
+            m.forEach((key, value) -> next.put(Objects.requireNonNull(key), Objects.requireNonNull(value)));
+            if (swap(current, next))
+                return;
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (lock) {
+            Map<String, NbtElement> previous = snapshot.getAndSet(Collections.emptyMap());
+            if (previous.isEmpty())
+                return;
+            if (tracking)
+                previous.values().forEach(this::detach);
+        }
+        markDirty();
+    }
+
+    @Override
+    public NbtElement putIfAbsent(String key, NbtElement value) {
+        Objects.requireNonNull(value);
+        NbtElement[] previous = new NbtElement[1];
+        update(key, current -> (previous[0] = current) == null ? value : current);
+        return previous[0];
+    }
+
+    @Override
+    public boolean replace(String key, NbtElement oldValue, NbtElement newValue) {
+        Objects.requireNonNull(newValue);
+        boolean[] replaced = new boolean[1];
+        update(key, current -> (replaced[0] = Objects.equals(current, oldValue) && current != null) ? newValue : current);
+        return replaced[0];
+    }
+
+    @Override
+    public NbtElement replace(String key, NbtElement value) {
+        Objects.requireNonNull(value);
+        NbtElement[] previous = new NbtElement[1];
+        update(key, current -> (previous[0] = current) == null ? null : value);
+        return previous[0];
+    }
+
+    @Override
+    public NbtElement computeIfAbsent(String key, @NotNull Function<? super String, ? extends NbtElement> mappingFunction) {
+        NbtElement present = get(key);
+        if (present != null)
+            return present;
+        return compute(key, (k, current) -> current == null ? mappingFunction.apply(k) : current);
+    }
+
+    @Override
+    public NbtElement computeIfPresent(String key, @NotNull BiFunction<? super String, ? super NbtElement, ? extends NbtElement> remappingFunction) {
+        return compute(key, (k, current) -> current == null ? null : remappingFunction.apply(k, current));
+    }
+
+    @Override
+    public NbtElement compute(String key, @NotNull BiFunction<? super String, ? super NbtElement, ? extends NbtElement> remappingFunction) {
+        //the last call is the one whose result was stored
+        NbtElement[] result = new NbtElement[1];
+        update(key, current -> result[0] = remappingFunction.apply(key, current));
+        return result[0];
+    }
+
+    @Override
+    public NbtElement merge(String key, @NotNull NbtElement value, @NotNull BiFunction<? super NbtElement, ? super NbtElement, ? extends NbtElement> remappingFunction) {
+        Objects.requireNonNull(value);
+        return compute(key, (k, current) -> current == null ? value : remappingFunction.apply(current, value));
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super String, ? super NbtElement, ? extends NbtElement> function) {
+        for (Map<String, NbtElement> current = snapshot.get(); ; current = snapshot.get()) {
+            Map<String, NbtElement> next = new LinkedHashMap<>(current);
+            next.replaceAll((key, value) -> Objects.requireNonNull(function.apply(key, value)));
+            if (swap(current, next))
+                return;
+        }
+    }
+
+    @NotNull
+    @Override
+    public Set<String> keySet() {
+        return snapshot.get().keySet();
+    }
+
+    @NotNull
+    @Override
+    public Collection<NbtElement> values() {
+        return snapshot.get().values();
+    }
+
+    @NotNull
+    @Override
+    public Set<Entry<String, NbtElement>> entrySet() {
+        return snapshot.get().entrySet();
+    }
+
+    /**
+     * Atomically replaces the value of key with the result of function, null removes the key.
+     *
+     * @return the previous value
+     */
+    private NbtElement update(String key, UnaryOperator<NbtElement> function) {
+        Objects.requireNonNull(key);
+        for (Map<String, NbtElement> current = snapshot.get(); ; current = snapshot.get()) {
+            NbtElement previous = current.get(key);
+            NbtElement value = function.apply(previous);
+            if (value == previous)
+                return previous;
+            Map<String, NbtElement> next = new LinkedHashMap<>(current);
+            if (value == null)
+                next.remove(key);
+            else
+                next.put(key, value);
+            if (swap(current, next))
+                return previous;
+        }
+    }
+
+    /**
+     * Swaps in next if the snapshot is still current. The lock makes attach and detach run in the order
+     * of the swaps, a later swap can't detach an element before an earlier one attached it.
+     */
+    private boolean swap(Map<String, NbtElement> current, Map<String, NbtElement> next) {
+        synchronized (lock) {
+            if (!snapshot.compareAndSet(current, Collections.unmodifiableMap(next)))
+                return false;
+            if (tracking) {
+                //detach first, an element moved to another key is attached again
+                current.forEach((key, value) -> {
+                    if (next.get(key) != value)
+                        detach(value);
+                });
+                next.forEach((key, value) -> {
+                    if (current.get(key) != value)
+                        attach(value);
+                });
+            }
+        }
+        markDirty();
+        return true;
+    }
+}
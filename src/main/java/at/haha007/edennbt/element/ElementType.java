@@ -1,29 +1,68 @@
 package at.haha007.edennbt.element;
 
-import java.util.Arrays;
-
 public enum ElementType {
-    END(NbtEnd.class),
-    BYTE(NbtByte.class),
-    SHORT(NbtShort.class),
-    INT(NbtInt.class),
-    LONG(NbtLong.class),
-    FLOAT(NbtFloat.class),
-    DOUBLE(NbtDouble.class),
-    BYTE_ARRAY(NbtByteArray.class),
-    STRING(NbtString.class),
-    LIST(NbtList.class),
-    COMPOUND(NbtCompound.class),
-    INT_ARRAY(NbtIntArray.class),
-    LONG_ARRAY(NbtLongArray.class);
+    END(0, NbtEnd.class),
+    BYTE(1, NbtByte.class),
+    SHORT(2, NbtShort.class),
+    INT(3, NbtInt.class),
+    LONG(4, NbtLong.class),
+    FLOAT(5, NbtFloat.class),
+    DOUBLE(6, NbtDouble.class),
+    BYTE_ARRAY(7, NbtByteArray.class),
+    STRING(8, NbtString.class),
+    LIST(9, NbtList.class),
+    COMPOUND(10, NbtCompound.class),
+    INT_ARRAY(11, NbtIntArray.class),
+    LONG_ARRAY(12, NbtLongArray.class);
+
+    private static final ElementType[] BY_ID = new ElementType[values().length];
+    private static final ClassValue<ElementType> BY_CLASS = new ClassValue<>() {
+        @Override
+        protected ElementType computeValue(Class<?> type) {
+            //subclasses have the type of the element class they extend
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                for (ElementType elementType : BY_ID) {
+                    if (elementType.clazz == c)
+                        return elementType;
+                }
+            }
+            return null;
+        }
+    };
+
+    static {
+        for (ElementType type : values()) {
+            BY_ID[type.id] = type;
+        }
+    }
+
+    private final byte id;
     private final Class<? extends NbtElement> clazz;
 
-    ElementType(Class<? extends NbtElement> clazz) {
+    ElementType(int id, Class<? extends NbtElement> clazz) {
+        this.id = (byte) id;
         this.clazz = clazz;
     }
 
     public static ElementType getType(Class<? extends NbtElement> clazz) {
-        return Arrays.stream(values()).filter(e -> e.getNbtClass() == clazz).findFirst().orElse(null);
+        return BY_CLASS.get(clazz);
+    }
+
+    /**
+     * @param id the tag id used in binary nbt
+     * @throws IllegalArgumentException if there is no type with this id
+     */
+    public static ElementType byId(int id) {
+        if (id < 0 || id >= BY_ID.length)
+            throw new IllegalArgumentException("Invalid header: " + id);
+        return BY_ID[id];
+    }
+
+    /**
+     * @return the tag id used in binary nbt
+     */
+    public byte getId() {
+        return id;
     }
 
     public Class<? extends NbtElement> getNbtClass() {
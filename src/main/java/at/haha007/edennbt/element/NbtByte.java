@@ -11,4 +11,14 @@ import lombok.NoArgsConstructor;
 @Data
 public class NbtByte extends NbtElement {
     private byte value = 0;
+
+    public void setValue(byte value) {
+        this.value = value;
+        markDirty();
+    }
+
+    @Override
+    public NbtByte deepCopy() {
+        return new NbtByte(value);
+    }
 }
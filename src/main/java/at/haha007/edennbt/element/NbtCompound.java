@@ -9,14 +9,55 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
-@NoArgsConstructor
 @Getter
 @ToString
 public class NbtCompound extends NbtElement implements Map<String, NbtElement> {
-    private final Map<String, NbtElement> elements = new LinkedHashMap<>();
+    private final Map<String, NbtElement> elements;
+    @ToString.Exclude
+    private boolean tracking = false;
+
+    public NbtCompound() {
+        this.elements = new LinkedHashMap<>();
+    }
 
     public NbtCompound(Map<String, NbtElement> elements) {
-        this.elements.putAll(elements);
+        this.elements = new LinkedHashMap<>(elements);
+    }
+
+    private NbtCompound(int expectedSize) {
+        this.elements = LinkedHashMap.newLinkedHashMap(expectedSize);
+    }
+
+    /**
+     * Enables or disables change tracking for this compound and everything in it.
+     * <br>
+     * While tracking, every compound and list keeps its encoded bytes after being written by the binary writer,
+     * until it or anything inside changes. Unchanged subtrees are then written by copying those bytes.
+     * Changes through {@link #entrySet()}, {@link #keySet()}, {@link #values()} or to arrays in place
+     * are not detected and need a call to {@link #markDirty()}.
+     * An element can only be tracked in one container at a time.
+     */
+    public void setTracking(boolean tracking) {
+        if (this.tracking == tracking)
+            return;
+        this.tracking = tracking;
+        setEncodedPayload(null);
+        for (NbtElement element : elements.values()) {
+            if (tracking)
+                attach(element);
+            else
+                detach(element);
+        }
+    }
+
+    @Override
+    public NbtCompound deepCopy() {
+        Map<String, NbtElement> elements = getElements();
+        NbtCompound copy = new NbtCompound(elements.size());
+        for (Map.Entry<String, NbtElement> entry : elements.entrySet()) {
+            copy.elements.put(entry.getKey(), entry.getValue().deepCopy());
+        }
+        return copy;
     }
 
     @Override
@@ -27,11 +68,14 @@ public class NbtCompound extends NbtElement implements Map<String, NbtElement> {
         if (!(obj instanceof NbtCompound other)) {
             return false;
         }
-        if (other.elements.size() != elements.size()) {
+        //through the getters, subclasses may not use the elements field
+        Map<String, NbtElement> elements = getElements();
+        Map<String, NbtElement> otherElements = other.getElements();
+        if (otherElements.size() != elements.size()) {
             return false;
         }
         for (Map.Entry<String, NbtElement> entry : elements.entrySet()) {
-            if (!entry.getValue().equals(other.elements.get(entry.getKey()))) {
+            if (!entry.getValue().equals(otherElements.get(entry.getKey()))) {
                 return false;
             }
         }
@@ -40,7 +84,7 @@ public class NbtCompound extends NbtElement implements Map<String, NbtElement> {
 
     @Override
     public int hashCode() {
-        return elements.hashCode();
+        return getElements().hashCode();
     }
 
     @Override
@@ -71,22 +115,37 @@ public class NbtCompound extends NbtElement implements Map<String, NbtElement> {
     @Nullable
     @Override
     public NbtElement put(String key, NbtElement value) {
-        return elements.put(key, value);
+        NbtElement previous = elements.put(key, value);
+        if (tracking) {
+            detach(previous);
+            attach(value);
+        }
+        markDirty();
+        return previous;
     }
 
     @Override
     public NbtElement remove(Object key) {
-        return elements.remove(key);
+        NbtElement removed = elements.remove(key);
+        if (removed != null) {
+            if (tracking)
+                detach(removed);
+            markDirty();
+        }
+        return removed;
     }
 
     @Override
     public void putAll(@NotNull Map<? extends String, ? extends NbtElement> m) {
-        elements.putAll(m);
+        m.forEach(this::put);
     }
 
     @Override
     public void clear() {
+        if (tracking)
+            elements.values().forEach(this::detach);
         elements.clear();
+        markDirty();
     }
 
     @NotNull
@@ -11,4 +11,14 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class NbtDouble extends NbtElement {
     private double value;
+
+    public void setValue(double value) {
+        this.value = value;
+        markDirty();
+    }
+
+    @Override
+    public NbtDouble deepCopy() {
+        return new NbtDouble(value);
+    }
 }
@@ -1,15 +1,117 @@
-package at.haha007.edennbt.element;
-
-import at.haha007.edennbt.parser.SnbtParser;
-
-public abstract class NbtElement {
-
-    public final ElementType getType() {
-        return ElementType.getType(this.getClass());
-    }
-
-    @Override
-    public String toString() {
-        return new SnbtParser().write(this);
-    }
-}
+package at.haha007.edennbt.element;
+
+import at.haha007.edennbt.parser.SnbtParser;
+import org.jetbrains.annotations.ApiStatus;
+
+public abstract class NbtElement {
+    //change tracking, only set while the containing NbtCompound or NbtList tracks changes
+    //volatile, a ConcurrentNbtCompound changes them from several threads
+    private volatile NbtElement parent;
+    private volatile byte[] encodedPayload;
+    //tracked children that are or contain a ConcurrentNbtCompound, a container with such children doesn't cache
+    private int concurrentChildren;
+
+    public final ElementType getType() {
+        return ElementType.getType(this.getClass());
+    }
+
+    /**
+     * Copies this element and everything in it. The copy is detached and does not track changes.
+     * Arrays are shared copy on write, arrays already taken with getValue() are copied right away.
+     * Copying and reading must not run concurrently with changes to the source.
+     */
+    public abstract NbtElement deepCopy();
+
+    /**
+     * Drops the cached encoding of all tracked containers this element is part of.
+     * Setters call this, it only has to be called manually after changing an array in place.
+     */
+    public void markDirty() {
+        if (encodedPayload != null)
+            encodedPayload = null;
+        for (NbtElement element = parent; element != null; element = element.parent) {
+            //a dirty container only has dirty parents, no need to go further
+            if (element.encodedPayload == null && element.cachesEncoding())
+                return;
+            if (element.encodedPayload != null)
+                element.encodedPayload = null;
+        }
+    }
+
+    /**
+     * @return false for containers that never cache their encoding, markDirty walks on through them
+     */
+    boolean cachesEncoding() {
+        return concurrentChildren == 0;
+    }
+
+    /**
+     * A container holding a ConcurrentNbtCompound could store the encoding of a snapshot that was replaced
+     * meanwhile by another thread, so neither it nor its tracked ancestors cache their encoding.
+     *
+     * @return true if this element is or contains a tracked ConcurrentNbtCompound
+     */
+    boolean containsConcurrent() {
+        return concurrentChildren > 0;
+    }
+
+    void concurrentChildAdded() {
+        boolean contained = containsConcurrent();
+        concurrentChildren++;
+        encodedPayload = null;
+        NbtElement parent = this.parent;
+        if (!contained && parent != null)
+            parent.concurrentChildAdded();
+    }
+
+    void concurrentChildRemoved() {
+        concurrentChildren--;
+        NbtElement parent = this.parent;
+        if (!containsConcurrent() && parent != null)
+            parent.concurrentChildRemoved();
+    }
+
+    /**
+     * @return the payload encoded by the binary writer if nothing changed since, null otherwise
+     */
+    @ApiStatus.Internal
+    public byte[] getEncodedPayload() {
+        return encodedPayload;
+    }
+
+    @ApiStatus.Internal
+    public void setEncodedPayload(byte[] encodedPayload) {
+        if (encodedPayload != null && !cachesEncoding())
+            return;
+        this.encodedPayload = encodedPayload;
+    }
+
+    void attach(NbtElement child) {
+        //linked after the child tracks, its own concurrent children are counted here and not passed up twice
+        if (child instanceof NbtCompound compound)
+            compound.setTracking(true);
+        else if (child instanceof NbtList<?> list)
+            list.setTracking(true);
+        child.parent = this;
+        if (child.containsConcurrent())
+            concurrentChildAdded();
+    }
+
+    void detach(NbtElement child) {
+        if (child == null || child.parent != this)
+            return;
+        //before the child stops tracking, its own concurrent children are still counted
+        if (child.containsConcurrent())
+            concurrentChildRemoved();
+        child.parent = null;
+        if (child instanceof NbtCompound compound)
+            compound.setTracking(false);
+        else if (child instanceof NbtList<?> list)
+            list.setTracking(false);
+    }
+
+    @Override
+    public String toString() {
+        return new SnbtParser().write(this);
+    }
+}
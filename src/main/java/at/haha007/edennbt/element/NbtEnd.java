@@ -4,4 +4,9 @@ public class NbtEnd extends NbtElement {
     private NbtEnd(){
         throw new IllegalStateException("NbtEnd cannot be created");
     }
+
+    @Override
+    public NbtEnd deepCopy() {
+        return this;
+    }
 }
@@ -11,4 +11,14 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class NbtFloat extends NbtElement {
     private float value = 0;
+
+    public void setValue(float value) {
+        this.value = value;
+        markDirty();
+    }
+
+    @Override
+    public NbtFloat deepCopy() {
+        return new NbtFloat(value);
+    }
 }
@@ -11,4 +11,14 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class NbtInt extends NbtElement {
     private int value = 0;
+
+    public void setValue(int value) {
+        this.value = value;
+        markDirty();
+    }
+
+    @Override
+    public NbtInt deepCopy() {
+        return new NbtInt(value);
+    }
 }
@@ -1,15 +1,68 @@
-package at.haha007.edennbt.element;
-
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.EqualsAndHashCode;
-import lombok.NoArgsConstructor;
-import org.jetbrains.annotations.NotNull;
-
-@EqualsAndHashCode(callSuper = false)
-@Data
-@NoArgsConstructor
-@AllArgsConstructor
-public class NbtIntArray extends NbtElement {
-    private int @NotNull [] value = new int[0];
-}
+package at.haha007.edennbt.element;
+
+import lombok.*;
+import org.jetbrains.annotations.NotNull;
+
+@EqualsAndHashCode(callSuper = false, doNotUseGetters = true)
+@ToString(doNotUseGetters = true)
+@Data
+@NoArgsConstructor
+public class NbtIntArray extends NbtElement {
+    private int @NotNull [] value = new int[0];
+    //the array is shared with a copy and has to be copied before it may be changed
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean shared;
+    //the array was handed out by getValue() and may be changed through that reference at any time
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private boolean exposed;
+
+    public NbtIntArray(int @NotNull [] value) {
+        this.value = value;
+    }
+
+    /**
+     * @return the array, copied first if it is still shared with a {@link #deepCopy()}
+     */
+    public int @NotNull [] getValue() {
+        if (shared) {
+            value = value.clone();
+            shared = false;
+        }
+        exposed = true;
+        return value;
+    }
+
+    /**
+     * @return the array without copying it, it must not be changed
+     */
+    public int @NotNull [] peekValue() {
+        return value;
+    }
+
+    public void setValue(int @NotNull [] value) {
+        this.value = value;
+        shared = false;
+        exposed = false;
+        markDirty();
+    }
+
+    /**
+     * The copy shares the array with this element until either of them calls {@link #getValue()}.
+     * If the array was already handed out by {@link #getValue()}, the copy gets its own array right away.
+     */
+    @Override
+    public NbtIntArray deepCopy() {
+        if (exposed)
+            return new NbtIntArray(value.clone());
+        NbtIntArray copy = new NbtIntArray(value);
+        copy.shared = true;
+        shared = true;
+        return copy;
+    }
+}
@@ -1,196 +1,282 @@
-package at.haha007.edennbt.element;
-
-import lombok.Getter;
-import lombok.NoArgsConstructor;
-import lombok.ToString;
-import org.jetbrains.annotations.NotNull;
-
-import java.util.*;
-
-@ToString
-@Getter
-@NoArgsConstructor
-public class NbtList<T extends NbtElement> extends NbtElement implements List<T> {
-    private final List<T> elements = new ArrayList<>();
-    private Class<T> clazz = null;
-
-    public NbtList(Class<T> clazz) {
-        this.clazz = clazz;
-    }
-
-    public NbtList(List<T> elements, Class<T> clazz) {
-        this.clazz = clazz;
-        addAll(elements);
-    }
-
-    @Override
-    public boolean equals(Object obj) {
-        if (obj == this) {
-            return true;
-        }
-        if (!(obj instanceof NbtList<?> other)) {
-            return false;
-        }
-        return elements.equals(other.elements);
-    }
-
-    @Override
-    public int hashCode() {
-        return elements.hashCode();
-    }
-
-    public ElementType getSubType() {
-        return ElementType.getType(clazz);
-    }
-
-    @Override
-    public int size() {
-        return elements.size();
-    }
-
-    @Override
-    public boolean isEmpty() {
-        return elements.isEmpty();
-    }
-
-    @Override
-    public boolean contains(Object o) {
-        return elements.contains(o);
-    }
-
-    @Override
-    @NotNull
-    public Iterator<T> iterator() {
-        return elements.iterator();
-    }
-
-    @Override
-    public Object @NotNull [] toArray() {
-        return elements.toArray();
-    }
-
-    @Override
-    @NotNull
-    public <T1> T1 @NotNull [] toArray(T1 @NotNull [] a) {
-        return elements.toArray(a);
-    }
-
-    @Override
-    public boolean add(T o) {
-        checkType(o);
-        return elements.add(o);
-    }
-
-    @Override
-    public boolean remove(Object o) {
-        return elements.remove(o);
-    }
-
-    @Override
-    public boolean containsAll(@NotNull Collection<?> c) {
-        //noinspection SlowListContainsAll
-        return elements.containsAll(c);
-    }
-
-    @Override
-    public boolean addAll(Collection<? extends T> c) {
-        boolean changed = false;
-        for (T t : c) {
-            add(t);
-            changed = true;
-        }
-        return changed;
-    }
-
-    @Override
-    public boolean addAll(int index, Collection<? extends T> c) {
-        boolean changed = false;
-        for (T t : c) {
-            add(t);
-            changed = true;
-        }
-        return changed;
-    }
-
-    @Override
-    public boolean removeAll(@NotNull Collection<?> c) {
-        return elements.removeAll(c);
-    }
-
-    @Override
-    public boolean retainAll(@NotNull Collection<?> c) {
-        return elements.retainAll(c);
-    }
-
-    @Override
-    public void clear() {
-        elements.clear();
-    }
-
-    @Override
-    public T get(int index) {
-        return elements.get(index);
-    }
-
-    @Override
-    public T set(int index, T element) {
-        checkType(element);
-        return elements.set(index, element);
-    }
-
-    @Override
-    public void add(int index, T element) {
-        checkType(element);
-        elements.add(index, element);
-    }
-
-    @Override
-    public T remove(int index) {
-        return elements.remove(index);
-    }
-
-    @Override
-    public int indexOf(Object o) {
-        return elements.indexOf(o);
-    }
-
-    @Override
-    public int lastIndexOf(Object o) {
-        return elements.lastIndexOf(o);
-    }
-
-    @Override
-    @NotNull
-    public ListIterator<T> listIterator() {
-        return elements.listIterator();
-    }
-
-    @Override
-    @NotNull
-    public ListIterator<T> listIterator(int index) {
-        return elements.listIterator(index);
-    }
-
-    @Override
-    @NotNull
-    public List<T> subList(int fromIndex, int toIndex) {
-        return elements.subList(fromIndex, toIndex);
-    }
-
-    private void checkType(Object o) {
-        if (o == null)
-            throw new NullPointerException("NbtList can only handle non-null elements.");
-        if (!(o instanceof NbtElement))
-            throw new IllegalArgumentException("NbtList can only handle NbtElements. Provided: "
-                    + o.getClass().getCanonicalName());
-        if (clazz == null) {
-            //noinspection unchecked
-            clazz = (Class<T>) o.getClass();
-            return;
-        }
-        if (o.getClass() != clazz)
-            throw new ClassCastException("NbtList can only handle elements of type " + clazz.getCanonicalName() +
-                    ". Provided: " + o.getClass().getCanonicalName());
-
-    }
-}
+package at.haha007.edennbt.element;
+
+import lombok.Getter;
+import lombok.ToString;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+@ToString
+@Getter
+public class NbtList<T extends NbtElement> extends NbtElement implements List<T> {
+    private final List<T> elements;
+    private Class<T> clazz = null;
+    @ToString.Exclude
+    private boolean tracking = false;
+
+    public NbtList() {
+        this.elements = new ArrayList<>();
+    }
+
+    public NbtList(Class<T> clazz) {
+        this.elements = new ArrayList<>();
+        this.clazz = clazz;
+    }
+
+    public NbtList(List<T> elements, Class<T> clazz) {
+        this.elements = new ArrayList<>(elements.size());
+        this.clazz = clazz;
+        addAll(elements);
+    }
+
+    private NbtList(int capacity, Class<T> clazz) {
+        this.elements = new ArrayList<>(capacity);
+        this.clazz = clazz;
+    }
+
+    @Override
+    public NbtList<T> deepCopy() {
+        NbtList<T> copy = new NbtList<>(elements.size(), clazz);
+        for (T element : elements) {
+            @SuppressWarnings("unchecked")
+            T elementCopy = (T) element.deepCopy();
+            copy.elements.add(elementCopy);
+        }
+        return copy;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof NbtList<?> other)) {
+            return false;
+        }
+        return elements.equals(other.elements);
+    }
+
+    @Override
+    public int hashCode() {
+        return elements.hashCode();
+    }
+
+    /**
+     * Enables or disables change tracking for this list and everything in it.
+     * Changes through iterators or {@link #subList(int, int)} are not detected and need a call to {@link #markDirty()}.
+     *
+     * @see NbtCompound#setTracking(boolean)
+     */
+    public void setTracking(boolean tracking) {
+        if (this.tracking == tracking)
+            return;
+        this.tracking = tracking;
+        setEncodedPayload(null);
+        for (T element : elements) {
+            if (tracking)
+                attach(element);
+            else
+                detach(element);
+        }
+    }
+
+    public ElementType getSubType() {
+        return clazz == null ? ElementType.END : ElementType.getType(clazz);
+    }
+
+    @Override
+    public int size() {
+        return elements.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return elements.isEmpty();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return elements.contains(o);
+    }
+
+    @Override
+    @NotNull
+    public Iterator<T> iterator() {
+        return elements.iterator();
+    }
+
+    @Override
+    public Object @NotNull [] toArray() {
+        return elements.toArray();
+    }
+
+    @Override
+    @NotNull
+    public <T1> T1 @NotNull [] toArray(T1 @NotNull [] a) {
+        return elements.toArray(a);
+    }
+
+    @Override
+    public boolean add(T o) {
+        checkType(o);
+        elements.add(o);
+        added(o);
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int index = elements.indexOf(o);
+        if (index < 0)
+            return false;
+        remove(index);
+        return true;
+    }
+
+    @Override
+    public boolean containsAll(@NotNull Collection<?> c) {
+        //noinspection SlowListContainsAll
+        return elements.containsAll(c);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends T> c) {
+        boolean changed = false;
+        for (T t : c) {
+            add(t);
+            changed = true;
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends T> c) {
+        boolean changed = false;
+        for (T t : c) {
+            add(t);
+            changed = true;
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean removeAll(@NotNull Collection<?> c) {
+        return removeIf(c::contains);
+    }
+
+    @Override
+    public boolean retainAll(@NotNull Collection<?> c) {
+        return removeIf(e -> !c.contains(e));
+    }
+
+    @Override
+    public boolean removeIf(@NotNull java.util.function.Predicate<? super T> filter) {
+        boolean changed = false;
+        Iterator<T> iterator = elements.iterator();
+        while (iterator.hasNext()) {
+            T element = iterator.next();
+            if (filter.test(element)) {
+                iterator.remove();
+                removed(element);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public void clear() {
+        if (tracking)
+            elements.forEach(this::detach);
+        elements.clear();
+        markDirty();
+    }
+
+    @Override
+    public T get(int index) {
+        return elements.get(index);
+    }
+
+    @Override
+    public T set(int index, T element) {
+        checkType(element);
+        T previous = elements.set(index, element);
+        removed(previous);
+        added(element);
+        return previous;
+    }
+
+    @Override
+    public void add(int index, T element) {
+        checkType(element);
+        elements.add(index, element);
+        added(element);
+    }
+
+    @Override
+    public T remove(int index) {
+        T removed = elements.remove(index);
+        removed(removed);
+        return removed;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        return elements.indexOf(o);
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return elements.lastIndexOf(o);
+    }
+
+    @Override
+    @NotNull
+    public ListIterator<T> listIterator() {
+        return elements.listIterator();
+    }
+
+    @Override
+    @NotNull
+    public ListIterator<T> listIterator(int index) {
+        return elements.listIterator(index);
+    }
+
+    @Override
+    @NotNull
+    public List<T> subList(int fromIndex, int toIndex) {
+        return elements.subList(fromIndex, toIndex);
+    }
+
+    private void added(T element) {
+        if (tracking)
+            attach(element);
+        markDirty();
+    }
+
+    private void removed(T element) {
+        if (tracking)
+            detach(element);
+        markDirty();
+    }
+
+    private void checkType(Object o) {
+        if (o == null)
+            throw new NullPointerException("NbtList can only handle non-null elements.");
+        if (!(o instanceof NbtElement))
+            throw new IllegalArgumentException("NbtList can only handle NbtElements. Provided: "
+                    + o.getClass().getCanonicalName());
+        //compare the element types, subclasses like ConcurrentNbtCompound are allowed
+        ElementType type = ElementType.getType(((NbtElement) o).getClass());
+        if (clazz == null) {
+            @SuppressWarnings("unchecked")
+            Class<T> subType = (Class<T>) type.getNbtClass();
+            clazz = subType;
+            return;
+        }
+        if (type != getSubType())
+            throw new ClassCastException("NbtList can only handle elements of type " + clazz.getCanonicalName() +
+                    ". Provided: " + o.getClass().getCanonicalName());
+
+    }
+}
@@ -11,4 +11,14 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class NbtLong extends NbtElement {
     private long value;
+
+    public void setValue(long value) {
+        this.value = value;
+        markDirty();
+    }
+
+    @Override
+    public NbtLong deepCopy() {
+        return new NbtLong(value);
+    }
 }
@@ -9,4 +9,14 @@ import lombok.*;
 @AllArgsConstructor
 public class NbtShort extends NbtElement {
     private short value = 0;
+
+    public void setValue(short value) {
+        this.value = value;
+        markDirty();
+    }
+
+    @Override
+    public NbtShort deepCopy() {
+        return new NbtShort(value);
+    }
 }
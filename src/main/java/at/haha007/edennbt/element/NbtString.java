@@ -13,4 +13,14 @@ import org.jetbrains.annotations.NotNull;
 public class NbtString extends NbtElement {
     @NotNull
     private String value = "";
+
+    public void setValue(@NotNull String value) {
+        this.value = value;
+        markDirty();
+    }
+
+    @Override
+    public NbtString deepCopy() {
+        return new NbtString(value);
+    }
 }
@@ -0,0 +1,227 @@
+package at.haha007.edennbt.element;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * View of a {@link NbtLongArray} as an array of unsigned integers with a fixed number of bits each,
+ * like the palette indices of block states, biomes and heightmaps.
+ * <br>
+ * Reads and writes go directly to the backing long[], only {@link #resize(int)} replaces it.
+ * Writes mark the array dirty for change tracking.
+ */
+public final class PackedArrayView {
+    @Getter
+    private final NbtLongArray array;
+    @Getter
+    private final int size;
+    @Getter
+    private final Layout layout;
+    @Getter
+    private int bits;
+    private long mask;
+    private int valuesPerLong;
+
+    /**
+     * @param array  the packed values
+     * @param size   the number of values
+     * @param bits   the bits per value, 1 to 32
+     * @param layout how the values are packed
+     * @throws IllegalArgumentException if the array length does not fit size and bits
+     */
+    public PackedArrayView(NbtLongArray array, int size, int bits, Layout layout) {
+        if (size < 0)
+            throw new IllegalArgumentException("Negative size: " + size);
+        this.array = array;
+        this.size = size;
+        this.layout = layout;
+        setBits(bits);
+        int expected = layout.length(size, bits);
+        if (array.peekValue().length != expected)
+            throw new IllegalArgumentException("Expected " + expected + " longs for " + size + " values of "
+                    + bits + " bits but found " + array.peekValue().length);
+    }
+
+    /**
+     * Creates a view over a new array of zeros.
+     */
+    public static PackedArrayView create(int size, int bits, Layout layout) {
+        return new PackedArrayView(new NbtLongArray(new long[layout.length(size, bits)]), size, bits, layout);
+    }
+
+    /**
+     * @return the bits needed to store indices into a palette of the given size, at least 1
+     */
+    public static int bitsFor(int paletteSize) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(paletteSize - 1));
+    }
+
+    public int get(int index) {
+        checkIndex(index);
+        long[] longs = array.peekValue();
+        if (layout == Layout.NON_SPANNING) {
+            int offset = (index % valuesPerLong) * bits;
+            return (int) ((longs[index / valuesPerLong] >>> offset) & mask);
+        }
+        long bit = (long) index * bits;
+        int cell = (int) (bit >>> 6);
+        int offset = (int) (bit & 63);
+        long value = longs[cell] >>> offset;
+        if (offset + bits > 64)
+            value |= longs[cell + 1] << (64 - offset);
+        return (int) (value & mask);
+    }
+
+    public void set(int index, int value) {
+        checkIndex(index);
+        checkValue(value);
+        write(array.getValue(), index, value);
+        array.markDirty();
+    }
+
+    /**
+     * @return all values
+     */
+    public int[] unpack() {
+        int[] values = new int[size];
+        unpack(values);
+        return values;
+    }
+
+    /**
+     * Writes all values to the first {@link #getSize()} entries of dst.
+     */
+    public void unpack(int[] dst) {
+        if (dst.length < size)
+            throw new IllegalArgumentException("Array too small: " + dst.length);
+        long[] longs = array.peekValue();
+        if (layout == Layout.NON_SPANNING) {
+            int index = 0;
+            for (int cell = 0; index < size; cell++) {
+                long value = longs[cell];
+                for (int i = 0; i < valuesPerLong && index < size; i++) {
+                    dst[index++] = (int) (value & mask);
+                    value >>>= bits;
+                }
+            }
+            return;
+        }
+        for (int index = 0; index < size; index++) {
+            dst[index] = get(index);
+        }
+    }
+
+    /**
+     * Replaces all values, the array keeps its length.
+     *
+     * @throws IllegalArgumentException if a value does not fit into the bits
+     */
+    public void pack(int[] values) {
+        if (values.length != size)
+            throw new IllegalArgumentException("Expected " + size + " values but found " + values.length);
+        for (int value : values) {
+            checkValue(value);
+        }
+        long[] longs = array.getValue();
+        if (layout == Layout.NON_SPANNING) {
+            int index = 0;
+            for (int cell = 0; cell < longs.length; cell++) {
+                long packed = 0;
+                for (int i = 0; i < valuesPerLong && index < size; i++) {
+                    packed |= (values[index++] & mask) << (i * bits);
+                }
+                longs[cell] = packed;
+            }
+        } else {
+            Arrays.fill(longs, 0);
+            for (int index = 0; index < size; index++) {
+                write(longs, index, values[index]);
+            }
+        }
+        array.markDirty();
+    }
+
+    /**
+     * Repacks all values with a different number of bits, e.g. after the palette grew.
+     * The backing array is replaced if its length changes.
+     *
+     * @throws IllegalArgumentException if a value does not fit into the new bits
+     */
+    public void resize(int bits) {
+        if (bits == this.bits)
+            return;
+        int[] values = unpack();
+        int previous = this.bits;
+        setBits(bits);
+        try {
+            for (int value : values) {
+                checkValue(value);
+            }
+        } catch (IllegalArgumentException e) {
+            setBits(previous);
+            throw e;
+        }
+        int length = layout.length(size, bits);
+        if (length != array.peekValue().length)
+            array.setValue(new long[length]);
+        pack(values);
+    }
+
+    private void write(long[] longs, int index, int value) {
+        if (layout == Layout.NON_SPANNING) {
+            int cell = index / valuesPerLong;
+            int offset = (index % valuesPerLong) * bits;
+            longs[cell] = (longs[cell] & ~(mask << offset)) | ((value & mask) << offset);
+            return;
+        }
+        long bit = (long) index * bits;
+        int cell = (int) (bit >>> 6);
+        int offset = (int) (bit & 63);
+        longs[cell] = (longs[cell] & ~(mask << offset)) | ((value & mask) << offset);
+        if (offset + bits > 64) {
+            int shift = 64 - offset;
+            longs[cell + 1] = (longs[cell + 1] & ~(mask >>> shift)) | ((value & mask) >>> shift);
+        }
+    }
+
+    private void setBits(int bits) {
+        if (bits < 1 || bits > 32)
+            throw new IllegalArgumentException("Bits must be between 1 and 32: " + bits);
+        this.bits = bits;
+        this.mask = (1L << bits) - 1;
+        this.valuesPerLong = 64 / bits;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException(index);
+    }
+
+    private void checkValue(int value) {
+        if ((value & 0xffffffffL) > mask)
+            throw new IllegalArgumentException("Value " + value + " does not fit into " + bits + " bits");
+    }
+
+    public enum Layout {
+        /**
+         * Values never cross long boundaries, the remaining high bits of each long are unused (since 1.16).
+         */
+        NON_SPANNING,
+        /**
+         * Values are packed without gaps and may be split between two longs (before 1.16).
+         */
+        SPANNING;
+
+        /**
+         * @return the number of longs needed for size values of the given bits
+         */
+        public int length(int size, int bits) {
+            if (this == NON_SPANNING) {
+                int valuesPerLong = 64 / bits;
+                return (size + valuesPerLong - 1) / valuesPerLong;
+            }
+            return (int) (((long) size * bits + 63) >>> 6);
+        }
+    }
+}
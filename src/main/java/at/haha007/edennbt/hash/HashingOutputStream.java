@@ -0,0 +1,35 @@
+package at.haha007.edennbt.hash;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Hashes everything written through it, e.g. canonical nbt on its way to a file.
+ */
+public class HashingOutputStream extends FilterOutputStream {
+    private final Murmur3Hasher hasher = new Murmur3Hasher();
+
+    public HashingOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        hasher.update(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        hasher.update(b, off, len);
+    }
+
+    /**
+     * @return the hash of everything written, the stream can't be written afterwards
+     */
+    public NbtHash getHash() {
+        return hasher.finish();
+    }
+}
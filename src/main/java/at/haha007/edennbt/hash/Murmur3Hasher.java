@@ -0,0 +1,108 @@
+package at.haha007.edennbt.hash;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Streaming MurmurHash3 x64 128 bit. Bytes can be fed in any chunks, the result only depends on their sequence.
+ */
+public final class Murmur3Hasher {
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private final byte[] block = new byte[16];
+    private int blockSize = 0;
+    private long length = 0;
+    private long h1;
+    private long h2;
+
+    public Murmur3Hasher() {
+        this(0);
+    }
+
+    public Murmur3Hasher(int seed) {
+        h1 = seed & 0xffffffffL;
+        h2 = seed & 0xffffffffL;
+    }
+
+    public void update(int b) {
+        block[blockSize++] = (byte) b;
+        length++;
+        if (blockSize == 16) {
+            mix(block, 0);
+            blockSize = 0;
+        }
+    }
+
+    public void update(byte[] bytes) {
+        update(bytes, 0, bytes.length);
+    }
+
+    public void update(byte[] bytes, int offset, int length) {
+        this.length += length;
+        int end = offset + length;
+        if (blockSize > 0) {
+            int n = Math.min(16 - blockSize, length);
+            System.arraycopy(bytes, offset, block, blockSize, n);
+            blockSize += n;
+            offset += n;
+            if (blockSize < 16)
+                return;
+            mix(block, 0);
+            blockSize = 0;
+        }
+        for (; offset + 16 <= end; offset += 16) {
+            mix(bytes, offset);
+        }
+        System.arraycopy(bytes, offset, block, 0, end - offset);
+        blockSize = end - offset;
+    }
+
+    /**
+     * @return the hash of all bytes so far, the hasher can't be used afterwards
+     */
+    public NbtHash finish() {
+        long k1 = 0;
+        long k2 = 0;
+        for (int i = blockSize - 1; i >= 8; i--) {
+            k2 = (k2 << 8) | (block[i] & 0xff);
+        }
+        for (int i = Math.min(blockSize, 8) - 1; i >= 0; i--) {
+            k1 = (k1 << 8) | (block[i] & 0xff);
+        }
+        h2 ^= Long.rotateLeft(k2 * C2, 33) * C1;
+        h1 ^= Long.rotateLeft(k1 * C1, 31) * C2;
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+        return new NbtHash(h1, h2);
+    }
+
+    private void mix(byte[] bytes, int offset) {
+        long k1 = (long) LONGS.get(bytes, offset);
+        long k2 = (long) LONGS.get(bytes, offset + 8);
+        h1 ^= Long.rotateLeft(k1 * C1, 31) * C2;
+        h1 = Long.rotateLeft(h1, 27) + h2;
+        h1 = h1 * 5 + 0x52dce729;
+        h2 ^= Long.rotateLeft(k2 * C2, 33) * C1;
+        h2 = Long.rotateLeft(h2, 31) + h1;
+        h2 = h2 * 5 + 0x38495ab5;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -0,0 +1,74 @@
+package at.haha007.edennbt.hash;
+
+import at.haha007.edennbt.element.ElementType;
+import at.haha007.edennbt.element.NbtElement;
+import at.haha007.edennbt.parser.*;
+
+/**
+ * 128 bit content hash of a tree, the MurmurHash3 of its canonical encoding as written with
+ * {@link BinaryCodecs#CANONICAL}. Equal trees have equal hashes.
+ *
+ * @param h1 the first half
+ * @param h2 the second half
+ */
+public record NbtHash(long h1, long h2) {
+    private static final int DRAIN_SIZE = 8192;
+    //CANONICAL, hashing the buffer after every payload that filled it
+    private static final CodecRegistry<NbtBinaryReader, NbtBinaryWriter> DRAINING = draining(BinaryCodecs.CANONICAL);
+
+    /**
+     * Hashes the canonical encoding of root without writing all of it to memory.
+     * The {@link BinaryCodecs#CANONICAL} codecs write into a small buffer that is hashed whenever it fills up.
+     */
+    public static NbtHash of(NbtElement root) {
+        HashingBuffer buffer = new HashingBuffer();
+        new NbtBinaryWriter(buffer, DRAINING).write(root);
+        buffer.drain();
+        return buffer.hasher.finish();
+    }
+
+    /**
+     * Hashes encoded bytes, equal to {@link #of(NbtElement)} of the decoded tree if they are canonical.
+     */
+    public static NbtHash of(byte[] encoded) {
+        Murmur3Hasher hasher = new Murmur3Hasher();
+        hasher.update(encoded);
+        return hasher.finish();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", h1, h2);
+    }
+
+    private static CodecRegistry<NbtBinaryReader, NbtBinaryWriter> draining(CodecRegistry<NbtBinaryReader, NbtBinaryWriter> codecs) {
+        CodecRegistry<NbtBinaryReader, NbtBinaryWriter> draining = codecs;
+        for (ElementType type : ElementType.values()) {
+            TagEncoder<NbtElement, NbtBinaryWriter> encoder = codecs.getEncoder(type);
+            TagEncoder<NbtElement, NbtBinaryWriter> drainingEncoder = (element, out) -> {
+                encoder.encode(element, out);
+                HashingBuffer buffer = (HashingBuffer) out.getBuffer();
+                if (buffer.size() >= DRAIN_SIZE)
+                    buffer.drain();
+            };
+            draining = draining.with(type, drainingEncoder, null);
+        }
+        return draining;
+    }
+
+    /**
+     * Buffer that passes its content to the hasher when drained.
+     */
+    private static final class HashingBuffer extends NbtOutputBuffer {
+        private final Murmur3Hasher hasher = new Murmur3Hasher();
+
+        private HashingBuffer() {
+            super(DRAIN_SIZE * 2);
+        }
+
+        private void drain() {
+            hasher.update(buf, 0, count);
+            reset();
+        }
+    }
+}
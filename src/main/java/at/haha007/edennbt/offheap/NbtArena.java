@@ -0,0 +1,388 @@
+package at.haha007.edennbt.offheap;
+
+import at.haha007.edennbt.element.*;
+import at.haha007.edennbt.parser.ModifiedUtf8;
+import at.haha007.edennbt.parser.NbtCursor;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Off-heap storage for nbt trees. Nodes live in one direct buffer and reference each other by offset,
+ * the heap only holds the arena and the handles in use, so large trees add almost nothing to GC work.
+ * <br>
+ * Every node starts with its type id, followed by its payload:
+ * <ul>
+ *     <li>numbers: the big endian value</li>
+ *     <li>string: unsigned short length, modified UTF-8 bytes</li>
+ *     <li>arrays: int length, values</li>
+ *     <li>list: element type, int size, int capacity, int offset of the node offset slots</li>
+ *     <li>compound: int size, int capacity, int offset of the entries, an entry is the offset of the key (a string payload) and of the value node</li>
+ * </ul>
+ * The arena only grows, replaced and removed nodes stay allocated until it is closed.
+ * Arenas and their handles are not thread safe.
+ */
+public final class NbtArena implements AutoCloseable {
+    static final int LIST_SIZE = 2;
+    static final int LIST_CAPACITY = 6;
+    static final int LIST_SLOTS = 10;
+    static final int COMPOUND_SIZE = 1;
+    static final int COMPOUND_CAPACITY = 5;
+    static final int COMPOUND_ENTRIES = 9;
+
+    private ByteBuffer memory;
+    private int top;
+
+    private NbtArena(int capacity) {
+        memory = ByteBuffer.allocateDirect(Math.max(capacity, 64));
+    }
+
+    /**
+     * @param capacity the initial size in bytes, the arena grows as needed
+     */
+    public static NbtArena allocate(int capacity) {
+        return new NbtArena(capacity);
+    }
+
+    public OffHeapCompound newCompound() {
+        return new OffHeapCompound(this, write(new NbtCompound()));
+    }
+
+    public OffHeapCompound copyOf(NbtCompound compound) {
+        return new OffHeapCompound(this, write(compound));
+    }
+
+    /**
+     * Decodes a binary nbt root compound directly into the arena, without building a heap tree.
+     *
+     * @throws IllegalArgumentException if the root is not a compound or a list or array length is invalid
+     */
+    public OffHeapCompound decode(byte[] encoded) {
+        NbtCursor cursor = new NbtCursor(encoded);
+        ElementType type = cursor.readRootHeader();
+        if (type != ElementType.COMPOUND)
+            throw new IllegalArgumentException("Expected COMPOUND but found " + type);
+        return new OffHeapCompound(this, write(cursor, type));
+    }
+
+    /**
+     * @return the bytes allocated for nodes, including replaced ones
+     */
+    public int getUsedBytes() {
+        return top;
+    }
+
+    public int getCapacity() {
+        return memory().capacity();
+    }
+
+    public boolean isClosed() {
+        return memory == null;
+    }
+
+    /**
+     * Releases the buffer, all handles become unusable.
+     * Direct buffers can't be freed explicitly, the memory is returned when the now unreferenced buffer is collected.
+     */
+    @Override
+    public void close() {
+        memory = null;
+    }
+
+    ByteBuffer memory() {
+        if (memory == null)
+            throw new IllegalStateException("Arena is closed");
+        return memory;
+    }
+
+    ElementType type(int node) {
+        return ElementType.byId(memory().get(node));
+    }
+
+    /**
+     * @return the offset of the newly allocated bytes
+     */
+    int reserve(int bytes) {
+        ByteBuffer memory = memory();
+        if (bytes < 0 || top > Integer.MAX_VALUE - bytes)
+            throw new IllegalStateException("Arena exceeds 2 GiB");
+        if (top + bytes > memory.capacity()) {
+            int capacity = (int) Math.min(Integer.MAX_VALUE, Math.max((long) memory.capacity() * 2, (long) top + bytes));
+            ByteBuffer grown = ByteBuffer.allocateDirect(capacity);
+            grown.put(0, memory, 0, top);
+            this.memory = grown;
+        }
+        int offset = top;
+        top += bytes;
+        return offset;
+    }
+
+    /**
+     * Writes a copy of element, reusing existing if it is a number of the same type.
+     *
+     * @param existing the node to replace, -1 if there is none
+     * @return the offset of the node
+     */
+    int write(NbtElement element, int existing) {
+        ElementType type = element.getType();
+        int size = NbtCursor.fixedSize(type);
+        if (existing >= 0 && size > 0 && type(existing) == type) {
+            writeNumber(existing + 1, element);
+            return existing;
+        }
+        return write(element);
+    }
+
+    int write(NbtElement element) {
+        ElementType type = element.getType();
+        int size = NbtCursor.fixedSize(type);
+        if (size > 0) {
+            int node = node(type, size);
+            writeNumber(node + 1, element);
+            return node;
+        }
+        return switch (element) {
+            case NbtString string -> writeString(string.getValue());
+            case NbtByteArray array -> {
+                byte[] value = array.peekValue();
+                int node = node(type, 4 + value.length);
+                memory().putInt(node + 1, value.length).put(node + 5, value);
+                yield node;
+            }
+            case NbtIntArray array -> {
+                int[] value = array.peekValue();
+                int node = node(type, 4 + value.length * 4);
+                ByteBuffer memory = memory().putInt(node + 1, value.length);
+                for (int i = 0; i < value.length; i++) {
+                    memory.putInt(node + 5 + i * 4, value[i]);
+                }
+                yield node;
+            }
+            case NbtLongArray array -> {
+                long[] value = array.peekValue();
+                int node = node(type, 4 + value.length * 8);
+                ByteBuffer memory = memory().putInt(node + 1, value.length);
+                for (int i = 0; i < value.length; i++) {
+                    memory.putLong(node + 5 + i * 8, value[i]);
+                }
+                yield node;
+            }
+            case NbtList<?> list -> {
+                int[] slots = new int[list.size()];
+                for (int i = 0; i < slots.length; i++) {
+                    slots[i] = write(list.get(i));
+                }
+                yield writeList(list.getSubType(), slots, slots.length);
+            }
+            case NbtCompound compound -> {
+                Map<String, NbtElement> elements = compound.getElements();
+                int[] entries = new int[elements.size() * 2];
+                int i = 0;
+                for (Map.Entry<String, NbtElement> entry : elements.entrySet()) {
+                    entries[i++] = writeKey(entry.getKey());
+                    entries[i++] = write(entry.getValue());
+                }
+                yield writeCompound(entries, elements.size());
+            }
+            default -> throw new IllegalArgumentException("Unexpected " + type);
+        };
+    }
+
+    private int write(NbtCursor cursor, ElementType type) {
+        int size = NbtCursor.fixedSize(type);
+        if (size > 0) {
+            int node = node(type, size);
+            memory().put(node + 1, cursor.getData(), cursor.getPosition(), size);
+            cursor.setPosition(cursor.getPosition() + size);
+            return node;
+        }
+        return switch (type) {
+            case STRING -> writeString(cursor.readString());
+            case BYTE_ARRAY, INT_ARRAY, LONG_ARRAY -> {
+                int start = cursor.getPosition();
+                int elements = cursor.readInt();
+                //checked as long before the node is allocated, the byte length may overflow int
+                long bytes = (long) elements * (type == ElementType.BYTE_ARRAY ? 1 : type == ElementType.INT_ARRAY ? 4 : 8);
+                if (elements < 0 || bytes > cursor.getData().length - cursor.getPosition())
+                    throw new IllegalArgumentException("Invalid " + type + " length: " + elements);
+                //the array layout equals the encoded payload
+                int length = 4 + (int) bytes;
+                cursor.setPosition(start + length);
+                int node = node(type, length);
+                memory().put(node + 1, cursor.getData(), start, length);
+                yield node;
+            }
+            case LIST -> {
+                ElementType elementType = cursor.readType();
+                int listSize = cursor.readInt();
+                //every element takes at least one byte, checked before the slots are allocated
+                if (listSize < 0 || listSize > cursor.getData().length - cursor.getPosition())
+                    throw new IllegalArgumentException("Invalid list size: " + listSize);
+                int[] slots = new int[listSize];
+                for (int i = 0; i < slots.length; i++) {
+                    slots[i] = write(cursor, elementType);
+                }
+                yield writeList(elementType, slots, slots.length);
+            }
+            case COMPOUND -> {
+                int[] entries = new int[16];
+                int count = 0;
+                ElementType entryType = cursor.readType();
+                while (entryType != ElementType.END) {
+                    if (count * 2 == entries.length)
+                        entries = Arrays.copyOf(entries, entries.length * 2);
+                    entries[count * 2] = writeKey(cursor.readString());
+                    entries[count * 2 + 1] = write(cursor, entryType);
+                    count++;
+                    entryType = cursor.readType();
+                }
+                yield writeCompound(entries, count);
+            }
+            default -> throw new IllegalArgumentException("Unexpected " + type);
+        };
+    }
+
+    /**
+     * @return a heap copy of the node
+     */
+    NbtElement read(int node) {
+        ByteBuffer memory = memory();
+        ElementType type = type(node);
+        int payload = node + 1;
+        return switch (type) {
+            case BYTE -> new NbtByte(memory.get(payload));
+            case SHORT -> new NbtShort(memory.getShort(payload));
+            case INT -> new NbtInt(memory.getInt(payload));
+            case LONG -> new NbtLong(memory.getLong(payload));
+            case FLOAT -> new NbtFloat(memory.getFloat(payload));
+            case DOUBLE -> new NbtDouble(memory.getDouble(payload));
+            case STRING -> new NbtString(readKey(payload));
+            case BYTE_ARRAY -> {
+                byte[] value = new byte[memory.getInt(payload)];
+                memory.get(payload + 4, value);
+                yield new NbtByteArray(value);
+            }
+            case INT_ARRAY -> {
+                int[] value = new int[memory.getInt(payload)];
+                for (int i = 0; i < value.length; i++) {
+                    value[i] = memory.getInt(payload + 4 + i * 4);
+                }
+                yield new NbtIntArray(value);
+            }
+            case LONG_ARRAY -> {
+                long[] value = new long[memory.getInt(payload)];
+                for (int i = 0; i < value.length; i++) {
+                    value[i] = memory.getLong(payload + 4 + i * 8);
+                }
+                yield new NbtLongArray(value);
+            }
+            case LIST -> new OffHeapList(this, node).toNbt();
+            case COMPOUND -> new OffHeapCompound(this, node).toNbt();
+            default -> throw new IllegalArgumentException("Unexpected " + type);
+        };
+    }
+
+    /**
+     * @return the offset of a string payload holding key
+     */
+    int writeKey(String key) {
+        byte[] bytes = encode(key);
+        int offset = reserve(2 + bytes.length);
+        memory().putShort(offset, (short) bytes.length).put(offset + 2, bytes);
+        return offset;
+    }
+
+    String readKey(int offset) {
+        ByteBuffer memory = memory();
+        byte[] bytes = new byte[memory.getShort(offset) & 0xffff];
+        memory.get(offset + 2, bytes);
+        return ModifiedUtf8.decode(bytes, 0, bytes.length);
+    }
+
+    boolean keyEquals(int offset, byte[] key) {
+        ByteBuffer memory = memory();
+        if ((memory.getShort(offset) & 0xffff) != key.length)
+            return false;
+        for (int i = 0; i < key.length; i++) {
+            if (memory.get(offset + 2 + i) != key[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Copies count ints from src to a new block with room for capacity ints.
+     *
+     * @return the offset of the new block
+     */
+    int copyInts(int src, int count, int capacity) {
+        int block = reserve(capacity * 4);
+        ByteBuffer memory = memory();
+        for (int i = 0; i < count; i++) {
+            memory.putInt(block + i * 4, memory.getInt(src + i * 4));
+        }
+        return block;
+    }
+
+    private int node(ElementType type, int payload) {
+        int node = reserve(1 + payload);
+        memory().put(node, type.getId());
+        return node;
+    }
+
+    private int writeString(String value) {
+        byte[] bytes = encode(value);
+        //the payload has the key layout
+        int node = node(ElementType.STRING, 2 + bytes.length);
+        memory().putShort(node + 1, (short) bytes.length).put(node + 3, bytes);
+        return node;
+    }
+
+    private static byte[] encode(String value) {
+        byte[] bytes = ModifiedUtf8.encode(value);
+        if (bytes.length > 0xffff)
+            throw new IllegalArgumentException("String too long: " + bytes.length + " bytes");
+        return bytes;
+    }
+
+    private void writeNumber(int payload, NbtElement element) {
+        ByteBuffer memory = memory();
+        switch (element) {
+            case NbtByte b -> memory.put(payload, b.getValue());
+            case NbtShort s -> memory.putShort(payload, s.getValue());
+            case NbtInt i -> memory.putInt(payload, i.getValue());
+            case NbtLong l -> memory.putLong(payload, l.getValue());
+            case NbtFloat f -> memory.putFloat(payload, f.getValue());
+            case NbtDouble d -> memory.putDouble(payload, d.getValue());
+            default -> throw new IllegalArgumentException("Not a number: " + element.getType());
+        }
+    }
+
+    private int writeList(ElementType elementType, int[] slots, int size) {
+        int node = node(ElementType.LIST, 13);
+        int block = reserve(Math.max(size, 1) * 4);
+        ByteBuffer memory = memory();
+        for (int i = 0; i < size; i++) {
+            memory.putInt(block + i * 4, slots[i]);
+        }
+        memory.put(node + 1, elementType.getId())
+                .putInt(node + LIST_SIZE, size)
+                .putInt(node + LIST_CAPACITY, Math.max(size, 1))
+                .putInt(node + LIST_SLOTS, block);
+        return node;
+    }
+
+    private int writeCompound(int[] entries, int size) {
+        int node = node(ElementType.COMPOUND, 12);
+        int block = reserve(Math.max(size, 1) * 8);
+        ByteBuffer memory = memory();
+        for (int i = 0; i < size * 2; i++) {
+            memory.putInt(block + i * 4, entries[i]);
+        }
+        memory.putInt(node + COMPOUND_SIZE, size)
+                .putInt(node + COMPOUND_CAPACITY, Math.max(size, 1))
+                .putInt(node + COMPOUND_ENTRIES, block);
+        return node;
+    }
+}
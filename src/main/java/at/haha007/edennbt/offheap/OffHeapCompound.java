@@ -0,0 +1,205 @@
+package at.haha007.edennbt.offheap;
+
+import at.haha007.edennbt.element.ElementType;
+import at.haha007.edennbt.element.NbtCompound;
+import at.haha007.edennbt.element.NbtElement;
+import at.haha007.edennbt.parser.ModifiedUtf8;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import static at.haha007.edennbt.offheap.NbtArena.*;
+
+/**
+ * Handle to a compound node in a {@link NbtArena}, with accessors like {@link NbtCompound}.
+ * Entries keep their insertion order. Lookups compare the encoded keys, compounds are expected to be small.
+ * <br>
+ * Typed getters throw an {@link IllegalArgumentException} if the key is missing or has another type.
+ * Putting a number over a number of the same type overwrites it in place, everything else allocates a new node.
+ */
+public final class OffHeapCompound {
+    private final NbtArena arena;
+    private final int node;
+
+    OffHeapCompound(NbtArena arena, int node) {
+        this.arena = arena;
+        this.node = node;
+    }
+
+    public int size() {
+        return arena.memory().getInt(node + COMPOUND_SIZE);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean containsKey(String key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * @return the type of the value of key, null if there is none
+     */
+    public ElementType getType(String key) {
+        int value = value(key);
+        return value < 0 ? null : arena.type(value);
+    }
+
+    public Set<String> keySet() {
+        Set<String> keys = new LinkedHashSet<>();
+        ByteBuffer memory = arena.memory();
+        int entries = memory.getInt(node + COMPOUND_ENTRIES);
+        for (int i = 0; i < size(); i++) {
+            keys.add(arena.readKey(memory.getInt(entries + i * 8)));
+        }
+        return keys;
+    }
+
+    /**
+     * @return a heap copy of the value of key, null if there is none
+     */
+    public NbtElement get(String key) {
+        int value = value(key);
+        return value < 0 ? null : arena.read(value);
+    }
+
+    public byte getByte(String key) {
+        return arena.memory().get(payload(key, ElementType.BYTE));
+    }
+
+    public short getShort(String key) {
+        return arena.memory().getShort(payload(key, ElementType.SHORT));
+    }
+
+    public int getInt(String key) {
+        return arena.memory().getInt(payload(key, ElementType.INT));
+    }
+
+    public long getLong(String key) {
+        return arena.memory().getLong(payload(key, ElementType.LONG));
+    }
+
+    public float getFloat(String key) {
+        return arena.memory().getFloat(payload(key, ElementType.FLOAT));
+    }
+
+    public double getDouble(String key) {
+        return arena.memory().getDouble(payload(key, ElementType.DOUBLE));
+    }
+
+    public String getString(String key) {
+        return arena.readKey(payload(key, ElementType.STRING));
+    }
+
+    public OffHeapCompound getCompound(String key) {
+        return new OffHeapCompound(arena, payload(key, ElementType.COMPOUND) - 1);
+    }
+
+    public OffHeapList getList(String key) {
+        return new OffHeapList(arena, payload(key, ElementType.LIST) - 1);
+    }
+
+    /**
+     * Stores a copy of value.
+     */
+    public void put(String key, NbtElement value) {
+        int entry = find(key);
+        ByteBuffer memory = arena.memory();
+        if (entry >= 0) {
+            int node = arena.write(value, memory.getInt(entry + 4));
+            arena.memory().putInt(entry + 4, node);
+            return;
+        }
+        int keyOffset = arena.writeKey(key);
+        int valueNode = arena.write(value);
+        int size = size();
+        memory = arena.memory();
+        int capacity = memory.getInt(node + COMPOUND_CAPACITY);
+        int entries = memory.getInt(node + COMPOUND_ENTRIES);
+        if (size == capacity) {
+            capacity *= 2;
+            entries = arena.copyInts(entries, size * 2, capacity * 2);
+            memory = arena.memory();
+            memory.putInt(node + COMPOUND_CAPACITY, capacity).putInt(node + COMPOUND_ENTRIES, entries);
+        }
+        memory.putInt(entries + size * 8, keyOffset)
+                .putInt(entries + size * 8 + 4, valueNode)
+                .putInt(node + COMPOUND_SIZE, size + 1);
+    }
+
+    /**
+     * Adds an empty compound and returns its handle.
+     */
+    public OffHeapCompound putCompound(String key) {
+        put(key, new NbtCompound());
+        return getCompound(key);
+    }
+
+    /**
+     * @return true if key was present
+     */
+    public boolean remove(String key) {
+        int entry = find(key);
+        if (entry < 0)
+            return false;
+        ByteBuffer memory = arena.memory();
+        int size = size();
+        int end = memory.getInt(node + COMPOUND_ENTRIES) + size * 8;
+        for (int i = entry; i + 8 < end; i += 8) {
+            memory.putLong(i, memory.getLong(i + 8));
+        }
+        memory.putInt(node + COMPOUND_SIZE, size - 1);
+        return true;
+    }
+
+    /**
+     * @return a heap copy of this compound
+     */
+    public NbtCompound toNbt() {
+        NbtCompound compound = new NbtCompound();
+        ByteBuffer memory = arena.memory();
+        int entries = memory.getInt(node + COMPOUND_ENTRIES);
+        for (int i = 0; i < size(); i++) {
+            compound.put(arena.readKey(memory.getInt(entries + i * 8)), arena.read(memory.getInt(entries + i * 8 + 4)));
+        }
+        return compound;
+    }
+
+    @Override
+    public String toString() {
+        return toNbt().toString();
+    }
+
+    /**
+     * @return the offset of the entry of key, -1 if there is none
+     */
+    private int find(String key) {
+        byte[] encoded = ModifiedUtf8.encode(key);
+        ByteBuffer memory = arena.memory();
+        int entries = memory.getInt(node + COMPOUND_ENTRIES);
+        int size = size();
+        for (int i = 0; i < size; i++) {
+            int entry = entries + i * 8;
+            if (arena.keyEquals(memory.getInt(entry), encoded))
+                return entry;
+        }
+        return -1;
+    }
+
+    private int value(String key) {
+        int entry = find(key);
+        return entry < 0 ? -1 : arena.memory().getInt(entry + 4);
+    }
+
+    private int payload(String key, ElementType type) {
+        int value = value(key);
+        if (value < 0)
+            throw new IllegalArgumentException("No entry " + key);
+        ElementType actual = arena.type(value);
+        if (actual != type)
+            throw new IllegalArgumentException("Expected " + type + " but found " + actual + " at " + key);
+        return value + 1;
+    }
+}
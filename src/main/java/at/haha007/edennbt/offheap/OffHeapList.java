@@ -0,0 +1,160 @@
+package at.haha007.edennbt.offheap;
+
+import at.haha007.edennbt.element.ElementType;
+import at.haha007.edennbt.element.NbtCompound;
+import at.haha007.edennbt.element.NbtElement;
+import at.haha007.edennbt.element.NbtList;
+
+import java.nio.ByteBuffer;
+
+import static at.haha007.edennbt.offheap.NbtArena.*;
+
+/**
+ * Handle to a list node in a {@link NbtArena}, with accessors like {@link NbtList}.
+ * Like {@link NbtList} all elements have the same type, an empty list takes the type of the first added element.
+ *
+ * @see OffHeapCompound
+ */
+public final class OffHeapList {
+    private final NbtArena arena;
+    private final int node;
+
+    OffHeapList(NbtArena arena, int node) {
+        this.arena = arena;
+        this.node = node;
+    }
+
+    public int size() {
+        return arena.memory().getInt(node + LIST_SIZE);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public ElementType getElementType() {
+        return arena.type(node + 1);
+    }
+
+    /**
+     * @return a heap copy of the element at index
+     */
+    public NbtElement get(int index) {
+        return arena.read(element(index));
+    }
+
+    public int getInt(int index) {
+        return arena.memory().getInt(payload(index, ElementType.INT));
+    }
+
+    public long getLong(int index) {
+        return arena.memory().getLong(payload(index, ElementType.LONG));
+    }
+
+    public double getDouble(int index) {
+        return arena.memory().getDouble(payload(index, ElementType.DOUBLE));
+    }
+
+    public String getString(int index) {
+        return arena.readKey(payload(index, ElementType.STRING));
+    }
+
+    public OffHeapCompound getCompound(int index) {
+        return new OffHeapCompound(arena, payload(index, ElementType.COMPOUND) - 1);
+    }
+
+    public OffHeapList getList(int index) {
+        return new OffHeapList(arena, payload(index, ElementType.LIST) - 1);
+    }
+
+    /**
+     * Stores a copy of value at index.
+     */
+    public void set(int index, NbtElement value) {
+        checkType(value);
+        int slot = slot(index);
+        int written = arena.write(value, arena.memory().getInt(slot));
+        arena.memory().putInt(slot, written);
+    }
+
+    /**
+     * Appends a copy of value.
+     */
+    public void add(NbtElement value) {
+        checkType(value);
+        int written = arena.write(value);
+        int size = size();
+        ByteBuffer memory = arena.memory();
+        int capacity = memory.getInt(node + LIST_CAPACITY);
+        int slots = memory.getInt(node + LIST_SLOTS);
+        if (size == capacity) {
+            capacity *= 2;
+            slots = arena.copyInts(slots, size, capacity);
+            memory = arena.memory();
+            memory.putInt(node + LIST_CAPACITY, capacity).putInt(node + LIST_SLOTS, slots);
+        }
+        memory.put(node + 1, value.getType().getId())
+                .putInt(slots + size * 4, written)
+                .putInt(node + LIST_SIZE, size + 1);
+    }
+
+    /**
+     * Appends an empty compound and returns its handle.
+     */
+    public OffHeapCompound addCompound() {
+        add(new NbtCompound());
+        return getCompound(size() - 1);
+    }
+
+    public void remove(int index) {
+        int slot = slot(index);
+        ByteBuffer memory = arena.memory();
+        int size = size();
+        int end = memory.getInt(node + LIST_SLOTS) + size * 4;
+        for (int i = slot; i + 4 < end; i += 4) {
+            memory.putInt(i, memory.getInt(i + 4));
+        }
+        memory.putInt(node + LIST_SIZE, size - 1);
+    }
+
+    /**
+     * @return a heap copy of this list
+     */
+    public NbtList<?> toNbt() {
+        @SuppressWarnings("unchecked")
+        NbtList<NbtElement> list = new NbtList<>((Class<NbtElement>) getElementType().getNbtClass());
+        for (int i = 0; i < size(); i++) {
+            list.add(get(i));
+        }
+        return list;
+    }
+
+    @Override
+    public String toString() {
+        return toNbt().toString();
+    }
+
+    private void checkType(NbtElement value) {
+        ElementType type = getElementType();
+        if (!isEmpty() && type != value.getType())
+            throw new IllegalArgumentException("Expected " + type + " but found " + value.getType());
+    }
+
+    private int slot(int index) {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException(index);
+        return arena.memory().getInt(node + LIST_SLOTS) + index * 4;
+    }
+
+    private int element(int index) {
+        return arena.memory().getInt(slot(index));
+    }
+
+    private int payload(int index, ElementType type) {
+        int element = element(index);
+        ElementType actual = arena.type(element);
+        if (actual != type)
+            throw new IllegalArgumentException("Expected " + type + " but found " + actual + " at " + index);
+        return element + 1;
+    }
+}
@@ -0,0 +1,167 @@
+package at.haha007.edennbt.parser;
+
+import at.haha007.edennbt.element.NbtElement;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.concurrent.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Loads and saves binary nbt files without blocking the calling thread.
+ * <br>
+ * Every operation runs on its own virtual thread, a semaphore limits how many of them access the disk at once.
+ * Cancelling a returned future interrupts the operation, pending operations never touch the file
+ * and running ones are aborted by the interruptible file channel.
+ * Saves write a temporary file next to the target, force it to disk and move it over the target,
+ * then force the directory where the platform allows it. A crash leaves either the old or the new file.
+ */
+public class AsyncNbtFiles implements AutoCloseable {
+    private final IOStreamParser parser;
+    private final Semaphore permits;
+    private final boolean compressed;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * @param maxConcurrent the maximum number of files accessed at the same time
+     * @param compressed    whether the files are gzip compressed, like player and level data
+     */
+    public AsyncNbtFiles(int maxConcurrent, boolean compressed) {
+        this(new IOStreamParser(), maxConcurrent, compressed);
+    }
+
+    public AsyncNbtFiles(IOStreamParser parser, int maxConcurrent, boolean compressed) {
+        if (maxConcurrent <= 0)
+            throw new IllegalArgumentException("maxConcurrent must be positive");
+        this.parser = parser;
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.compressed = compressed;
+    }
+
+    public CompletableFuture<NbtElement> load(Path path) {
+        return submit(() -> {
+            try (InputStream in = open(path)) {
+                return parser.read(in);
+            }
+        });
+    }
+
+    /**
+     * Encodes element on the calling thread, so it can be changed again as soon as this returns,
+     * and writes the bytes in the background.
+     */
+    public CompletableFuture<Void> save(Path path, NbtElement element) {
+        NbtOutputBuffer buffer = (NbtOutputBuffer) parser.write(element);
+        return submit(() -> {
+            replace(path, buffer, compressed);
+            return null;
+        });
+    }
+
+    /**
+     * Writes buffer to a temporary file next to path, forces it to disk and moves it over path.
+     * The temporary file is created like any new file and gets the permissions of an existing target,
+     * the move carries them over to path.
+     */
+    static void replace(Path path, NbtOutputBuffer buffer, boolean compressed) throws IOException {
+        Path absolute = path.toAbsolutePath();
+        Path temp = absolute.resolveSibling(absolute.getFileName() + "."
+                + Long.toUnsignedString(ThreadLocalRandom.current().nextLong(), 36) + ".tmp");
+        //not Files.createTempFile, its files are readable by the owner only
+        FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        try {
+            //the data has to be on disk before the move, otherwise a power loss can keep the move but not the data
+            try (channel; OutputStream out = create(Channels.newOutputStream(channel), compressed)) {
+                buffer.writeTo(out);
+                if (out instanceof GZIPOutputStream gzip)
+                    gzip.finish();
+                channel.force(true);
+            }
+            copyPermissions(absolute, temp);
+            Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory(absolute.getParent());
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Copies the posix permissions of source to target, if source exists and the file system has them.
+     */
+    private static void copyPermissions(Path source, Path target) throws IOException {
+        if (Files.getFileAttributeView(source, PosixFileAttributeView.class) == null)
+            return;
+        try {
+            Files.setPosixFilePermissions(target, Files.getPosixFilePermissions(source));
+        } catch (NoSuchFileException e) {
+            //a new file keeps the default permissions
+        }
+    }
+
+    /**
+     * Forces the directory entry of a moved file to disk. Not every platform can open directories,
+     * there the move is as durable as the file system makes it.
+     */
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException | UnsupportedOperationException e) {
+            //directories can't be opened on windows
+        }
+    }
+
+    /**
+     * Waits for all submitted operations, then stops accepting new ones.
+     */
+    @Override
+    public void close() {
+        executor.close();
+    }
+
+    private InputStream open(Path path) throws IOException {
+        //Files streams are backed by an interruptible channel
+        InputStream in = new BufferedInputStream(Files.newInputStream(path));
+        return compressed ? new GZIPInputStream(in) : in;
+    }
+
+    private static OutputStream create(OutputStream out, boolean compressed) throws IOException {
+        return compressed ? new GZIPOutputStream(out) : out;
+    }
+
+    private <T> CompletableFuture<T> submit(Callable<T> operation) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task = executor.submit(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                result.cancel(false);
+                return;
+            }
+            try {
+                if (!result.isDone())
+                    result.complete(operation.call());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            } finally {
+                permits.release();
+            }
+        });
+        //CompletableFuture#cancel does not interrupt, forward it to the task
+        result.whenComplete((value, throwable) -> {
+            if (result.isCancelled())
+                task.cancel(true);
+        });
+        return result;
+    }
+}
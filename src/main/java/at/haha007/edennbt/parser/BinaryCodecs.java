@@ -0,0 +1,236 @@
+package at.haha007.edennbt.parser;
+
+import at.haha007.edennbt.element.*;
+import lombok.SneakyThrows;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * The codecs of binary nbt.
+ * Custom registries can be derived from {@link #DEFAULT} to replace single types, e.g. to pool arrays.
+ */
+public final class BinaryCodecs {
+    public static final CodecRegistry<NbtBinaryReader, NbtBinaryWriter> DEFAULT = new CodecRegistry<NbtBinaryReader, NbtBinaryWriter>()
+            .with(ElementType.END, BinaryCodecs::writeEnd, BinaryCodecs::readEnd)
+            .with(ElementType.BYTE, BinaryCodecs::writeByte, BinaryCodecs::readByte)
+            .with(ElementType.SHORT, BinaryCodecs::writeShort, BinaryCodecs::readShort)
+            .with(ElementType.INT, BinaryCodecs::writeInt, BinaryCodecs::readInt)
+            .with(ElementType.LONG, BinaryCodecs::writeLong, BinaryCodecs::readLong)
+            .with(ElementType.FLOAT, BinaryCodecs::writeFloat, BinaryCodecs::readFloat)
+            .with(ElementType.DOUBLE, BinaryCodecs::writeDouble, BinaryCodecs::readDouble)
+            .with(ElementType.BYTE_ARRAY, BinaryCodecs::writeByteArray, BinaryCodecs::readByteArray)
+            .with(ElementType.STRING, BinaryCodecs::writeString, BinaryCodecs::readString)
+            .with(ElementType.LIST, BinaryCodecs::writeList, BinaryCodecs::readList)
+            .with(ElementType.COMPOUND, BinaryCodecs::writeCompound, BinaryCodecs::readCompound)
+            .with(ElementType.INT_ARRAY, BinaryCodecs::writeIntArray, BinaryCodecs::readIntArray)
+            .with(ElementType.LONG_ARRAY, BinaryCodecs::writeLongArray, BinaryCodecs::readLongArray);
+
+    /**
+     * Writes equal trees as equal bytes: compound keys in {@link String#compareTo(String)} order,
+     * empty lists with element type END and NaN as the canonical NaN. Change tracking caches are ignored.
+     * Reading is the same as {@link #DEFAULT}.
+     */
+    public static final CodecRegistry<NbtBinaryReader, NbtBinaryWriter> CANONICAL = DEFAULT
+            .with(ElementType.LIST, BinaryCodecs::writeCanonicalList, null)
+            .with(ElementType.COMPOUND, BinaryCodecs::writeCanonicalCompound, null);
+
+    private BinaryCodecs() {
+    }
+
+    private static void writeEnd(NbtEnd nbt, NbtBinaryWriter out) {
+        throw new IllegalArgumentException("END tag is not allowed");
+    }
+
+    @SneakyThrows
+    private static NbtEnd readEnd(NbtBinaryReader in) {
+        throw new ParseException("Unexpected END tag", 0);
+    }
+
+    private static void writeByte(NbtByte nbt, NbtBinaryWriter out) {
+        out.writeByte(nbt.getValue());
+    }
+
+    private static NbtByte readByte(NbtBinaryReader in) throws IOException {
+        return new NbtByte(in.readByte());
+    }
+
+    private static void writeShort(NbtShort nbt, NbtBinaryWriter out) {
+        out.writeShort(nbt.getValue());
+    }
+
+    private static NbtShort readShort(NbtBinaryReader in) throws IOException {
+        return new NbtShort(in.readShort());
+    }
+
+    private static void writeInt(NbtInt nbt, NbtBinaryWriter out) {
+        out.writeInt(nbt.getValue());
+    }
+
+    private static NbtInt readInt(NbtBinaryReader in) throws IOException {
+        return new NbtInt(in.readInt());
+    }
+
+    private static void writeLong(NbtLong nbt, NbtBinaryWriter out) {
+        out.writeLong(nbt.getValue());
+    }
+
+    private static NbtLong readLong(NbtBinaryReader in) throws IOException {
+        return new NbtLong(in.readLong());
+    }
+
+    private static void writeFloat(NbtFloat nbt, NbtBinaryWriter out) {
+        out.writeFloat(nbt.getValue());
+    }
+
+    private static NbtFloat readFloat(NbtBinaryReader in) throws IOException {
+        return new NbtFloat(in.readFloat());
+    }
+
+    private static void writeDouble(NbtDouble nbt, NbtBinaryWriter out) {
+        out.writeDouble(nbt.getValue());
+    }
+
+    private static NbtDouble readDouble(NbtBinaryReader in) throws IOException {
+        return new NbtDouble(in.readDouble());
+    }
+
+    private static void writeByteArray(NbtByteArray nbt, NbtBinaryWriter out) {
+        out.writeInt(nbt.peekValue().length);
+        out.writeBytes(nbt.peekValue());
+    }
+
+    private static NbtByteArray readByteArray(NbtBinaryReader in) throws IOException {
+        return new NbtByteArray(in.readBytes(in.readInt()));
+    }
+
+    private static void writeString(NbtString nbt, NbtBinaryWriter out) {
+        out.writeString(nbt.getValue());
+    }
+
+    private static NbtString readString(NbtBinaryReader in) throws IOException {
+        return new NbtString(in.readString());
+    }
+
+    /**
+     * Change tracking caches hold the encoding of {@link #DEFAULT}, registries derived from it may encode
+     * leaves differently and neither read nor fill the caches.
+     */
+    private static boolean isCaching(NbtBinaryWriter out) {
+        return out.getCodecs() == DEFAULT;
+    }
+
+    /**
+     * Writes the payload cached by change tracking, if there is one.
+     */
+    private static boolean writeCached(NbtElement nbt, NbtBinaryWriter out) {
+        if (!isCaching(out))
+            return false;
+        byte[] cached = nbt.getEncodedPayload();
+        if (cached == null)
+            return false;
+        out.writeBytes(cached);
+        return true;
+    }
+
+    private static void writeList(NbtList<?> list, NbtBinaryWriter out) {
+        if (writeCached(list, out))
+            return;
+        NbtOutputBuffer buffer = out.getBuffer();
+        int start = buffer.size();
+        out.writeType(list.getSubType());
+        out.writeInt(list.size());
+        for (NbtElement element : list) {
+            out.writePayload(element);
+        }
+        if (list.isTracking() && isCaching(out))
+            list.setEncodedPayload(buffer.copyFrom(start));
+    }
+
+    private static NbtList<?> readList(NbtBinaryReader in) throws IOException {
+        ElementType listType = in.readType();
+        int size = in.readInt();
+        @SuppressWarnings("unchecked")
+        NbtList<NbtElement> list = new NbtList<>((Class<NbtElement>) listType.getNbtClass());
+        for (int i = 0; i < size; i++) {
+            list.add(in.readPayload(listType));
+        }
+        return list;
+    }
+
+    private static void writeCompound(NbtCompound compound, NbtBinaryWriter out) {
+        if (writeCached(compound, out))
+            return;
+        NbtOutputBuffer buffer = out.getBuffer();
+        int start = buffer.size();
+        compound.getElements().forEach((key, value) -> {
+            //type, name, value
+            out.writeType(value.getType());
+            out.writeString(key);
+            out.writePayload(value);
+        });
+        out.writeType(ElementType.END);
+        if (compound.isTracking() && isCaching(out))
+            compound.setEncodedPayload(buffer.copyFrom(start));
+    }
+
+    private static void writeCanonicalList(NbtList<?> list, NbtBinaryWriter out) {
+        out.writeType(list.isEmpty() ? ElementType.END : list.getSubType());
+        out.writeInt(list.size());
+        for (NbtElement element : list) {
+            out.writePayload(element);
+        }
+    }
+
+    private static void writeCanonicalCompound(NbtCompound compound, NbtBinaryWriter out) {
+        Map<String, NbtElement> elements = compound.getElements();
+        for (String key : sortedKeys(elements)) {
+            NbtElement value = elements.get(key);
+            out.writeType(value.getType());
+            out.writeString(key);
+            out.writePayload(value);
+        }
+        out.writeType(ElementType.END);
+    }
+
+    /**
+     * @return the keys in the order of the canonical encoding
+     */
+    public static String[] sortedKeys(Map<String, NbtElement> elements) {
+        String[] keys = elements.keySet().toArray(String[]::new);
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    private static NbtCompound readCompound(NbtBinaryReader in) throws IOException {
+        NbtCompound compound = new NbtCompound();
+        ElementType subType = in.readType();
+        while (subType != ElementType.END) {
+            compound.put(in.readString(), in.readPayload(subType));
+            subType = in.readType();
+        }
+        return compound;
+    }
+
+    private static void writeIntArray(NbtIntArray nbt, NbtBinaryWriter out) {
+        int[] value = nbt.peekValue();
+        out.writeInt(value.length);
+        out.writeInts(value);
+    }
+
+    private static NbtIntArray readIntArray(NbtBinaryReader in) throws IOException {
+        return new NbtIntArray(in.readInts(in.readInt()));
+    }
+
+    private static void writeLongArray(NbtLongArray nbt, NbtBinaryWriter out) {
+        long[] value = nbt.peekValue();
+        out.writeInt(value.length);
+        out.writeLongs(value);
+    }
+
+    private static NbtLongArray readLongArray(NbtBinaryReader in) throws IOException {
+        return new NbtLongArray(in.readLongs(in.readInt()));
+    }
+}
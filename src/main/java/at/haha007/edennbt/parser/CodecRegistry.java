@@ -0,0 +1,69 @@
+package at.haha007.edennbt.parser;
+
+import at.haha007.edennbt.element.ElementType;
+import at.haha007.edennbt.element.NbtElement;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Table of per type encoders and decoders of one format, indexed by tag id.
+ * Registries are immutable, {@link #with(ElementType, TagEncoder, TagDecoder)} returns a changed copy.
+ *
+ * @param <R> the reader of the format
+ * @param <W> the writer of the format
+ * @see BinaryCodecs
+ */
+public final class CodecRegistry<R, W> {
+    private final TagEncoder<NbtElement, W>[] encoders;
+    private final TagDecoder<NbtElement, R>[] decoders;
+
+    @SuppressWarnings("unchecked")
+    public CodecRegistry() {
+        encoders = (TagEncoder<NbtElement, W>[]) new TagEncoder<?, ?>[ElementType.values().length];
+        decoders = (TagDecoder<NbtElement, R>[]) new TagDecoder<?, ?>[ElementType.values().length];
+    }
+
+    private CodecRegistry(TagEncoder<NbtElement, W>[] encoders, TagDecoder<NbtElement, R>[] decoders) {
+        this.encoders = encoders;
+        this.decoders = decoders;
+    }
+
+    /**
+     * @param encoder the new encoder, null to keep the current one
+     * @param decoder the new decoder, null to keep the current one
+     * @return a copy of this registry using the given codecs for type
+     */
+    @SuppressWarnings("unchecked")
+    public <E extends NbtElement> CodecRegistry<R, W> with(ElementType type, TagEncoder<E, W> encoder, TagDecoder<E, R> decoder) {
+        CodecRegistry<R, W> copy = new CodecRegistry<>(Arrays.copyOf(encoders, encoders.length),
+                Arrays.copyOf(decoders, decoders.length));
+        if (encoder != null)
+            copy.encoders[type.getId()] = (TagEncoder<NbtElement, W>) encoder;
+        if (decoder != null)
+            copy.decoders[type.getId()] = (TagDecoder<NbtElement, R>) decoder;
+        return copy;
+    }
+
+    public TagEncoder<NbtElement, W> getEncoder(ElementType type) {
+        TagEncoder<NbtElement, W> encoder = encoders[type.getId()];
+        if (encoder == null)
+            throw new IllegalArgumentException("No encoder for " + type);
+        return encoder;
+    }
+
+    public TagDecoder<NbtElement, R> getDecoder(ElementType type) {
+        TagDecoder<NbtElement, R> decoder = decoders[type.getId()];
+        if (decoder == null)
+            throw new IllegalArgumentException("No decoder for " + type);
+        return decoder;
+    }
+
+    public void encode(NbtElement element, W out) throws IOException {
+        getEncoder(element.getType()).encode(element, out);
+    }
+
+    public NbtElement decode(ElementType type, R in) throws IOException {
+        return getDecoder(type).decode(in);
+    }
+}
@@ -0,0 +1,113 @@
+package at.haha007.edennbt.parser;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Java's modified UTF-8, the string encoding of binary nbt.
+ * Differs from UTF-8 in encoding the null char with two bytes and supplementary chars as two 3 byte surrogates.
+ * <br>
+ * Pure ASCII strings, the common case for keys and ids, take a fast path: encoding copies char by char
+ * with a single range check per char, decoding checks the bytes and then creates the string in one bulk copy.
+ */
+public final class ModifiedUtf8 {
+    private ModifiedUtf8() {
+    }
+
+    /**
+     * @return the number of bytes s is encoded to, without the length prefix
+     */
+    public static int encodedLength(String s) {
+        int length = s.length();
+        int bytes = length;
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80 || c == 0)
+                bytes += c >= 0x800 ? 2 : 1;
+        }
+        return bytes;
+    }
+
+    public static byte[] encode(String s) {
+        byte[] bytes = new byte[encodedLength(s)];
+        encode(s, bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * Encodes s into dst, dst needs room for {@link #encodedLength(String)} bytes.
+     *
+     * @return the number of bytes written
+     */
+    public static int encode(String s, byte[] dst, int offset) {
+        int length = s.length();
+        int i = 0;
+        //ascii fast path
+        for (; i < length; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80 || c == 0)
+                break;
+            dst[offset + i] = (byte) c;
+        }
+        int position = offset + i;
+        for (; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80 && c != 0) {
+                dst[position++] = (byte) c;
+            } else if (c < 0x800) {
+                dst[position++] = (byte) (0xc0 | (c >> 6));
+                dst[position++] = (byte) (0x80 | (c & 0x3f));
+            } else {
+                dst[position++] = (byte) (0xe0 | (c >> 12));
+                dst[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                dst[position++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        return position - offset;
+    }
+
+    /**
+     * Decodes length bytes of src starting at offset.
+     *
+     * @throws IllegalArgumentException if the bytes are not valid modified UTF-8
+     */
+    public static String decode(byte[] src, int offset, int length) {
+        int end = offset + length;
+        int i = offset;
+        while (i < end && src[i] >= 0) {
+            i++;
+        }
+        //ascii fast path, latin1 strings are stored as bytes, this is a single copy
+        if (i == end)
+            return new String(src, offset, length, StandardCharsets.ISO_8859_1);
+
+        char[] chars = new char[length];
+        int count = 0;
+        for (int j = offset; j < i; j++) {
+            chars[count++] = (char) src[j];
+        }
+        while (i < end) {
+            int b = src[i] & 0xff;
+            if (b < 0x80) {
+                chars[count++] = (char) b;
+                i++;
+            } else if ((b & 0xe0) == 0xc0) {
+                if (i + 1 >= end || (src[i + 1] & 0xc0) != 0x80)
+                    throw malformed(i);
+                chars[count++] = (char) (((b & 0x1f) << 6) | (src[i + 1] & 0x3f));
+                i += 2;
+            } else if ((b & 0xf0) == 0xe0) {
+                if (i + 2 >= end || (src[i + 1] & 0xc0) != 0x80 || (src[i + 2] & 0xc0) != 0x80)
+                    throw malformed(i);
+                chars[count++] = (char) (((b & 0x0f) << 12) | ((src[i + 1] & 0x3f) << 6) | (src[i + 2] & 0x3f));
+                i += 3;
+            } else {
+                throw malformed(i);
+            }
+        }
+        return new String(chars, 0, count);
+    }
+
+    private static IllegalArgumentException malformed(int offset) {
+        return new IllegalArgumentException("Malformed modified UTF-8 at offset " + offset);
+    }
+}
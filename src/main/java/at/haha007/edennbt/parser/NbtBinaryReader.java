@@ -0,0 +1,139 @@
+package at.haha007.edennbt.parser;
+
+import at.haha007.edennbt.element.ElementType;
+import at.haha007.edennbt.element.NbtElement;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads binary nbt from a stream, decoding payloads through a {@link CodecRegistry}.
+ * Never reads more bytes from the stream than the element it decodes.
+ */
+public class NbtBinaryReader {
+    //arrays are read in chunks of this many bytes and converted in bulk
+    private static final int ARRAY_CHUNK = 8192;
+
+    private final InputStream is;
+    private final CodecRegistry<NbtBinaryReader, NbtBinaryWriter> codecs;
+    //fixed size values and strings are read into this buffer and decoded from there
+    private byte[] buffer = new byte[64];
+
+    public NbtBinaryReader(InputStream is) {
+        this(is, BinaryCodecs.DEFAULT);
+    }
+
+    public NbtBinaryReader(InputStream is, CodecRegistry<NbtBinaryReader, NbtBinaryWriter> codecs) {
+        this.is = is;
+        this.codecs = codecs;
+    }
+
+    /**
+     * Reads a root element: type, name, payload.
+     */
+    public NbtElement read() throws IOException {
+        ElementType type = readType();
+        skipString(); //skip name, stupid part of the spec
+        return readPayload(type);
+    }
+
+    public NbtElement readPayload(ElementType type) throws IOException {
+        return codecs.decode(type, this);
+    }
+
+    public ElementType readType() throws IOException {
+        return ElementType.byId(readByte());
+    }
+
+    public byte readByte() throws IOException {
+        int b = is.read();
+        if (b < 0)
+            throw new EOFException();
+        return (byte) b;
+    }
+
+    public short readShort() throws IOException {
+        return (short) readUnsignedShort();
+    }
+
+    public int readUnsignedShort() throws IOException {
+        fill(2);
+        return ((buffer[0] & 0xff) << 8) | (buffer[1] & 0xff);
+    }
+
+    public int readInt() throws IOException {
+        fill(4);
+        return getInt(0);
+    }
+
+    public long readLong() throws IOException {
+        fill(8);
+        return ((long) getInt(0) << 32) | (getInt(4) & 0xffffffffL);
+    }
+
+    public float readFloat() throws IOException {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    public double readDouble() throws IOException {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    public String readString() throws IOException {
+        int length = readUnsignedShort();
+        fill(length);
+        return ModifiedUtf8.decode(buffer, 0, length);
+    }
+
+    public void skipString() throws IOException {
+        is.skipNBytes(readUnsignedShort());
+    }
+
+    public byte[] readBytes(int length) throws IOException {
+        byte[] bytes = is.readNBytes(length);
+        if (bytes.length != length)
+            throw new EOFException();
+        return bytes;
+    }
+
+    public int[] readInts(int length) throws IOException {
+        int[] ints = new int[length];
+        int chunk = ARRAY_CHUNK / 4;
+        for (int i = 0; i < length; i += chunk) {
+            int n = Math.min(chunk, length - i);
+            fill(n * 4);
+            for (int j = 0; j < n; j++) {
+                ints[i + j] = (int) NbtOutputBuffer.INTS.get(buffer, j * 4);
+            }
+        }
+        return ints;
+    }
+
+    public long[] readLongs(int length) throws IOException {
+        long[] longs = new long[length];
+        int chunk = ARRAY_CHUNK / 8;
+        for (int i = 0; i < length; i += chunk) {
+            int n = Math.min(chunk, length - i);
+            fill(n * 8);
+            for (int j = 0; j < n; j++) {
+                longs[i + j] = (long) NbtOutputBuffer.LONGS.get(buffer, j * 8);
+            }
+        }
+        return longs;
+    }
+
+    private int getInt(int offset) {
+        return ((buffer[offset] & 0xff) << 24)
+                | ((buffer[offset + 1] & 0xff) << 16)
+                | ((buffer[offset + 2] & 0xff) << 8)
+                | (buffer[offset + 3] & 0xff);
+    }
+
+    private void fill(int length) throws IOException {
+        if (length > buffer.length)
+            buffer = new byte[Math.max(length, buffer.length * 2)];
+        if (is.readNBytes(buffer, 0, length) != length)
+            throw new EOFException();
+    }
+}
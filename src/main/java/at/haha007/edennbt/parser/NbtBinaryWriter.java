@@ -0,0 +1,83 @@
+package at.haha007.edennbt.parser;
+
+import at.haha007.edennbt.element.ElementType;
+import at.haha007.edennbt.element.NbtElement;
+import lombok.Getter;
+import lombok.SneakyThrows;
+
+/**
+ * Writes binary nbt into a {@link NbtOutputBuffer}, encoding payloads through a {@link CodecRegistry}.
+ */
+public class NbtBinaryWriter {
+    @Getter
+    private final NbtOutputBuffer buffer;
+    @Getter
+    private final CodecRegistry<NbtBinaryReader, NbtBinaryWriter> codecs;
+
+    public NbtBinaryWriter() {
+        this(new NbtOutputBuffer(), BinaryCodecs.DEFAULT);
+    }
+
+    public NbtBinaryWriter(NbtOutputBuffer buffer, CodecRegistry<NbtBinaryReader, NbtBinaryWriter> codecs) {
+        this.buffer = buffer;
+        this.codecs = codecs;
+    }
+
+    /**
+     * Writes a root element: type, empty name, payload.
+     */
+    public void write(NbtElement nbt) {
+        writeType(nbt.getType());
+        writeShort(0);
+        writePayload(nbt);
+    }
+
+    @SneakyThrows
+    public void writePayload(NbtElement nbt) {
+        codecs.encode(nbt, this);
+    }
+
+    public void writeType(ElementType type) {
+        buffer.write(type.getId());
+    }
+
+    public void writeByte(int value) {
+        buffer.write(value);
+    }
+
+    public void writeShort(int value) {
+        buffer.writeShort(value);
+    }
+
+    public void writeInt(int value) {
+        buffer.writeInt(value);
+    }
+
+    public void writeLong(long value) {
+        buffer.writeLong(value);
+    }
+
+    public void writeFloat(float value) {
+        buffer.writeInt(Float.floatToIntBits(value));
+    }
+
+    public void writeDouble(double value) {
+        buffer.writeLong(Double.doubleToLongBits(value));
+    }
+
+    public void writeString(String value) {
+        buffer.writeString(value);
+    }
+
+    public void writeInts(int[] values) {
+        buffer.writeInts(values);
+    }
+
+    public void writeLongs(long[] values) {
+        buffer.writeLongs(values);
+    }
+
+    public void writeBytes(byte[] bytes) {
+        buffer.writeBytes(bytes);
+    }
+}
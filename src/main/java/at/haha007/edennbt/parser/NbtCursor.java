@@ -0,0 +1,202 @@
+package at.haha007.edennbt.parser;
+
+import at.haha007.edennbt.element.ElementType;
+import at.haha007.edennbt.element.NbtElement;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Moves over encoded binary nbt in a byte array without decoding it.
+ * Reads are big endian, like {@link IOStreamParser}.
+ */
+@Getter
+@Setter
+public class NbtCursor {
+    private final byte[] data;
+    private int position;
+
+    public NbtCursor(byte[] data) {
+        this(data, 0);
+    }
+
+    public NbtCursor(byte[] data, int position) {
+        this.data = data;
+        this.position = position;
+    }
+
+    public byte readByte() {
+        return data[position++];
+    }
+
+    public ElementType readType() {
+        return ElementType.byId(readByte());
+    }
+
+    public short readShort() {
+        return (short) readUnsignedShort();
+    }
+
+    public int readUnsignedShort() {
+        int value = ((data[position] & 0xff) << 8) | (data[position + 1] & 0xff);
+        position += 2;
+        return value;
+    }
+
+    public int readInt() {
+        int value = ((data[position] & 0xff) << 24)
+                | ((data[position + 1] & 0xff) << 16)
+                | ((data[position + 2] & 0xff) << 8)
+                | (data[position + 3] & 0xff);
+        position += 4;
+        return value;
+    }
+
+    public long readLong() {
+        long high = readInt();
+        long low = readInt() & 0xffffffffL;
+        return (high << 32) | low;
+    }
+
+    public float readFloat() {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    public double readDouble() {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    public String readString() {
+        int length = readUnsignedShort();
+        String s = ModifiedUtf8.decode(data, position, length);
+        position += length;
+        return s;
+    }
+
+    public void skipString() {
+        int length = readUnsignedShort();
+        advance(length);
+    }
+
+    /**
+     * Compares the length prefixed string at the current position with the given encoded string
+     * and moves past it.
+     *
+     * @param encoded the encoded string without length prefix
+     * @return true if the string equals the encoded string
+     */
+    public boolean readStringEquals(byte[] encoded) {
+        int length = readUnsignedShort();
+        int start = position;
+        position += length;
+        return Arrays.equals(data, start, position, encoded, 0, encoded.length);
+    }
+
+    /**
+     * Reads the root type and skips the root name.
+     *
+     * @return the type of the root element
+     */
+    public ElementType readRootHeader() {
+        ElementType type = readType();
+        skipString();
+        return type;
+    }
+
+    /**
+     * Decodes the payload of the given type at the current position and moves past it.
+     *
+     * @throws IllegalArgumentException if the payload ends past the data
+     */
+    public NbtElement readElement(ElementType type) {
+        ByteArrayInputStream is = new ByteArrayInputStream(data, position, data.length - position);
+        int available = is.available();
+        NbtElement element;
+        try {
+            element = new NbtBinaryReader(is).readPayload(type);
+        } catch (IOException e) {
+            //a byte array stream only fails at its end
+            throw new IllegalArgumentException("Unexpected end of data after " + position, e);
+        }
+        position += available - is.available();
+        return element;
+    }
+
+    /**
+     * Moves past the payload of the given type.
+     *
+     * @throws IllegalArgumentException if a length is negative or the payload ends past the data
+     */
+    public void skip(ElementType type) {
+        switch (type) {
+            case END -> throw new IllegalArgumentException("Unexpected END tag");
+            case BYTE -> advance(1);
+            case SHORT -> advance(2);
+            case INT, FLOAT -> advance(4);
+            case LONG, DOUBLE -> advance(8);
+            case BYTE_ARRAY -> {
+                int length = readInt();
+                advance(length);
+            }
+            case STRING -> skipString();
+            case LIST -> {
+                ElementType listType = readType();
+                int size = readInt();
+                int fixedSize = fixedSize(listType);
+                if (size < 0)
+                    throw new IllegalArgumentException("Invalid list size: " + size);
+                if (fixedSize >= 0) {
+                    advance((long) size * fixedSize);
+                    return;
+                }
+                for (int i = 0; i < size; i++) {
+                    skip(listType);
+                }
+            }
+            case COMPOUND -> {
+                ElementType subType = readType();
+                while (subType != ElementType.END) {
+                    skipString();
+                    skip(subType);
+                    subType = readType();
+                }
+            }
+            case INT_ARRAY -> {
+                int length = readInt();
+                advance(length * 4L);
+            }
+            case LONG_ARRAY -> {
+                int length = readInt();
+                advance(length * 8L);
+            }
+        }
+    }
+
+    /**
+     * Moves forward by bytes, computed as long so encoded lengths can't overflow.
+     *
+     * @throws IllegalArgumentException if bytes is negative or goes past the data
+     */
+    private void advance(long bytes) {
+        if (bytes < 0 || bytes > data.length - position)
+            throw new IllegalArgumentException("Invalid length " + bytes + " at " + position);
+        position += (int) bytes;
+    }
+
+    /**
+     * @return the payload size of the given type if it is always the same, -1 otherwise
+     */
+    public static int fixedSize(ElementType type) {
+        return switch (type) {
+            case END -> 0;
+            case BYTE -> 1;
+            case SHORT -> 2;
+            case INT, FLOAT -> 4;
+            case LONG, DOUBLE -> 8;
+            default -> -1;
+        };
+    }
+}
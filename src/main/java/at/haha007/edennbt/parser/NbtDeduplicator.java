@@ -0,0 +1,144 @@
+package at.haha007.edennbt.parser;
+
+import at.haha007.edennbt.element.*;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Canonicalization table that makes equal subtrees share one instance.
+ * <br>
+ * The table is a fixed number of slots indexed by a content hash, so its size is bounded and lookups are lock free.
+ * A slot holds the last element stored in it, colliding elements replace each other.
+ * Only strings, arrays, lists and compounds are stored, numbers are hashed but never shared.
+ * One deduplicator can be shared between threads and parsers.
+ * <br>
+ * Deduplicated trees share their elements with other trees and have to be treated as read only,
+ * copy an element before changing it and don't enable change tracking on them.
+ *
+ * @see IOStreamParser#IOStreamParser(NbtDeduplicator)
+ */
+public class NbtDeduplicator {
+    private final AtomicReferenceArray<Entry> table;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param capacity the maximum number of retained canonical elements, rounded up to a power of two
+     */
+    public NbtDeduplicator(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be positive");
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        table = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    /**
+     * Replaces all subtrees of element with their canonical instances.
+     * Containers are changed in place, the returned element may be a different, equal instance.
+     */
+    public NbtElement deduplicate(NbtElement element) {
+        return new Walker().visit(element);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public void clear() {
+        for (int i = 0; i < table.length(); i++) {
+            table.set(i, null);
+        }
+    }
+
+    private NbtElement canonical(NbtElement element, long hash) {
+        int index = (int) (hash ^ (hash >>> 32)) & mask;
+        Entry entry = table.get(index);
+        if (entry != null && entry.hash == hash && entry.element.equals(element) && sameSubType(entry.element, element)) {
+            hits.increment();
+            return entry.element;
+        }
+        misses.increment();
+        table.lazySet(index, new Entry(hash, element));
+        return element;
+    }
+
+    //NbtList.equals ignores the subtype, but empty lists of different subtypes encode differently
+    private static boolean sameSubType(NbtElement a, NbtElement b) {
+        return !(a instanceof NbtList<?> list) || list.getSubType() == ((NbtList<?>) b).getSubType();
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private record Entry(long hash, NbtElement element) {
+    }
+
+    /**
+     * Walks a tree bottom up, children are canonical before their parent is hashed and looked up.
+     */
+    private final class Walker {
+        private long hash;
+
+        private NbtElement visit(NbtElement element) {
+            long h;
+            switch (element.getType()) {
+                case BYTE -> h = ((NbtByte) element).getValue();
+                case SHORT -> h = ((NbtShort) element).getValue();
+                case INT -> h = ((NbtInt) element).getValue();
+                case LONG -> h = ((NbtLong) element).getValue();
+                case FLOAT -> h = Float.floatToIntBits(((NbtFloat) element).getValue());
+                case DOUBLE -> h = Double.doubleToLongBits(((NbtDouble) element).getValue());
+                case BYTE_ARRAY -> h = Arrays.hashCode(((NbtByteArray) element).peekValue());
+                case STRING -> h = ((NbtString) element).getValue().hashCode();
+                case INT_ARRAY -> h = Arrays.hashCode(((NbtIntArray) element).peekValue());
+                case LONG_ARRAY -> h = Arrays.hashCode(((NbtLongArray) element).peekValue());
+                case LIST -> {
+                    @SuppressWarnings("unchecked")
+                    NbtList<NbtElement> list = (NbtList<NbtElement>) element;
+                    h = list.size() * 16L + list.getSubType().ordinal();
+                    for (int i = 0; i < list.size(); i++) {
+                        NbtElement child = list.get(i);
+                        NbtElement canonical = visit(child);
+                        if (canonical != child)
+                            list.set(i, canonical);
+                        h = h * 31 + hash;
+                    }
+                }
+                case COMPOUND -> {
+                    NbtCompound compound = (NbtCompound) element;
+                    h = compound.size();
+                    for (Map.Entry<String, NbtElement> entry : compound.entrySet()) {
+                        NbtElement child = entry.getValue();
+                        NbtElement canonical = visit(child);
+                        if (canonical != child)
+                            entry.setValue(canonical);
+                        //entry order does not matter for equality
+                        h += mix(entry.getKey().hashCode() * 31L + hash);
+                    }
+                }
+                default -> throw new IllegalArgumentException("Unexpected " + element.getType());
+            }
+            hash = mix(h * 16 + element.getType().ordinal());
+            //sharing numbers saves little, they would only evict the elements worth sharing
+            return switch (element.getType()) {
+                case BYTE, SHORT, INT, LONG, FLOAT, DOUBLE -> element;
+                default -> canonical(element, hash);
+            };
+        }
+    }
+}
@@ -0,0 +1,848 @@
+package at.haha007.edennbt.parser;
+
+import at.haha007.edennbt.element.ElementType;
+import lombok.SneakyThrows;
+
+import java.io.*;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Transcodes between binary nbt and JSON in both directions without building a tree.
+ * <br>
+ * Only lists are buffered when converting to nbt, as their size has to be written before their elements.
+ * Malformed JSON throws a {@link ParseException} with the character offset.
+ * <br>
+ * How nbt types survive the trip depends on the {@link TypeMode}:
+ * <pre>{@code
+ * NONE:    {"Count": 1, "Pos": [0.5, 64.0, 0.5]}
+ * SUFFIX:  {":compound": {"Count:byte": 1, "Pos:list<double>": [0.5, 64.0, 0.5]}}
+ * WRAPPER: {"type": "compound", "value": {"Count": {"type": "byte", "value": 1}, ...}}
+ * }</pre>
+ * Type names are the lower case {@link ElementType} names. Non-finite floats are written as strings.
+ */
+public class NbtJsonTranscoder {
+    private static final int MAX_DEPTH = 512;
+
+    private final TypeMode mode;
+
+    public NbtJsonTranscoder(TypeMode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Writes the root element read from nbt as JSON. The input is read ahead,
+     * neither stream is closed, the writer is flushed.
+     */
+    @SneakyThrows
+    public void toJson(InputStream nbt, Writer json) {
+        BufferedWriter writer = new BufferedWriter(json, 8192);
+        new ToJson(new DataInputStream(new BufferedInputStream(nbt, 8192)), writer).root();
+        writer.flush();
+    }
+
+    public String toJson(byte[] nbt) {
+        StringWriter writer = new StringWriter();
+        toJson(new ByteArrayInputStream(nbt), writer);
+        return writer.toString();
+    }
+
+    /**
+     * Writes the JSON document as root element to nbt. Neither stream is closed, the output is flushed.
+     */
+    @SneakyThrows
+    public void toNbt(Reader json, OutputStream nbt) {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(nbt, 8192));
+        new ToNbt(new BufferedReader(json, 8192)).root(out);
+        out.flush();
+    }
+
+    public byte[] toNbt(String json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        toNbt(new StringReader(json), out);
+        return out.toByteArray();
+    }
+
+    public enum TypeMode {
+        /**
+         * Plain JSON values, numbers become int, long or double and booleans bytes when converting back.
+         */
+        NONE,
+        /**
+         * Compound keys carry the type, {@code "key:type"}, lists as {@code "key:list<type>"}.
+         * Values without key, the root and lists in lists, are written as object with a single suffixed key,
+         * the root name being the key.
+         */
+        SUFFIX,
+        /**
+         * Every value is an object of type, value and for lists elementType, the root may have a name.
+         * The type comes first.
+         */
+        WRAPPER
+    }
+
+    private static String typeName(ElementType type) {
+        return type.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static ElementType typeOf(String name) {
+        for (ElementType type : ElementType.values()) {
+            if (typeName(type).equals(name))
+                return type;
+        }
+        return null;
+    }
+
+    /**
+     * A key in {@link TypeMode#SUFFIX}, {@code name:type} or {@code name:list<type>}.
+     */
+    private record Suffix(String name, ElementType type, ElementType elementType) {
+        private static Suffix parse(String key) {
+            int separator = key.lastIndexOf(':');
+            if (separator < 0)
+                return null;
+            String name = key.substring(0, separator);
+            String suffix = key.substring(separator + 1);
+            if (suffix.startsWith("list<") && suffix.endsWith(">")) {
+                ElementType elementType = typeOf(suffix.substring(5, suffix.length() - 1));
+                return elementType == null ? null : new Suffix(name, ElementType.LIST, elementType);
+            }
+            ElementType type = typeOf(suffix);
+            if (type == null || type == ElementType.END || type == ElementType.LIST)
+                return null;
+            return new Suffix(name, type, null);
+        }
+    }
+
+    private final class ToJson {
+        private final DataInputStream in;
+        private final Writer out;
+        private int depth = 0;
+
+        private ToJson(DataInputStream in, Writer out) {
+            this.in = in;
+            this.out = out;
+        }
+
+        private void root() throws IOException {
+            ElementType type = readType();
+            String name = in.readUTF();
+            switch (mode) {
+                case NONE -> value(type);
+                case SUFFIX -> named(name, type);
+                case WRAPPER -> wrapped(type, name);
+            }
+        }
+
+        private ElementType readType() throws IOException {
+            return ElementType.byId(in.readByte());
+        }
+
+        /**
+         * {@code {"name:type": value}}
+         */
+        private void named(String name, ElementType type) throws IOException {
+            out.write('{');
+            entry(name, type);
+            out.write('}');
+        }
+
+        /**
+         * {@code "key:type": value}
+         */
+        private void entry(String key, ElementType type) throws IOException {
+            if (type == ElementType.LIST) {
+                ElementType elementType = readType();
+                int size = in.readInt();
+                string(key + ":list<" + typeName(elementType) + ">");
+                out.write(':');
+                elements(elementType, size);
+            } else {
+                string(key + ":" + typeName(type));
+                out.write(':');
+                value(type);
+            }
+        }
+
+        private void value(ElementType type) throws IOException {
+            switch (type) {
+                case BYTE -> out.write(Byte.toString(in.readByte()));
+                case SHORT -> out.write(Short.toString(in.readShort()));
+                case INT -> out.write(Integer.toString(in.readInt()));
+                case LONG -> out.write(Long.toString(in.readLong()));
+                case FLOAT -> floating(in.readFloat());
+                case DOUBLE -> floating(in.readDouble());
+                case STRING -> string(in.readUTF());
+                case BYTE_ARRAY -> {
+                    int length = in.readInt();
+                    out.write('[');
+                    for (int i = 0; i < length; i++) {
+                        if (i > 0)
+                            out.write(',');
+                        out.write(Byte.toString(in.readByte()));
+                    }
+                    out.write(']');
+                }
+                case INT_ARRAY -> {
+                    int length = in.readInt();
+                    out.write('[');
+                    for (int i = 0; i < length; i++) {
+                        if (i > 0)
+                            out.write(',');
+                        out.write(Integer.toString(in.readInt()));
+                    }
+                    out.write(']');
+                }
+                case LONG_ARRAY -> {
+                    int length = in.readInt();
+                    out.write('[');
+                    for (int i = 0; i < length; i++) {
+                        if (i > 0)
+                            out.write(',');
+                        out.write(Long.toString(in.readLong()));
+                    }
+                    out.write(']');
+                }
+                case LIST -> {
+                    ElementType elementType = readType();
+                    elements(elementType, in.readInt());
+                }
+                case COMPOUND -> {
+                    enter();
+                    out.write('{');
+                    boolean first = true;
+                    for (ElementType entryType = readType(); entryType != ElementType.END; entryType = readType()) {
+                        if (!first)
+                            out.write(',');
+                        first = false;
+                        String key = in.readUTF();
+                        if (mode == TypeMode.SUFFIX) {
+                            entry(key, entryType);
+                        } else {
+                            string(key);
+                            out.write(':');
+                            value(entryType);
+                        }
+                    }
+                    out.write('}');
+                    depth--;
+                }
+                case END -> throw new IOException("Unexpected END tag");
+            }
+        }
+
+        private void elements(ElementType elementType, int size) throws IOException {
+            enter();
+            out.write('[');
+            for (int i = 0; i < size; i++) {
+                if (i > 0)
+                    out.write(',');
+                if (mode == TypeMode.SUFFIX && elementType == ElementType.LIST)
+                    named("", elementType);
+                else
+                    value(elementType);
+            }
+            out.write(']');
+            depth--;
+        }
+
+        private void wrapped(ElementType type, String name) throws IOException {
+            out.write("{\"type\":");
+            string(typeName(type));
+            if (name != null && !name.isEmpty()) {
+                out.write(",\"name\":");
+                string(name);
+            }
+            switch (type) {
+                case LIST -> {
+                    ElementType elementType = readType();
+                    int size = in.readInt();
+                    out.write(",\"elementType\":");
+                    string(typeName(elementType));
+                    out.write(",\"value\":[");
+                    enter();
+                    for (int i = 0; i < size; i++) {
+                        if (i > 0)
+                            out.write(',');
+                        wrapped(elementType, null);
+                    }
+                    depth--;
+                    out.write(']');
+                }
+                case COMPOUND -> {
+                    out.write(",\"value\":{");
+                    enter();
+                    boolean first = true;
+                    for (ElementType entryType = readType(); entryType != ElementType.END; entryType = readType()) {
+                        if (!first)
+                            out.write(',');
+                        first = false;
+                        string(in.readUTF());
+                        out.write(':');
+                        wrapped(entryType, null);
+                    }
+                    depth--;
+                    out.write('}');
+                }
+                default -> {
+                    out.write(",\"value\":");
+                    value(type);
+                }
+            }
+            out.write('}');
+        }
+
+        private void enter() throws IOException {
+            if (++depth > MAX_DEPTH)
+                throw new IOException("Nested deeper than " + MAX_DEPTH);
+        }
+
+        private void floating(double value) throws IOException {
+            if (Double.isFinite(value))
+                out.write(Double.toString(value));
+            else
+                string(Double.toString(value));
+        }
+
+        private void floating(float value) throws IOException {
+            if (Float.isFinite(value))
+                out.write(Float.toString(value));
+            else
+                string(Float.toString(value));
+        }
+
+        private void string(String value) throws IOException {
+            out.write('"');
+            int start = 0;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c >= 0x20 && c != '"' && c != '\\')
+                    continue;
+                out.write(value, start, i - start);
+                start = i + 1;
+                switch (c) {
+                    case '"' -> out.write("\\\"");
+                    case '\\' -> out.write("\\\\");
+                    case '\n' -> out.write("\\n");
+                    case '\r' -> out.write("\\r");
+                    case '\t' -> out.write("\\t");
+                    default -> out.write(String.format("\\u%04x", (int) c));
+                }
+            }
+            out.write(value, start, value.length() - start);
+            out.write('"');
+        }
+    }
+
+    private final class ToNbt {
+        private final Reader in;
+        private int position = 0;
+        private int peeked = -2;
+        private int depth = 0;
+
+        private ToNbt(Reader in) {
+            this.in = in;
+        }
+
+        private void root(DataOutputStream out) throws IOException, ParseException {
+            switch (mode) {
+                case NONE -> {
+                    ElementType type = plainType();
+                    if (type == null) {
+                        String number = readNumber();
+                        type = numberType(number);
+                        out.writeByte(type.getId());
+                        out.writeUTF("");
+                        writeNumber(type, number, out);
+                    } else {
+                        out.writeByte(type.getId());
+                        out.writeUTF("");
+                        plain(type, out);
+                    }
+                }
+                case SUFFIX -> {
+                    expect('{');
+                    suffixed(out);
+                    expect('}');
+                }
+                case WRAPPER -> wrapped(out, true, null);
+            }
+            if (peek() != -1)
+                throw error("Unexpected content after the root");
+        }
+
+        // NONE
+
+        /**
+         * @return the type of the next value, numbers are parsed by {@link #plain(ElementType, DataOutput)}
+         */
+        private ElementType plainType() throws IOException, ParseException {
+            int c = peek();
+            return switch (c) {
+                case '{' -> ElementType.COMPOUND;
+                case '[' -> ElementType.LIST;
+                case '"' -> ElementType.STRING;
+                case 't', 'f' -> ElementType.BYTE;
+                case -1 -> throw error("Unexpected end of input");
+                default -> {
+                    if (c != '-' && (c < '0' || c > '9'))
+                        throw error("Unexpected character '" + (char) c + "'");
+                    yield null;
+                }
+            };
+        }
+
+        private void plain(ElementType type, DataOutput out) throws IOException, ParseException {
+            switch (type) {
+                case BYTE -> out.writeByte(readBoolean() ? 1 : 0);
+                case STRING -> out.writeUTF(readString());
+                case COMPOUND -> {
+                    enter();
+                    expect('{');
+                    if (!consume('}')) {
+                        do {
+                            String key = readString();
+                            expect(':');
+                            ElementType entryType = plainType();
+                            if (entryType == null) {
+                                String number = readNumber();
+                                entryType = numberType(number);
+                                out.writeByte(entryType.getId());
+                                out.writeUTF(key);
+                                writeNumber(entryType, number, out);
+                            } else {
+                                out.writeByte(entryType.getId());
+                                out.writeUTF(key);
+                                plain(entryType, out);
+                            }
+                        } while (consume(','));
+                        expect('}');
+                    }
+                    out.writeByte(ElementType.END.getId());
+                    depth--;
+                }
+                case LIST -> plainList(out);
+                default -> throw new IllegalStateException(type.toString());
+            }
+        }
+
+        private void plainList(DataOutput out) throws IOException, ParseException {
+            enter();
+            expect('[');
+            NbtOutputBuffer buffer = new NbtOutputBuffer();
+            DataOutputStream elements = new DataOutputStream(buffer);
+            ElementType elementType = ElementType.END;
+            int size = 0;
+            //numbers are collected first, the list type depends on all of them
+            long[] numbers = new long[0];
+            boolean fractional = false;
+            boolean wide = false;
+            if (!consume(']')) {
+                do {
+                    ElementType type = plainType();
+                    if (type == null) {
+                        if (size > 0 && numbers.length == 0)
+                            throw error("Number in a list of " + elementType);
+                        if (size == numbers.length)
+                            numbers = Arrays.copyOf(numbers, Math.max(8, size * 2));
+                        String number = readNumber();
+                        ElementType numberType = numberType(number);
+                        if (numberType == ElementType.DOUBLE) {
+                            if (!fractional) {
+                                for (int i = 0; i < size; i++) {
+                                    numbers[i] = Double.doubleToRawLongBits(numbers[i]);
+                                }
+                                fractional = true;
+                            }
+                            numbers[size] = Double.doubleToRawLongBits(parseDouble(number));
+                        } else {
+                            long value = Long.parseLong(number);
+                            wide |= numberType == ElementType.LONG;
+                            numbers[size] = fractional ? Double.doubleToRawLongBits(value) : value;
+                        }
+                    } else {
+                        if (size > 0 && (numbers.length > 0 || type != elementType))
+                            throw error("Mixed list of " + (numbers.length > 0 ? "numbers" : elementType) + " and " + type);
+                        elementType = type;
+                        plain(type, elements);
+                    }
+                    size++;
+                } while (consume(','));
+                expect(']');
+            }
+            if (numbers.length > 0) {
+                elementType = fractional ? ElementType.DOUBLE : wide ? ElementType.LONG : ElementType.INT;
+                for (int i = 0; i < size; i++) {
+                    switch (elementType) {
+                        case INT -> elements.writeInt((int) numbers[i]);
+                        case LONG, DOUBLE -> elements.writeLong(numbers[i]);
+                    }
+                }
+            }
+            out.writeByte(elementType.getId());
+            out.writeInt(size);
+            buffer.writeTo((OutputStream) out);
+            depth--;
+        }
+
+        private void writeNumber(ElementType type, String number, DataOutput out) throws IOException, ParseException {
+            try {
+                switch (type) {
+                    case INT -> out.writeInt(Integer.parseInt(number));
+                    case LONG -> out.writeLong(Long.parseLong(number));
+                    default -> out.writeDouble(Double.parseDouble(number));
+                }
+            } catch (NumberFormatException e) {
+                throw error("Invalid number " + number);
+            }
+        }
+
+        private ElementType numberType(String number) {
+            for (int i = 0; i < number.length(); i++) {
+                char c = number.charAt(i);
+                if (c == '.' || c == 'e' || c == 'E')
+                    return ElementType.DOUBLE;
+            }
+            try {
+                long value = Long.parseLong(number);
+                return value == (int) value ? ElementType.INT : ElementType.LONG;
+            } catch (NumberFormatException e) {
+                return ElementType.DOUBLE;
+            }
+        }
+
+        // SUFFIX
+
+        /**
+         * Reads {@code "key:type": value} and writes it as compound entry.
+         */
+        private void suffixed(DataOutput out) throws IOException, ParseException {
+            String key = readString();
+            Suffix suffix = Suffix.parse(key);
+            if (suffix == null)
+                throw error("Missing or unknown type suffix in key " + key);
+            expect(':');
+            out.writeByte(suffix.type().getId());
+            out.writeUTF(suffix.name());
+            typed(suffix.type(), suffix.elementType(), out);
+        }
+
+        /**
+         * Writes the payload of the next value as the given type.
+         *
+         * @param elementType the element type for lists in {@link TypeMode#SUFFIX}, null to read it from the values
+         */
+        private void typed(ElementType type, ElementType elementType, DataOutput out) throws IOException, ParseException {
+            switch (type) {
+                case BYTE -> out.writeByte((int) readIntegral(Byte.MIN_VALUE, Byte.MAX_VALUE));
+                case SHORT -> out.writeShort((int) readIntegral(Short.MIN_VALUE, Short.MAX_VALUE));
+                case INT -> out.writeInt((int) readIntegral(Integer.MIN_VALUE, Integer.MAX_VALUE));
+                case LONG -> out.writeLong(readIntegral(Long.MIN_VALUE, Long.MAX_VALUE));
+                case FLOAT -> out.writeFloat((float) readFloating());
+                case DOUBLE -> out.writeDouble(readFloating());
+                case STRING -> out.writeUTF(readString());
+                case BYTE_ARRAY, INT_ARRAY, LONG_ARRAY -> {
+                    expect('[');
+                    long[] values = new long[16];
+                    int size = 0;
+                    if (!consume(']')) {
+                        do {
+                            if (size == values.length)
+                                values = Arrays.copyOf(values, size * 2);
+                            values[size++] = switch (type) {
+                                case BYTE_ARRAY -> readIntegral(Byte.MIN_VALUE, Byte.MAX_VALUE);
+                                case INT_ARRAY -> readIntegral(Integer.MIN_VALUE, Integer.MAX_VALUE);
+                                default -> readIntegral(Long.MIN_VALUE, Long.MAX_VALUE);
+                            };
+                        } while (consume(','));
+                        expect(']');
+                    }
+                    out.writeInt(size);
+                    for (int i = 0; i < size; i++) {
+                        switch (type) {
+                            case BYTE_ARRAY -> out.writeByte((int) values[i]);
+                            case INT_ARRAY -> out.writeInt((int) values[i]);
+                            default -> out.writeLong(values[i]);
+                        }
+                    }
+                }
+                case LIST -> {
+                    enter();
+                    expect('[');
+                    NbtOutputBuffer buffer = new NbtOutputBuffer();
+                    DataOutputStream elements = new DataOutputStream(buffer);
+                    int size = 0;
+                    if (!consume(']')) {
+                        do {
+                            if (elementType == ElementType.END)
+                                throw error("Elements in a list of END");
+                            if (elementType == ElementType.LIST) {
+                                //{":list<type>": [...]}
+                                expect('{');
+                                String key = readString();
+                                Suffix suffix = Suffix.parse(key);
+                                if (suffix == null || suffix.type() != ElementType.LIST)
+                                    throw error("Expected a list suffix but found " + key);
+                                expect(':');
+                                typed(ElementType.LIST, suffix.elementType(), elements);
+                                expect('}');
+                            } else {
+                                typed(elementType, null, elements);
+                            }
+                            size++;
+                        } while (consume(','));
+                        expect(']');
+                    }
+                    out.writeByte(elementType.getId());
+                    out.writeInt(size);
+                    buffer.writeTo((OutputStream) out);
+                    depth--;
+                }
+                case COMPOUND -> {
+                    enter();
+                    expect('{');
+                    if (!consume('}')) {
+                        do {
+                            suffixed(out);
+                        } while (consume(','));
+                        expect('}');
+                    }
+                    out.writeByte(ElementType.END.getId());
+                    depth--;
+                }
+                case END -> throw error("Unexpected END type");
+            }
+        }
+
+        // WRAPPER
+
+        /**
+         * Reads a wrapper object and writes its payload, preceded by type and key if key is not null,
+         * preceded by type and name if it is the root.
+         *
+         * @return the type of the wrapped value
+         */
+        private ElementType wrapped(DataOutput out, boolean root, String key) throws IOException, ParseException {
+            enter();
+            expect('{');
+            if (!"type".equals(readString()))
+                throw error("Expected type as first key");
+            expect(':');
+            String typeName = readString();
+            ElementType type = typeOf(typeName);
+            if (type == null || type == ElementType.END)
+                throw error("Unknown type " + typeName);
+            ElementType elementType = null;
+            String name = "";
+            while (true) {
+                expect(',');
+                String field = readString();
+                expect(':');
+                if (field.equals("value"))
+                    break;
+                String value = readString();
+                switch (field) {
+                    case "elementType" -> elementType = typeOf(value);
+                    case "name" -> name = value;
+                    default -> throw error("Unknown key " + field);
+                }
+            }
+            if (type == ElementType.LIST && elementType == null)
+                throw error("Missing or unknown elementType");
+            if (root || key != null) {
+                out.writeByte(type.getId());
+                out.writeUTF(root ? name : key);
+            }
+            switch (type) {
+                case LIST -> {
+                    expect('[');
+                    NbtOutputBuffer buffer = new NbtOutputBuffer();
+                    DataOutputStream elements = new DataOutputStream(buffer);
+                    int size = 0;
+                    if (!consume(']')) {
+                        do {
+                            ElementType actual = wrapped(elements, false, null);
+                            if (actual != elementType)
+                                throw error("Expected " + typeName(elementType) + " but found " + typeName(actual));
+                            size++;
+                        } while (consume(','));
+                        expect(']');
+                    }
+                    out.writeByte(elementType.getId());
+                    out.writeInt(size);
+                    buffer.writeTo((OutputStream) out);
+                }
+                case COMPOUND -> {
+                    expect('{');
+                    if (!consume('}')) {
+                        do {
+                            String entryKey = readString();
+                            expect(':');
+                            wrapped(out, false, entryKey);
+                        } while (consume(','));
+                        expect('}');
+                    }
+                    out.writeByte(ElementType.END.getId());
+                }
+                default -> typed(type, null, out);
+            }
+            expect('}');
+            depth--;
+            return type;
+        }
+
+        // tokens
+
+        private boolean readBoolean() throws IOException, ParseException {
+            String literal = readLiteral();
+            return switch (literal) {
+                case "true" -> true;
+                case "false" -> false;
+                default -> throw error("Expected a boolean but found " + literal);
+            };
+        }
+
+        private long readIntegral(long min, long max) throws IOException, ParseException {
+            if (peek() == 't' || peek() == 'f')
+                return readBoolean() ? 1 : 0;
+            String number = readNumber();
+            long value;
+            try {
+                value = Long.parseLong(number);
+            } catch (NumberFormatException e) {
+                throw error("Expected an integer but found " + number);
+            }
+            if (value < min || value > max)
+                throw error(number + " is out of range");
+            return value;
+        }
+
+        private double readFloating() throws IOException, ParseException {
+            if (peek() == '"') {
+                String value = readString();
+                return switch (value) {
+                    case "NaN" -> Double.NaN;
+                    case "Infinity" -> Double.POSITIVE_INFINITY;
+                    case "-Infinity" -> Double.NEGATIVE_INFINITY;
+                    default -> throw error("Expected a number but found " + value);
+                };
+            }
+            return parseDouble(readNumber());
+        }
+
+        private double parseDouble(String number) throws ParseException {
+            try {
+                return Double.parseDouble(number);
+            } catch (NumberFormatException e) {
+                throw error("Expected a number but found " + number);
+            }
+        }
+
+        private String readNumber() throws IOException, ParseException {
+            skipWhitespace();
+            StringBuilder sb = new StringBuilder();
+            //raw, whitespace ends the token
+            for (int c = peekRaw(); c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E' || (c >= '0' && c <= '9'); c = peekRaw()) {
+                sb.append((char) next());
+            }
+            if (sb.isEmpty())
+                throw error("Expected a number");
+            return sb.toString();
+        }
+
+        private String readLiteral() throws IOException {
+            skipWhitespace();
+            StringBuilder sb = new StringBuilder();
+            for (int c = peekRaw(); c >= 'a' && c <= 'z'; c = peekRaw()) {
+                sb.append((char) next());
+            }
+            return sb.toString();
+        }
+
+        private String readString() throws IOException, ParseException {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                int c = next();
+                if (c == -1)
+                    throw error("Unclosed string");
+                if (c == '"')
+                    return sb.toString();
+                if (c != '\\') {
+                    sb.append((char) c);
+                    continue;
+                }
+                c = next();
+                switch (c) {
+                    case '"', '\\', '/' -> sb.append((char) c);
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'n' -> sb.append('\n');
+                    case 'r' -> sb.append('\r');
+                    case 't' -> sb.append('\t');
+                    case 'u' -> {
+                        int value = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(next(), 16);
+                            if (digit < 0)
+                                throw error("Invalid unicode escape");
+                            value = value * 16 + digit;
+                        }
+                        sb.append((char) value);
+                    }
+                    default -> throw error("Invalid escape");
+                }
+            }
+        }
+
+        private void enter() throws ParseException {
+            if (++depth > MAX_DEPTH)
+                throw error("Nested deeper than " + MAX_DEPTH);
+        }
+
+        private void expect(char expected) throws IOException, ParseException {
+            if (!consume(expected))
+                throw error("Expected '" + expected + "'");
+        }
+
+        private boolean consume(char expected) throws IOException {
+            if (peek() != expected)
+                return false;
+            next();
+            return true;
+        }
+
+        /**
+         * @return the next character that is not whitespace without consuming it, -1 at the end
+         */
+        private int peek() throws IOException {
+            skipWhitespace();
+            return peekRaw();
+        }
+
+        private void skipWhitespace() throws IOException {
+            for (int c = peekRaw(); c == ' ' || c == '\n' || c == '\r' || c == '\t'; c = peekRaw()) {
+                next();
+            }
+        }
+
+        private int peekRaw() throws IOException {
+            if (peeked == -2)
+                peeked = in.read();
+            return peeked;
+        }
+
+        private int next() throws IOException {
+            int c = peekRaw();
+            peeked = -2;
+            if (c != -1)
+                position++;
+            return c;
+        }
+
+        private ParseException error(String message) {
+            return new ParseException(message + " at position " + position, position);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package at.haha007.edennbt.parser;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Output buffer of the binary writer. Writes big endian values directly into the buffer
+ * and gives access to already written ranges.
+ */
+public class NbtOutputBuffer extends ByteArrayOutputStream {
+    static final VarHandle INTS = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    public NbtOutputBuffer() {
+        super();
+    }
+
+    public NbtOutputBuffer(int size) {
+        super(size);
+    }
+
+    /**
+     * @return a copy of everything written since start
+     */
+    public byte[] copyFrom(int start) {
+        return Arrays.copyOfRange(buf, start, count);
+    }
+
+    /**
+     * Drops everything written after the first size bytes.
+     */
+    public void truncate(int size) {
+        if (size < 0 || size > count)
+            throw new IndexOutOfBoundsException(size);
+        count = size;
+    }
+
+    public void writeShort(int value) {
+        ensureCapacity(2);
+        buf[count] = (byte) (value >> 8);
+        buf[count + 1] = (byte) value;
+        count += 2;
+    }
+
+    public void writeInt(int value) {
+        ensureCapacity(4);
+        buf[count] = (byte) (value >> 24);
+        buf[count + 1] = (byte) (value >> 16);
+        buf[count + 2] = (byte) (value >> 8);
+        buf[count + 3] = (byte) value;
+        count += 4;
+    }
+
+    public void writeLong(long value) {
+        writeInt((int) (value >> 32));
+        writeInt((int) value);
+    }
+
+    /**
+     * Writes all values, growing the buffer once.
+     */
+    public void writeInts(int[] values) {
+        ensureCapacity(values.length * 4);
+        for (int value : values) {
+            INTS.set(buf, count, value);
+            count += 4;
+        }
+    }
+
+    /**
+     * Writes all values, growing the buffer once.
+     */
+    public void writeLongs(long[] values) {
+        ensureCapacity(values.length * 8);
+        for (long value : values) {
+            LONGS.set(buf, count, value);
+            count += 8;
+        }
+    }
+
+    /**
+     * Writes a string as modified UTF-8 with an unsigned short length prefix, encoded directly into the buffer.
+     */
+    public void writeString(String s) {
+        int length = ModifiedUtf8.encodedLength(s);
+        if (length > 0xffff)
+            throw new IllegalArgumentException("String too long: " + length + " bytes");
+        ensureCapacity(2 + length);
+        buf[count] = (byte) (length >> 8);
+        buf[count + 1] = (byte) length;
+        count += 2 + ModifiedUtf8.encode(s, buf, count + 2);
+    }
+
+    private void ensureCapacity(int additional) {
+        int required = count + additional;
+        if (required > buf.length)
+            buf = Arrays.copyOf(buf, Math.max(required, buf.length * 2));
+    }
+}
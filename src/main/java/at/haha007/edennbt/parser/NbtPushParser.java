@@ -0,0 +1,348 @@
+package at.haha007.edennbt.parser;
+
+import at.haha007.edennbt.element.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Incremental binary nbt decoder for input that arrives in fragments, e.g. from a non-blocking socket.
+ * <br>
+ * Bytes are pushed with {@link #feed(ByteBuffer)} in chunks of any size, split at any position.
+ * The parser keeps the open compounds and lists and the partially read value between calls,
+ * complete root elements are queued and taken with {@link #poll()}. Several roots may follow each other.
+ * <br>
+ * Malformed input throws an {@link IllegalArgumentException}, the parser has to be {@link #reset()} afterwards.
+ * So does a root element larger than the maximum size, it is rejected as soon as a length announces too many bytes,
+ * before anything is allocated for them. Int and long arrays are decoded into their final array chunk by chunk.
+ * Not thread safe.
+ */
+public class NbtPushParser {
+    private static final int MAX_DEPTH = 512;
+    /**
+     * The default maximum size of a root element in bytes, the limit of the network protocol.
+     */
+    public static final long DEFAULT_MAX_BYTES = 2 * 1024 * 1024;
+
+    private final boolean namedRoots;
+    private final long maxBytes;
+    private final Deque<Frame> frames = new ArrayDeque<>();
+    private final Deque<NbtElement> ready = new ArrayDeque<>();
+    private final byte[] scratch = new byte[256];
+
+    private State state;
+    private ElementType valueType;
+    //the bytes needed to advance the state and how many of them are there
+    private byte[] buffer;
+    private int need;
+    private int filled;
+    //bytes of the current root so far
+    private long rootBytes;
+    //the int or long array being read and how many of its elements are there
+    private int[] ints;
+    private long[] longs;
+    private int arrayFilled;
+
+    /**
+     * Creates a parser for roots with type, name and payload, like {@link IOStreamParser}.
+     */
+    public NbtPushParser() {
+        this(true);
+    }
+
+    /**
+     * @param namedRoots false for roots without name, as sent by newer network protocols
+     */
+    public NbtPushParser(boolean namedRoots) {
+        this(namedRoots, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param maxBytes the maximum size of a root element in bytes, including type and name
+     */
+    public NbtPushParser(boolean namedRoots, long maxBytes) {
+        if (maxBytes <= 0)
+            throw new IllegalArgumentException("maxBytes must be positive");
+        this.namedRoots = namedRoots;
+        this.maxBytes = maxBytes;
+        reset();
+    }
+
+    public void feed(byte[] data) {
+        feed(ByteBuffer.wrap(data));
+    }
+
+    public void feed(byte[] data, int offset, int length) {
+        feed(ByteBuffer.wrap(data, offset, length));
+    }
+
+    /**
+     * Consumes all remaining bytes of data.
+     */
+    public void feed(ByteBuffer data) {
+        while (true) {
+            if (filled == need) {
+                advance();
+                continue;
+            }
+            if (!data.hasRemaining())
+                return;
+            int n = Math.min(need - filled, data.remaining());
+            data.get(buffer, filled, n);
+            filled += n;
+            rootBytes += n;
+        }
+    }
+
+    /**
+     * @return the next complete root element, null if there is none yet
+     */
+    public NbtElement poll() {
+        return ready.poll();
+    }
+
+    /**
+     * @return true if an element was started but is not complete yet
+     */
+    public boolean isPartial() {
+        return state != State.ROOT_TYPE || filled > 0;
+    }
+
+    /**
+     * Drops all state and queued elements.
+     */
+    public final void reset() {
+        frames.clear();
+        ready.clear();
+        valueType = null;
+        rootBytes = 0;
+        ints = null;
+        longs = null;
+        expect(State.ROOT_TYPE, 1);
+    }
+
+    private void expect(State state, int bytes) {
+        if (rootBytes + bytes > maxBytes)
+            throw new IllegalArgumentException("Nbt larger than " + maxBytes + " bytes");
+        this.state = state;
+        buffer = bytes <= scratch.length ? scratch : new byte[bytes];
+        need = bytes;
+        filled = 0;
+    }
+
+    private void advance() {
+        switch (state) {
+            case ROOT_TYPE -> {
+                valueType = ElementType.byId(buffer[0]);
+                if (valueType == ElementType.END)
+                    throw new IllegalArgumentException("Unexpected END tag");
+                if (namedRoots)
+                    expect(State.ROOT_NAME_LENGTH, 2);
+                else
+                    startValue(valueType);
+            }
+            case ROOT_NAME_LENGTH -> expect(State.ROOT_NAME, unsignedShort());
+            case ROOT_NAME -> startValue(valueType);
+            case ENTRY_TYPE -> {
+                ElementType type = ElementType.byId(buffer[0]);
+                if (type == ElementType.END) {
+                    emit(frames.pop().container);
+                } else {
+                    frames.getFirst().elementType = type;
+                    expect(State.KEY_LENGTH, 2);
+                }
+            }
+            case KEY_LENGTH -> expect(State.KEY, unsignedShort());
+            case KEY -> {
+                Frame frame = frames.getFirst();
+                frame.key = ModifiedUtf8.decode(buffer, 0, need);
+                startValue(frame.elementType);
+            }
+            case VALUE -> emit(switch (valueType) {
+                case BYTE -> new NbtByte(buffer[0]);
+                case SHORT -> new NbtShort((short) unsignedShort());
+                case INT -> new NbtInt(getInt(0));
+                case LONG -> new NbtLong(getLong(0));
+                case FLOAT -> new NbtFloat(Float.intBitsToFloat(getInt(0)));
+                case DOUBLE -> new NbtDouble(Double.longBitsToDouble(getLong(0)));
+                default -> throw new IllegalStateException("Unexpected " + valueType);
+            });
+            case STRING_LENGTH -> expect(State.STRING, unsignedShort());
+            case STRING -> emit(new NbtString(ModifiedUtf8.decode(buffer, 0, need)));
+            case ARRAY_LENGTH -> {
+                int length = getInt(0);
+                int size = elementSize();
+                if (length < 0)
+                    throw new IllegalArgumentException("Invalid array length: " + length);
+                if (rootBytes + (long) length * size > maxBytes)
+                    throw new IllegalArgumentException("Nbt larger than " + maxBytes + " bytes");
+                switch (valueType) {
+                    case BYTE_ARRAY -> {
+                        //byte arrays are read directly into their final array
+                        expect(State.ARRAY, length);
+                        if (buffer == scratch)
+                            buffer = new byte[need];
+                    }
+                    case INT_ARRAY -> ints = new int[length];
+                    default -> longs = new long[length];
+                }
+                arrayFilled = 0;
+                if (valueType != ElementType.BYTE_ARRAY)
+                    nextArrayChunk();
+            }
+            case ARRAY -> {
+                int count = need / elementSize();
+                switch (valueType) {
+                    case BYTE_ARRAY -> emit(new NbtByteArray(buffer));
+                    case INT_ARRAY -> {
+                        for (int i = 0; i < count; i++) {
+                            ints[arrayFilled + i] = getInt(i * 4);
+                        }
+                        arrayFilled += count;
+                        nextArrayChunk();
+                    }
+                    default -> {
+                        for (int i = 0; i < count; i++) {
+                            longs[arrayFilled + i] = getLong(i * 8);
+                        }
+                        arrayFilled += count;
+                        nextArrayChunk();
+                    }
+                }
+            }
+            case LIST_HEADER -> {
+                ElementType type = ElementType.byId(buffer[0]);
+                int size = getInt(1);
+                if (size < 0 || (size > 0 && type == ElementType.END))
+                    throw new IllegalArgumentException("Invalid list of " + size + " " + type);
+                @SuppressWarnings("unchecked")
+                NbtList<NbtElement> list = new NbtList<>((Class<NbtElement>) type.getNbtClass());
+                if (size == 0) {
+                    emit(list);
+                } else {
+                    push(new Frame(list, type, size));
+                    startValue(type);
+                }
+            }
+        }
+    }
+
+    private int elementSize() {
+        return switch (valueType) {
+            case BYTE_ARRAY -> 1;
+            case INT_ARRAY -> 4;
+            default -> 8;
+        };
+    }
+
+    /**
+     * Reads the next chunk of the int or long array through the scratch buffer, emits the array once it is full.
+     */
+    private void nextArrayChunk() {
+        int size = elementSize();
+        int length = ints != null ? ints.length : longs.length;
+        if (arrayFilled == length) {
+            NbtElement array = ints != null ? new NbtIntArray(ints) : new NbtLongArray(longs);
+            ints = null;
+            longs = null;
+            emit(array);
+            return;
+        }
+        expect(State.ARRAY, Math.min(length - arrayFilled, scratch.length / size) * size);
+    }
+
+    private void startValue(ElementType type) {
+        valueType = type;
+        switch (type) {
+            case END -> throw new IllegalArgumentException("Unexpected END tag");
+            case STRING -> expect(State.STRING_LENGTH, 2);
+            case BYTE_ARRAY, INT_ARRAY, LONG_ARRAY -> expect(State.ARRAY_LENGTH, 4);
+            case LIST -> expect(State.LIST_HEADER, 5);
+            case COMPOUND -> {
+                push(new Frame(new NbtCompound(), null, 0));
+                expect(State.ENTRY_TYPE, 1);
+            }
+            default -> expect(State.VALUE, NbtCursor.fixedSize(type));
+        }
+    }
+
+    private void push(Frame frame) {
+        if (frames.size() >= MAX_DEPTH)
+            throw new IllegalArgumentException("Nbt nested deeper than " + MAX_DEPTH);
+        frames.push(frame);
+    }
+
+    /**
+     * Adds a complete value to the open container, completing the container if it is full.
+     */
+    private void emit(NbtElement value) {
+        Frame frame = frames.peek();
+        if (frame == null) {
+            ready.add(value);
+            valueType = null;
+            rootBytes = 0;
+            expect(State.ROOT_TYPE, 1);
+        } else if (frame.container instanceof NbtCompound compound) {
+            compound.put(frame.key, value);
+            expect(State.ENTRY_TYPE, 1);
+        } else {
+            @SuppressWarnings("unchecked")
+            NbtList<NbtElement> list = (NbtList<NbtElement>) frame.container;
+            list.add(value);
+            if (--frame.remaining == 0) {
+                frames.pop();
+                emit(frame.container);
+            } else {
+                startValue(frame.elementType);
+            }
+        }
+    }
+
+    private int unsignedShort() {
+        return ((buffer[0] & 0xff) << 8) | (buffer[1] & 0xff);
+    }
+
+    private int getInt(int offset) {
+        return ((buffer[offset] & 0xff) << 24)
+                | ((buffer[offset + 1] & 0xff) << 16)
+                | ((buffer[offset + 2] & 0xff) << 8)
+                | (buffer[offset + 3] & 0xff);
+    }
+
+    private long getLong(int offset) {
+        return ((long) getInt(offset) << 32) | (getInt(offset + 4) & 0xffffffffL);
+    }
+
+    private enum State {
+        ROOT_TYPE,
+        ROOT_NAME_LENGTH,
+        ROOT_NAME,
+        ENTRY_TYPE,
+        KEY_LENGTH,
+        KEY,
+        VALUE,
+        STRING_LENGTH,
+        STRING,
+        ARRAY_LENGTH,
+        ARRAY,
+        LIST_HEADER
+    }
+
+    /**
+     * An open compound or list.
+     */
+    private static final class Frame {
+        private final NbtElement container;
+        //type of the list elements or of the current compound entry
+        private ElementType elementType;
+        private int remaining;
+        private String key;
+
+        private Frame(NbtElement container, ElementType elementType, int remaining) {
+            this.container = container;
+            this.elementType = elementType;
+            this.remaining = remaining;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package at.haha007.edennbt.parser;
+
+import at.haha007.edennbt.element.NbtElement;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Write-behind saving of binary nbt files, one file per key.
+ * <br>
+ * {@link #save(Object, NbtElement)} only takes a {@link NbtElement#deepCopy()} of the element and queues it.
+ * Arrays are shared copy on write, an array taken with getValue() before is copied and may still be changed in place.
+ * Encoding and writing happen on a fixed number of worker threads. Saving a key again before its previous save started
+ * replaces the queued element, only the latest one is written. Saves of the same key never run at the same time
+ * and are written in order. Files are replaced atomically like by {@link AsyncNbtFiles#save(Path, NbtElement)}.
+ *
+ * <pre>{@code
+ * NbtSaveQueue<UUID> saves = new NbtSaveQueue<>(uuid -> playerDir.resolve(uuid + ".dat"), 2, true);
+ * saves.save(player.getUniqueId(), playerData);
+ * ...
+ * saves.close(); //on shutdown, writes everything still queued
+ * }</pre>
+ */
+public class NbtSaveQueue<K> implements AutoCloseable {
+    private final Function<K, Path> files;
+    private final IOStreamParser parser;
+    private final boolean compressed;
+    private final ExecutorService executor;
+    //guarded by this
+    private final Map<K, Save> queued = new HashMap<>();
+    private final Map<K, Save> writing = new HashMap<>();
+    private boolean closed;
+
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * @param files   the file of each key
+     * @param workers the number of threads encoding and writing files
+     */
+    public NbtSaveQueue(Function<K, Path> files, int workers, boolean compressed) {
+        this(files, new IOStreamParser(), workers, compressed);
+    }
+
+    public NbtSaveQueue(Function<K, Path> files, IOStreamParser parser, int workers, boolean compressed) {
+        if (workers <= 0)
+            throw new IllegalArgumentException("workers must be positive");
+        this.files = files;
+        this.parser = parser;
+        this.compressed = compressed;
+        this.executor = Executors.newFixedThreadPool(workers, Thread.ofPlatform().name("nbt-save-", 0).daemon().factory());
+    }
+
+    /**
+     * Queues element to be written to the file of key. The element can be changed again as soon as this returns.
+     *
+     * @return completes once this element or a later one of the same key is written
+     * @throws IllegalStateException if the queue is closed
+     */
+    public CompletableFuture<Void> save(K key, NbtElement element) {
+        NbtElement copy = element.deepCopy();
+        synchronized (this) {
+            if (closed)
+                throw new IllegalStateException("Save queue is closed");
+            Save save = queued.get(key);
+            if (save != null) {
+                coalesced.incrementAndGet();
+                save.element = copy;
+                return save.future;
+            }
+            save = new Save(copy);
+            queued.put(key, save);
+            //a running save of the same key schedules this one when it is done
+            if (!writing.containsKey(key))
+                executor.execute(() -> write(key));
+            return save.future;
+        }
+    }
+
+    /**
+     * @return completes once everything queued or being written at the time of the call is written
+     */
+    public synchronized CompletableFuture<Void> flush() {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(queued.size() + writing.size());
+        queued.values().forEach(save -> futures.add(save.future));
+        writing.values().forEach(save -> futures.add(save.future));
+        //failed saves are counted by getFailed(), flushing waits for the others anyway
+        return CompletableFuture.allOf(futures.stream()
+                .map(future -> future.exceptionally(t -> null))
+                .toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Stops accepting saves, then waits until everything queued is written.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        flush().join();
+        executor.close();
+    }
+
+    /**
+     * @return the number of keys waiting for a worker
+     */
+    public synchronized int getQueueDepth() {
+        return queued.size();
+    }
+
+    /**
+     * @return the number of files being encoded or written
+     */
+    public synchronized int getInFlight() {
+        return writing.size();
+    }
+
+    /**
+     * @return the number of saves that were replaced by a later save of the same key before they were written
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return the number of files written
+     */
+    public long getWritten() {
+        return written.get();
+    }
+
+    /**
+     * @return the number of files that could not be written
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    private void write(K key) {
+        Save save;
+        synchronized (this) {
+            save = queued.remove(key);
+            writing.put(key, save);
+        }
+        try {
+            AsyncNbtFiles.replace(files.apply(key), (NbtOutputBuffer) parser.write(save.element), compressed);
+            written.incrementAndGet();
+            save.future.complete(null);
+        } catch (Throwable t) {
+            failed.incrementAndGet();
+            save.future.completeExceptionally(t);
+        } finally {
+            synchronized (this) {
+                writing.remove(key);
+                if (queued.containsKey(key))
+                    executor.execute(() -> write(key));
+            }
+        }
+    }
+
+    private static final class Save {
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private NbtElement element;
+
+        private Save(NbtElement element) {
+            this.element = element;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package at.haha007.edennbt.parser;
+
+import at.haha007.edennbt.element.ElementType;
+import lombok.Getter;
+
+import java.text.ParseException;
+import java.util.Arrays;
+
+/**
+ * Checks that binary nbt is well-formed without decoding it.
+ * <br>
+ * The scanner checks type ids, that lengths and sizes are not negative and fit into the data,
+ * the nesting depth, the END terminator of every compound and that nothing follows the root.
+ * Strings are not checked for valid modified UTF-8. Nothing is allocated per element,
+ * lists of numbers are checked in one step.
+ */
+public class NbtScanner {
+    private static final int TYPES = ElementType.values().length;
+
+    private final int maxDepth;
+
+    public NbtScanner() {
+        this(512);
+    }
+
+    /**
+     * @param maxDepth the maximum nesting depth, the root has depth 1
+     */
+    public NbtScanner(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Scans a root element: type, name, payload.
+     *
+     * @throws ParseException at the first malformed byte, the error offset is its position
+     */
+    public Stats scan(byte[] data) throws ParseException {
+        return scan(data, 0, data.length);
+    }
+
+    /**
+     * Scans a root element that fills exactly the given range.
+     *
+     * @throws ParseException at the first malformed byte, the error offset is its position
+     */
+    public Stats scan(byte[] data, int offset, int length) throws ParseException {
+        Scan scan = new Scan(data, offset, offset + length);
+        ElementType type = scan.readType();
+        if (type == ElementType.END)
+            throw new ParseException("Root of type END", offset);
+        scan.skipBytes(scan.readUnsignedShort());
+        scan.payload(type, 1);
+        if (scan.position != scan.end)
+            throw new ParseException((scan.end - scan.position) + " bytes after the root", scan.position);
+        return new Stats(scan.counts, scan.deepest, length);
+    }
+
+    private final class Scan {
+        private final byte[] data;
+        private final int end;
+        private final long[] counts = new long[TYPES];
+        private int position;
+        private int deepest;
+
+        private Scan(byte[] data, int position, int end) {
+            this.data = data;
+            this.position = position;
+            this.end = end;
+        }
+
+        private void payload(ElementType type, int depth) throws ParseException {
+            if (depth > maxDepth)
+                throw new ParseException("Nested deeper than " + maxDepth, position);
+            deepest = Math.max(deepest, depth);
+            counts[type.getId()]++;
+            switch (type) {
+                case END -> throw new ParseException("Unexpected END tag", position - 1);
+                case BYTE_ARRAY -> skipBytes(readLength());
+                case INT_ARRAY -> skipBytes(readLength() * 4L);
+                case LONG_ARRAY -> skipBytes(readLength() * 8L);
+                case STRING -> skipBytes(readUnsignedShort());
+                case LIST -> {
+                    ElementType elementType = readType();
+                    int size = readLength();
+                    if (size == 0)
+                        return;
+                    if (elementType == ElementType.END)
+                        throw new ParseException("List of " + size + " END tags", position - 5);
+                    int fixedSize = NbtCursor.fixedSize(elementType);
+                    if (fixedSize > 0) {
+                        skipBytes((long) size * fixedSize);
+                        counts[elementType.getId()] += size;
+                        deepest = Math.max(deepest, depth + 1);
+                        return;
+                    }
+                    for (int i = 0; i < size; i++) {
+                        payload(elementType, depth + 1);
+                    }
+                }
+                case COMPOUND -> {
+                    for (ElementType entryType = readType(); entryType != ElementType.END; entryType = readType()) {
+                        skipBytes(readUnsignedShort());
+                        payload(entryType, depth + 1);
+                    }
+                }
+                default -> skipBytes(NbtCursor.fixedSize(type));
+            }
+        }
+
+        private ElementType readType() throws ParseException {
+            require(1);
+            int id = data[position];
+            if (id < 0 || id >= TYPES)
+                throw new ParseException("Invalid type id " + id, position);
+            position++;
+            return ElementType.byId(id);
+        }
+
+        private int readUnsignedShort() throws ParseException {
+            require(2);
+            int value = ((data[position] & 0xff) << 8) | (data[position + 1] & 0xff);
+            position += 2;
+            return value;
+        }
+
+        private int readLength() throws ParseException {
+            require(4);
+            int value = (int) NbtOutputBuffer.INTS.get(data, position);
+            if (value < 0)
+                throw new ParseException("Negative length " + value, position);
+            position += 4;
+            return value;
+        }
+
+        private void skipBytes(long count) throws ParseException {
+            require(count);
+            position += (int) count;
+        }
+
+        private void require(long count) throws ParseException {
+            if (end - position < count)
+                throw new ParseException("Expected " + count + " more bytes but only " + (end - position) + " are left", position);
+        }
+    }
+
+    /**
+     * Structural statistics of a scanned element.
+     */
+    public static final class Stats {
+        private final long[] counts;
+        @Getter
+        private final int maxDepth;
+        @Getter
+        private final long bytes;
+
+        private Stats(long[] counts, int maxDepth, long bytes) {
+            this.counts = counts;
+            this.maxDepth = maxDepth;
+            this.bytes = bytes;
+        }
+
+        /**
+         * @return the number of elements of the given type, including list entries
+         */
+        public long getCount(ElementType type) {
+            return counts[type.getId()];
+        }
+
+        /**
+         * @return the number of elements of all types
+         */
+        public long getNodes() {
+            return Arrays.stream(counts).sum();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("Stats{nodes=").append(getNodes());
+            for (ElementType type : ElementType.values()) {
+                if (counts[type.getId()] != 0)
+                    sb.append(", ").append(type).append('=').append(counts[type.getId()]);
+            }
+            return sb.append(", maxDepth=").append(maxDepth).append(", bytes=").append(bytes).append('}').toString();
+        }
+    }
+}
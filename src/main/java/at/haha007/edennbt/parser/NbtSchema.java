@@ -0,0 +1,220 @@
+package at.haha007.edennbt.parser;
+
+import at.haha007.edennbt.element.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Expected layout of a compound, used to decode data of a known shape with fewer checks.
+ * <br>
+ * The entries are compiled to their encoded type and key bytes. While decoding, each entry is compared
+ * with the next expected one in a single range comparison, a match decodes the payload directly
+ * with the shared key instance. If it doesn't match, the later expected entries are tried, so a missing key
+ * only skips its own step. Entries that match none of them, like additional or reordered keys, are decoded generically, so every valid compound decodes to the same result as with {@link IOStreamParser}.
+ *
+ * <pre>{@code
+ * NbtSchema item = NbtSchema.builder()
+ *         .put("id", ElementType.STRING)
+ *         .put("Count", ElementType.BYTE)
+ *         .build();
+ * NbtSchema chest = NbtSchema.builder().putList("Items", item).build();
+ * NbtCompound compound = chest.decode(bytes);
+ * }</pre>
+ */
+public final class NbtSchema {
+    private final Step[] steps;
+
+    private NbtSchema(Step[] steps) {
+        this.steps = steps;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Creates the schema of an example compound, with the entries in its iteration order.
+     * Nested compounds and lists of compounds get the schema of their (first) element.
+     */
+    public static NbtSchema of(NbtCompound example) {
+        Builder builder = builder();
+        for (Map.Entry<String, NbtElement> entry : example.entrySet()) {
+            NbtElement value = entry.getValue();
+            if (value instanceof NbtCompound compound)
+                builder.put(entry.getKey(), of(compound));
+            else if (value instanceof NbtList<?> list && !list.isEmpty() && list.get(0) instanceof NbtCompound compound)
+                builder.putList(entry.getKey(), of(compound));
+            else
+                builder.put(entry.getKey(), value.getType());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Decodes a root compound with type and name.
+     *
+     * @throws IllegalArgumentException if the root is not a compound or the data is truncated
+     */
+    public NbtCompound decode(byte[] data) {
+        //type and name length
+        if (data.length < 3)
+            throw new IllegalArgumentException("Unexpected end of data");
+        NbtCursor cursor = new NbtCursor(data);
+        ElementType type = cursor.readRootHeader();
+        if (type != ElementType.COMPOUND)
+            throw new IllegalArgumentException("Expected COMPOUND but found " + type);
+        return decode(cursor);
+    }
+
+    /**
+     * Decodes the compound payload at the cursor position and moves past it.
+     *
+     * @throws IllegalArgumentException if the data ends before the compound
+     */
+    public NbtCompound decode(NbtCursor cursor) {
+        try {
+            return decodePayload(cursor);
+        } catch (IndexOutOfBoundsException e) {
+            //fixed size values and strings are read without checking the bounds
+            throw new IllegalArgumentException("Unexpected end of data", e);
+        }
+    }
+
+    private NbtCompound decodePayload(NbtCursor cursor) {
+        byte[] data = cursor.getData();
+        NbtCompound compound = new NbtCompound();
+        int next = 0;
+        while (peek(cursor) != 0) {
+            int position = cursor.getPosition();
+            int match = find(data, position, next);
+            if (match >= 0) {
+                Step step = steps[match];
+                next = match + 1;
+                cursor.setPosition(position + step.header.length);
+                compound.put(step.key, step.decode(cursor));
+            } else {
+                //fallback, decode the entry generically
+                ElementType type = cursor.readType();
+                compound.put(cursor.readString(), readPayload(cursor, type));
+            }
+        }
+        cursor.setPosition(cursor.getPosition() + 1);
+        return compound;
+    }
+
+    /**
+     * @return the index of the first step from start on that matches the entry at position, -1 if there is none
+     */
+    private int find(byte[] data, int position, int start) {
+        for (int i = start; i < steps.length; i++) {
+            if (steps[i].matches(data, position))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the byte at the cursor position, without moving past it
+     * @throws IllegalArgumentException if the data ends before it
+     */
+    private static byte peek(NbtCursor cursor) {
+        int position = cursor.getPosition();
+        if (position >= cursor.getData().length)
+            throw new IllegalArgumentException("Unexpected end of data at " + position);
+        return cursor.getData()[position];
+    }
+
+    private static NbtElement readPayload(NbtCursor cursor, ElementType type) {
+        return switch (type) {
+            case BYTE -> new NbtByte(cursor.readByte());
+            case SHORT -> new NbtShort(cursor.readShort());
+            case INT -> new NbtInt(cursor.readInt());
+            case LONG -> new NbtLong(cursor.readLong());
+            case FLOAT -> new NbtFloat(cursor.readFloat());
+            case DOUBLE -> new NbtDouble(cursor.readDouble());
+            case STRING -> new NbtString(cursor.readString());
+            default -> cursor.readElement(type);
+        };
+    }
+
+    public static final class Builder {
+        private final List<Step> steps = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        public Builder put(String key, ElementType type) {
+            if (type == ElementType.END)
+                throw new IllegalArgumentException("END tag is not allowed");
+            steps.add(new Step(key, type, null, null));
+            return this;
+        }
+
+        /**
+         * Expects a compound with the given schema.
+         */
+        public Builder put(String key, NbtSchema schema) {
+            steps.add(new Step(key, ElementType.COMPOUND, schema, null));
+            return this;
+        }
+
+        /**
+         * Expects a list of compounds with the given schema.
+         */
+        public Builder putList(String key, NbtSchema elementSchema) {
+            steps.add(new Step(key, ElementType.LIST, null, elementSchema));
+            return this;
+        }
+
+        public NbtSchema build() {
+            return new NbtSchema(steps.toArray(Step[]::new));
+        }
+    }
+
+    private static final class Step {
+        private final String key;
+        private final ElementType type;
+        private final NbtSchema schema;
+        private final NbtSchema elementSchema;
+        //type id, key length and key, as encoded before the payload
+        private final byte[] header;
+
+        private Step(String key, ElementType type, NbtSchema schema, NbtSchema elementSchema) {
+            this.key = key;
+            this.type = type;
+            this.schema = schema;
+            this.elementSchema = elementSchema;
+            byte[] encodedKey = ModifiedUtf8.encode(key);
+            if (encodedKey.length > 0xffff)
+                throw new IllegalArgumentException("Key too long: " + key);
+            header = new byte[3 + encodedKey.length];
+            header[0] = type.getId();
+            header[1] = (byte) (encodedKey.length >> 8);
+            header[2] = (byte) encodedKey.length;
+            System.arraycopy(encodedKey, 0, header, 3, encodedKey.length);
+        }
+
+        private boolean matches(byte[] data, int position) {
+            int end = position + header.length;
+            return end <= data.length && Arrays.equals(data, position, end, header, 0, header.length);
+        }
+
+        private NbtElement decode(NbtCursor cursor) {
+            if (schema != null)
+                return schema.decodePayload(cursor);
+            if (elementSchema != null && peek(cursor) == ElementType.COMPOUND.getId()) {
+                cursor.readByte();
+                int size = cursor.readInt();
+                NbtList<NbtCompound> list = new NbtList<>(NbtCompound.class);
+                for (int i = 0; i < size; i++) {
+                    list.add(elementSchema.decodePayload(cursor));
+                }
+                return list;
+            }
+            return readPayload(cursor, type);
+        }
+    }
+}
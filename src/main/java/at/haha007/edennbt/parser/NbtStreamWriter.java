@@ -0,0 +1,252 @@
+package at.haha007.edennbt.parser;
+
+import at.haha007.edennbt.element.ElementType;
+import at.haha007.edennbt.element.NbtElement;
+import lombok.SneakyThrows;
+
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Writes binary nbt to a stream piece by piece, without building the tree first.
+ * <br>
+ * Lists are written with their size up front and their elements pulled from an {@link Iterator} or {@link Stream},
+ * each element is encoded and dropped before the next one is pulled. Compounds are opened and closed explicitly,
+ * their entries are written one at a time. Memory use only depends on the largest single element.
+ *
+ * <pre>{@code
+ * try (NbtStreamWriter writer = new NbtStreamWriter(out)) {
+ *     writer.beginCompound();
+ *     writer.writeEntry("DataVersion", new NbtInt(3465));
+ *     writer.writeList("Entities", ElementType.COMPOUND, count, entities.stream().map(Entity::toNbt));
+ *     writer.endCompound();
+ * }
+ * }</pre>
+ * The output is the same as writing the complete tree with {@link IOStreamParser#write(NbtElement)}.
+ * <br>
+ * A write that fails after it started, e.g. a list with too few elements, leaves a partial element behind.
+ * The writer rejects every further call then and {@link #close()} only closes the stream, whatever was already
+ * flushed to it has to be discarded.
+ */
+public class NbtStreamWriter implements AutoCloseable {
+    private static final int FLUSH_SIZE = 64 * 1024;
+
+    private final OutputStream out;
+    private final NbtBinaryWriter writer;
+    //number of open compounds
+    private int depth = 0;
+    private boolean started = false;
+    //a write failed halfway, the output is incomplete
+    private boolean failed = false;
+
+    public NbtStreamWriter(OutputStream out) {
+        this(out, BinaryCodecs.DEFAULT);
+    }
+
+    public NbtStreamWriter(OutputStream out, CodecRegistry<NbtBinaryReader, NbtBinaryWriter> codecs) {
+        this.out = out;
+        this.writer = new NbtBinaryWriter(new NbtOutputBuffer(FLUSH_SIZE), codecs);
+    }
+
+    /**
+     * Opens the root compound.
+     */
+    public void beginCompound() {
+        checkRoot();
+        guarded(() -> {
+            writer.writeType(ElementType.COMPOUND);
+            writer.writeShort(0);
+        });
+        depth++;
+    }
+
+    /**
+     * Opens a compound entry of the current compound.
+     */
+    public void beginCompound(String key) {
+        checkEntry();
+        guarded(() -> {
+            writer.writeType(ElementType.COMPOUND);
+            writer.writeString(key);
+        });
+        depth++;
+    }
+
+    /**
+     * Closes the innermost open compound.
+     */
+    public void endCompound() {
+        checkEntry();
+        guarded(() -> {
+            writer.writeType(ElementType.END);
+            flushIfFull();
+        });
+        depth--;
+    }
+
+    /**
+     * Writes a complete entry of the current compound.
+     */
+    public void writeEntry(String key, NbtElement value) {
+        checkEntry();
+        guarded(() -> {
+            writer.writeType(value.getType());
+            writer.writeString(key);
+            writer.writePayload(value);
+            flushIfFull();
+        });
+    }
+
+    /**
+     * Writes a list as the root.
+     *
+     * @throws IllegalArgumentException if an element has another type or there are not exactly size elements
+     */
+    public void writeList(ElementType type, int size, Iterator<? extends NbtElement> elements) {
+        checkListArguments(type, size);
+        checkRoot();
+        guarded(() -> {
+            writer.writeType(ElementType.LIST);
+            writer.writeShort(0);
+            writeListPayload(type, size, elements);
+        });
+    }
+
+    /**
+     * Writes a list entry of the current compound.
+     *
+     * @throws IllegalArgumentException if an element has another type or there are not exactly size elements
+     */
+    public void writeList(String key, ElementType type, int size, Iterator<? extends NbtElement> elements) {
+        checkListArguments(type, size);
+        checkEntry();
+        guarded(() -> {
+            writer.writeType(ElementType.LIST);
+            writer.writeString(key);
+            writeListPayload(type, size, elements);
+        });
+    }
+
+    /**
+     * Writes a list as the root and closes the stream.
+     *
+     * @see #writeList(ElementType, int, Iterator)
+     */
+    public void writeList(ElementType type, int size, Stream<? extends NbtElement> elements) {
+        try (elements) {
+            writeList(type, size, elements.iterator());
+        }
+    }
+
+    /**
+     * Writes a list entry of the current compound and closes the stream.
+     *
+     * @see #writeList(String, ElementType, int, Iterator)
+     */
+    public void writeList(String key, ElementType type, int size, Stream<? extends NbtElement> elements) {
+        try (elements) {
+            writeList(key, type, size, elements.iterator());
+        }
+    }
+
+    /**
+     * Writes everything buffered to the stream.
+     */
+    public void flush() {
+        checkUsable();
+        guarded(this::flushAll);
+    }
+
+    /**
+     * Flushes and closes the stream. After a failed write the stream is only closed.
+     *
+     * @throws IllegalStateException if a compound is still open
+     */
+    @Override
+    @SneakyThrows
+    public void close() {
+        try {
+            if (failed)
+                return;
+            if (depth != 0)
+                throw new IllegalStateException(depth + " compounds are still open");
+            flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    //checked before anything is written, so the writer stays usable
+    private static void checkListArguments(ElementType type, int size) {
+        if (size < 0)
+            throw new IllegalArgumentException("Negative size: " + size);
+        if (size > 0 && type == ElementType.END)
+            throw new IllegalArgumentException("Elements of type END");
+    }
+
+    private void writeListPayload(ElementType type, int size, Iterator<? extends NbtElement> elements) {
+        writer.writeType(type);
+        writer.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            if (!elements.hasNext())
+                throw new IllegalArgumentException("Expected " + size + " elements but found " + i);
+            NbtElement element = elements.next();
+            if (element.getType() != type)
+                throw new IllegalArgumentException("Expected " + type + " but found " + element.getType() + " at " + i);
+            writer.writePayload(element);
+            flushIfFull();
+        }
+        if (elements.hasNext())
+            throw new IllegalArgumentException("More than " + size + " elements");
+    }
+
+    @SneakyThrows
+    private void flushAll() {
+        flushBuffer(writer.getBuffer());
+        out.flush();
+    }
+
+    /**
+     * Runs a write, a failure leaves the writer failed.
+     */
+    private void guarded(Runnable write) {
+        try {
+            write.run();
+        } catch (Throwable t) {
+            failed = true;
+            throw t;
+        }
+    }
+
+    private void flushIfFull() {
+        NbtOutputBuffer buffer = writer.getBuffer();
+        if (buffer.size() < FLUSH_SIZE)
+            return;
+        flushBuffer(buffer);
+    }
+
+    @SneakyThrows
+    private void flushBuffer(NbtOutputBuffer buffer) {
+        buffer.writeTo(out);
+        buffer.reset();
+    }
+
+    private void checkUsable() {
+        if (failed)
+            throw new IllegalStateException("A previous write failed");
+    }
+
+    private void checkRoot() {
+        checkUsable();
+        if (started)
+            throw new IllegalStateException("The root was already written");
+        started = true;
+    }
+
+    private void checkEntry() {
+        checkUsable();
+        if (depth == 0)
+            throw new IllegalStateException("No open compound");
+    }
+}
@@ -0,0 +1,200 @@
+package at.haha007.edennbt.parser;
+
+import at.haha007.edennbt.element.*;
+import lombok.SneakyThrows;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Binary writer that encodes large subtrees in parallel on a {@link ForkJoinPool}.
+ * <br>
+ * Compounds and lists with an estimated encoded size above the threshold are encoded by their own task,
+ * everything smaller is encoded inline by the task of its container. All payloads, also those of the split
+ * containers, are encoded by the codecs. The encoded pieces are joined in order, the output is byte for byte
+ * the output of an {@link IOStreamParser} with the same codecs.
+ * Change tracking caches are used and filled like by the sequential writer, only when writing with
+ * {@link BinaryCodecs#DEFAULT}.
+ * <br>
+ * The tree must not be changed while it is written.
+ */
+public class ParallelNbtWriter {
+    private final ForkJoinPool pool;
+    private final long threshold;
+    private final CodecRegistry<NbtBinaryReader, NbtBinaryWriter> codecs;
+
+    public ParallelNbtWriter() {
+        this(ForkJoinPool.commonPool(), 64 * 1024, BinaryCodecs.DEFAULT);
+    }
+
+    /**
+     * @param pool      the pool running the tasks
+     * @param threshold the estimated encoded size in bytes from which a subtree gets its own task
+     * @param codecs    the codecs used per tag type
+     */
+    public ParallelNbtWriter(ForkJoinPool pool, long threshold, CodecRegistry<NbtBinaryReader, NbtBinaryWriter> codecs) {
+        this.pool = pool;
+        this.threshold = threshold;
+        this.codecs = codecs;
+    }
+
+    /**
+     * Writes a root element: type, empty name, payload.
+     */
+    public NbtOutputBuffer write(NbtElement root) {
+        NbtOutputBuffer header = new NbtOutputBuffer(3);
+        header.write(root.getType().getId());
+        header.writeShort(0);
+        List<byte[]> pieces = new ArrayList<>();
+        pieces.add(header.toByteArray());
+        pieces.addAll(encode(root));
+        return concat(pieces);
+    }
+
+    /**
+     * Writes a payload without type and name, as found in list entries.
+     */
+    public NbtOutputBuffer writePayload(NbtElement element) {
+        return concat(encode(element));
+    }
+
+    private List<byte[]> encode(NbtElement element) {
+        if (isSplittable(element))
+            return pool.invoke(new EncodeTask(element));
+        NbtBinaryWriter writer = new NbtBinaryWriter(new NbtOutputBuffer(), codecs);
+        writer.writePayload(element);
+        return List.of(writer.getBuffer().toByteArray());
+    }
+
+    private boolean isSplittable(NbtElement element) {
+        return (element instanceof NbtCompound || element instanceof NbtList<?>)
+                && (!isCaching() || element.getEncodedPayload() == null)
+                && estimate(element, threshold) >= threshold;
+    }
+
+    /**
+     * Change tracking caches hold the encoding of {@link BinaryCodecs#DEFAULT}, they are only used when writing with it.
+     */
+    private boolean isCaching() {
+        return codecs == BinaryCodecs.DEFAULT;
+    }
+
+    private static NbtOutputBuffer concat(List<byte[]> pieces) {
+        int size = 0;
+        for (byte[] piece : pieces) {
+            size = Math.addExact(size, piece.length);
+        }
+        NbtOutputBuffer buffer = new NbtOutputBuffer(size);
+        for (byte[] piece : pieces) {
+            buffer.writeBytes(piece);
+        }
+        return buffer;
+    }
+
+    /**
+     * Estimates the encoded size of element, stopping as soon as limit is reached.
+     */
+    private static long estimate(NbtElement element, long limit) {
+        return switch (element) {
+            case NbtString string -> 2 + string.getValue().length();
+            case NbtByteArray array -> 4 + array.peekValue().length;
+            case NbtIntArray array -> 4 + 4L * array.peekValue().length;
+            case NbtLongArray array -> 4 + 8L * array.peekValue().length;
+            case NbtList<?> list -> {
+                long size = 5;
+                for (int i = 0; i < list.size() && size < limit; i++) {
+                    size += estimate(list.get(i), limit - size);
+                }
+                yield size;
+            }
+            case NbtCompound compound -> {
+                long size = 1;
+                for (Map.Entry<String, NbtElement> entry : compound.getElements().entrySet()) {
+                    if (size >= limit)
+                        break;
+                    size += 3 + entry.getKey().length() + estimate(entry.getValue(), limit - size);
+                }
+                yield size;
+            }
+            default -> NbtCursor.fixedSize(element.getType());
+        };
+    }
+
+    /**
+     * Encodes the payload of a compound or list, returns the encoded pieces in order.
+     * The container is encoded by the codecs, which encode every nested compound or list through
+     * {@link #writeContainer(NbtElement, NbtBinaryWriter)}. Nested subtrees above the threshold are forked there.
+     * Tasks are never serialized.
+     */
+    @SuppressWarnings("serial")
+    private final class EncodeTask extends RecursiveTask<List<byte[]>> {
+        private final NbtElement element;
+        private final NbtBinaryWriter writer;
+        //forked tasks in output order
+        private final List<Fork> forks = new ArrayList<>();
+
+        private EncodeTask(NbtElement element) {
+            this.element = element;
+            this.writer = new NbtBinaryWriter(new NbtOutputBuffer(), codecs
+                    .with(ElementType.LIST, this::writeContainer, null)
+                    .with(ElementType.COMPOUND, this::writeContainer, null));
+        }
+
+        @Override
+        @SneakyThrows
+        protected List<byte[]> compute() {
+            codecs.encode(element, writer);
+
+            byte[] bytes = writer.getBuffer().toByteArray();
+            List<byte[]> pieces = new ArrayList<>();
+            int position = 0;
+            for (Fork fork : forks) {
+                pieces.add(Arrays.copyOfRange(bytes, position, fork.position()));
+                pieces.addAll(fork.task().join());
+                position = fork.position();
+            }
+            pieces.add(Arrays.copyOfRange(bytes, position, bytes.length));
+            if (isCaching() && isTracking(element))
+                element.setEncodedPayload(concat(pieces).toByteArray());
+            return pieces;
+        }
+
+        /**
+         * Encodes a nested compound or list, or forks a task for it.
+         * Change tracking caches are read and filled here, the codecs only see this writer.
+         */
+        private void writeContainer(NbtElement value, NbtBinaryWriter out) throws IOException {
+            NbtOutputBuffer buffer = out.getBuffer();
+            if (isSplittable(value)) {
+                forks.add(new Fork(buffer.size(), new EncodeTask(value).fork()));
+                return;
+            }
+            byte[] cached = isCaching() ? value.getEncodedPayload() : null;
+            if (cached != null) {
+                out.writeBytes(cached);
+                return;
+            }
+            int start = buffer.size();
+            int forked = forks.size();
+            codecs.encode(value, out);
+            if (isCaching() && isTracking(value) && forks.size() == forked)
+                value.setEncodedPayload(buffer.copyFrom(start));
+        }
+
+        private static boolean isTracking(NbtElement element) {
+            return element instanceof NbtCompound compound ? compound.isTracking() : ((NbtList<?>) element).isTracking();
+        }
+    }
+
+    /**
+     * A forked task whose pieces go to position of the buffer of its parent task.
+     */
+    private record Fork(int position, ForkJoinTask<List<byte[]>> task) {
+    }
+}
@@ -34,7 +34,7 @@ public class SnbtParser implements NbtParser<String, String> {
                 sb.append("[B;");
                 NbtByteArray array = (NbtByteArray) input;
                 StringJoiner stringJoiner = new StringJoiner(",", "", "");
-                for (byte b : array.getValue()) {
+                for (byte b : array.peekValue()) {
                     stringJoiner.add(Byte.toString(b));
                 }
                 sb.append(stringJoiner);
@@ -65,7 +65,7 @@ public class SnbtParser implements NbtParser<String, String> {
                 sb.append("[I;");
                 NbtIntArray array = (NbtIntArray) input;
                 StringJoiner stringJoiner = new StringJoiner(",", "", "");
-                for (int b : array.getValue()) {
+                for (int b : array.peekValue()) {
                     stringJoiner.add(Integer.toString(b));
                 }
                 sb.append(stringJoiner);
@@ -77,7 +77,7 @@ public class SnbtParser implements NbtParser<String, String> {
                 sb.append("[L;");
                 NbtLongArray array = (NbtLongArray) input;
                 StringJoiner stringJoiner = new StringJoiner(",", "", "");
-                for (long b : array.getValue()) {
+                for (long b : array.peekValue()) {
                     stringJoiner.add(Long.toString(b));
                 }
                 sb.append(stringJoiner);
@@ -0,0 +1,16 @@
+package at.haha007.edennbt.parser;
+
+import at.haha007.edennbt.element.NbtElement;
+
+import java.io.IOException;
+
+/**
+ * Decodes the payload of one tag type for one format.
+ *
+ * @param <E> the element type
+ * @param <R> the reader of the format
+ */
+@FunctionalInterface
+public interface TagDecoder<E extends NbtElement, R> {
+    E decode(R in) throws IOException;
+}
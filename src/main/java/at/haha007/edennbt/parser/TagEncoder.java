@@ -0,0 +1,16 @@
+package at.haha007.edennbt.parser;
+
+import at.haha007.edennbt.element.NbtElement;
+
+import java.io.IOException;
+
+/**
+ * Encodes the payload of one tag type for one format.
+ *
+ * @param <E> the element type
+ * @param <W> the writer of the format
+ */
+@FunctionalInterface
+public interface TagEncoder<E extends NbtElement, W> {
+    void encode(E element, W out) throws IOException;
+}
@@ -0,0 +1,221 @@
+package at.haha007.edennbt.path;
+
+import at.haha007.edennbt.element.ElementType;
+import at.haha007.edennbt.element.NbtElement;
+import at.haha007.edennbt.parser.NbtCursor;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Offset index of an uncompressed binary nbt file, stored in a sidecar file next to it.
+ * <br>
+ * The index maps simple paths like {@code Level.Entities[3].id} to the type, offset and length of the payload.
+ * Lookups read and decode only that slice of the file. The root has the path {@code ""},
+ * keys that are not valid unquoted path keys are double-quoted like in {@link NbtPath}.
+ * Filters and wildcards are not supported.
+ * <br>
+ * The index remembers size and modification time of the file and refuses to read from a file that changed since.
+ *
+ * <pre>{@code
+ * NbtIndex index = NbtIndex.build(file, 3);
+ * index.save(NbtIndex.sidecar(file));
+ * ...
+ * NbtElement name = NbtIndex.load(NbtIndex.sidecar(file)).read(file, "data.LevelName");
+ * }</pre>
+ */
+public final class NbtIndex {
+    private static final int MAGIC = 0x4e425449; //NBTI
+    private static final int VERSION = 1;
+
+    //sorted by path
+    private final String[] paths;
+    private final byte[] types;
+    private final long[] offsets;
+    private final int[] lengths;
+    private final long sourceSize;
+    private final long sourceModified;
+
+    private NbtIndex(String[] paths, byte[] types, long[] offsets, int[] lengths, long sourceSize, long sourceModified) {
+        this.paths = paths;
+        this.types = types;
+        this.offsets = offsets;
+        this.lengths = lengths;
+        this.sourceSize = sourceSize;
+        this.sourceModified = sourceModified;
+    }
+
+    /**
+     * @return the default sidecar location of the index of file, {@code <file>.idx}
+     */
+    public static Path sidecar(Path file) {
+        return file.resolveSibling(file.getFileName() + ".idx");
+    }
+
+    /**
+     * Indexes an uncompressed binary nbt file.
+     *
+     * @param maxDepth the depth up to which elements are indexed, the root has depth 0, its entries depth 1
+     */
+    public static NbtIndex build(Path file, int maxDepth) throws IOException {
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        byte[] encoded = Files.readAllBytes(file);
+        return build(encoded, maxDepth, modified);
+    }
+
+    /**
+     * Indexes encoded binary nbt, before reading the index only checks that the file has the same size.
+     *
+     * @see #build(Path, int)
+     */
+    public static NbtIndex build(byte[] encoded, int maxDepth) {
+        return build(encoded, maxDepth, 0);
+    }
+
+    private static NbtIndex build(byte[] encoded, int maxDepth, long modified) {
+        List<Entry> entries = new ArrayList<>();
+        NbtCursor cursor = new NbtCursor(encoded);
+        ElementType rootType = cursor.readRootHeader();
+        index(cursor, rootType, "", 0, maxDepth, entries);
+        entries.sort(Comparator.comparing(Entry::path));
+
+        int size = entries.size();
+        String[] paths = new String[size];
+        byte[] types = new byte[size];
+        long[] offsets = new long[size];
+        int[] lengths = new int[size];
+        for (int i = 0; i < size; i++) {
+            Entry entry = entries.get(i);
+            paths[i] = entry.path();
+            types[i] = entry.type().getId();
+            offsets[i] = entry.offset();
+            lengths[i] = entry.length();
+        }
+        return new NbtIndex(paths, types, offsets, lengths, encoded.length, modified);
+    }
+
+    private static void index(NbtCursor cursor, ElementType type, String path, int depth, int maxDepth, List<Entry> out) {
+        int start = cursor.getPosition();
+        if (depth >= maxDepth) {
+            cursor.skip(type);
+        } else if (type == ElementType.COMPOUND) {
+            String prefix = path.isEmpty() ? "" : path + ".";
+            for (ElementType entryType = cursor.readType(); entryType != ElementType.END; entryType = cursor.readType()) {
+                String key = cursor.readString();
+                index(cursor, entryType, prefix + quote(key), depth + 1, maxDepth, out);
+            }
+        } else if (type == ElementType.LIST) {
+            ElementType elementType = cursor.readType();
+            int size = cursor.readInt();
+            for (int i = 0; i < size; i++) {
+                index(cursor, elementType, path + "[" + i + "]", depth + 1, maxDepth, out);
+            }
+        } else {
+            cursor.skip(type);
+        }
+        out.add(new Entry(path, type, start, cursor.getPosition() - start));
+    }
+
+    private static String quote(String key) {
+        boolean plain = !key.isEmpty();
+        for (int i = 0; i < key.length() && plain; i++) {
+            plain = " \"'[].{}".indexOf(key.charAt(i)) < 0;
+        }
+        if (plain)
+            return key;
+        return '"' + key.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+
+    public static NbtIndex load(Path indexFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC)
+                throw new IOException("Not an nbt index: " + indexFile);
+            int version = in.readUnsignedByte();
+            if (version != VERSION)
+                throw new IOException("Unsupported nbt index version " + version + ": " + indexFile);
+            long sourceSize = in.readLong();
+            long sourceModified = in.readLong();
+            int size = in.readInt();
+            String[] paths = new String[size];
+            byte[] types = new byte[size];
+            long[] offsets = new long[size];
+            int[] lengths = new int[size];
+            for (int i = 0; i < size; i++) {
+                paths[i] = in.readUTF();
+                types[i] = in.readByte();
+                offsets[i] = in.readLong();
+                lengths[i] = in.readInt();
+            }
+            return new NbtIndex(paths, types, offsets, lengths, sourceSize, sourceModified);
+        }
+    }
+
+    public void save(Path indexFile) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile)))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(sourceSize);
+            out.writeLong(sourceModified);
+            out.writeInt(paths.length);
+            for (int i = 0; i < paths.length; i++) {
+                out.writeUTF(paths[i]);
+                out.writeByte(types[i]);
+                out.writeLong(offsets[i]);
+                out.writeInt(lengths[i]);
+            }
+        }
+    }
+
+    /**
+     * @return the indexed element at path, if any
+     */
+    public Optional<Entry> lookup(String path) {
+        int i = Arrays.binarySearch(paths, path);
+        if (i < 0)
+            return Optional.empty();
+        return Optional.of(new Entry(path, ElementType.byId(types[i]), offsets[i], lengths[i]));
+    }
+
+    /**
+     * Reads and decodes the element at path from the indexed file.
+     *
+     * @return the element, null if the path is not indexed
+     * @throws IllegalStateException if the file changed since it was indexed
+     */
+    public NbtElement read(Path file, String path) throws IOException {
+        Entry entry = lookup(path).orElse(null);
+        if (entry == null)
+            return null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() != sourceSize || (sourceModified != 0 && Files.getLastModifiedTime(file).toMillis() != sourceModified))
+                throw new IllegalStateException("File changed since it was indexed: " + file);
+            ByteBuffer buffer = ByteBuffer.allocate(entry.length());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, entry.offset() + buffer.position()) < 0)
+                    throw new EOFException();
+            }
+            return new NbtCursor(buffer.array()).readElement(entry.type());
+        }
+    }
+
+    /**
+     * @return the number of indexed elements
+     */
+    public int size() {
+        return paths.length;
+    }
+
+    /**
+     * @param path   the path of the element
+     * @param type   the type of the element
+     * @param offset the offset of the payload in the file
+     * @param length the length of the payload
+     */
+    public record Entry(String path, ElementType type, long offset, int length) {
+    }
+}
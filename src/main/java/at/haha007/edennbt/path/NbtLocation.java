@@ -0,0 +1,26 @@
+package at.haha007.edennbt.path;
+
+import at.haha007.edennbt.element.ElementType;
+
+/**
+ * Position of an element inside encoded binary nbt.
+ *
+ * @param type      the type of the element
+ * @param start     offset of the compound entry (type byte) or of the list/array element
+ * @param payload   offset of the payload
+ * @param end       offset directly after the payload
+ * @param container offset of the length of the list or array the element is part of, -1 for compound entries and the root
+ */
+public record NbtLocation(ElementType type, int start, int payload, int end, int container) {
+    public boolean isRoot() {
+        return container < 0 && start == 0;
+    }
+
+    public boolean isCompoundEntry() {
+        return container < 0 && start != 0;
+    }
+
+    public int length() {
+        return end - payload;
+    }
+}
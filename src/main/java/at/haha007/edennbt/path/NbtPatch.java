@@ -0,0 +1,159 @@
+package at.haha007.edennbt.path;
+
+import at.haha007.edennbt.element.ElementType;
+import at.haha007.edennbt.element.NbtElement;
+import at.haha007.edennbt.parser.IOStreamParser;
+import at.haha007.edennbt.parser.ModifiedUtf8;
+import at.haha007.edennbt.parser.NbtCursor;
+
+import java.io.ByteArrayOutputStream;
+import java.util.*;
+
+/**
+ * Changes encoded binary nbt without decoding and re-encoding it.
+ * <br>
+ * Every operation locates its targets with a {@link NbtPath} and splices the new bytes in,
+ * all untouched byte ranges are copied as they are. Only list and array lengths are rewritten when elements are removed.
+ * Operations are applied in the order they were added, each one sees the result of the previous ones.
+ */
+public class NbtPatch {
+    private final List<Operation> operations = new ArrayList<>();
+
+    /**
+     * Replaces every element matched by path.
+     * Compound entries may change their type, list and array elements have to keep it.
+     */
+    public NbtPatch set(String path, NbtElement value) {
+        NbtPath compiled = NbtPath.compile(path);
+        operations.add(data -> {
+            List<Splice> splices = new ArrayList<>();
+            for (NbtLocation location : compiled.locate(data)) {
+                replace(data, location, value, splices);
+            }
+            return splices;
+        });
+        return this;
+    }
+
+    /**
+     * Sets key in every compound matched by path. Existing entries keep their position, new ones are appended.
+     */
+    public NbtPatch put(String path, String key, NbtElement value) {
+        NbtPath compiled = NbtPath.compile(path);
+        PathNode.CompoundChild child = new PathNode.CompoundChild(key);
+        byte[] name = ModifiedUtf8.encode(key);
+        operations.add(data -> {
+            List<Splice> splices = new ArrayList<>();
+            List<NbtLocation> existing = new ArrayList<>(1);
+            for (NbtLocation location : compiled.locate(data)) {
+                if (location.type() != ElementType.COMPOUND)
+                    continue;
+                existing.clear();
+                child.apply(data, location, existing);
+                if (!existing.isEmpty()) {
+                    replace(data, existing.get(0), value, splices);
+                    continue;
+                }
+                byte[] payload = payload(value);
+                byte[] entry = new byte[3 + name.length + payload.length];
+                entry[0] = value.getType().getId();
+                entry[1] = (byte) (name.length >> 8);
+                entry[2] = (byte) name.length;
+                System.arraycopy(name, 0, entry, 3, name.length);
+                System.arraycopy(payload, 0, entry, 3 + name.length, payload.length);
+                //insert before the END tag
+                splices.add(new Splice(location.end() - 1, location.end() - 1, entry));
+            }
+            return splices;
+        });
+        return this;
+    }
+
+    /**
+     * Removes every element matched by path from its compound, list or array.
+     */
+    public NbtPatch remove(String path) {
+        NbtPath compiled = NbtPath.compile(path);
+        operations.add(data -> {
+            List<Splice> splices = new ArrayList<>();
+            Map<Integer, Integer> removedFromContainer = new HashMap<>();
+            for (NbtLocation location : compiled.locate(data)) {
+                if (location.isRoot())
+                    throw new IllegalArgumentException("The root element can not be removed");
+                splices.add(new Splice(location.start(), location.end(), new byte[0]));
+                if (location.container() >= 0)
+                    removedFromContainer.merge(location.container(), 1, Integer::sum);
+            }
+            removedFromContainer.forEach((container, removed) -> {
+                int length = new NbtCursor(data, container).readInt();
+                splices.add(new Splice(container, container + 4, intBytes(length - removed)));
+            });
+            return splices;
+        });
+        return this;
+    }
+
+    public byte[] apply(byte[] encoded) {
+        byte[] data = encoded;
+        for (Operation operation : operations) {
+            List<Splice> splices = operation.splices(data);
+            if (!splices.isEmpty())
+                data = splice(data, splices);
+        }
+        return data;
+    }
+
+    private static void replace(byte[] data, NbtLocation location, NbtElement value, List<Splice> splices) {
+        ElementType type = value.getType();
+        if (location.type() != type) {
+            if (location.container() >= 0)
+                throw new IllegalArgumentException("Can not replace " + location.type() + " with " + type
+                        + " inside a list or array");
+            //compound entries and the root start with their type
+            splices.add(new Splice(location.start(), location.start() + 1,
+                    new byte[]{type.getId()}));
+        }
+        splices.add(new Splice(location.payload(), location.end(), payload(value)));
+    }
+
+    private static byte[] payload(NbtElement value) {
+        return ((ByteArrayOutputStream) new IOStreamParser().writePayload(value)).toByteArray();
+    }
+
+    private static byte[] intBytes(int value) {
+        return new byte[]{(byte) (value >> 24), (byte) (value >> 16), (byte) (value >> 8), (byte) value};
+    }
+
+    private static byte[] splice(byte[] data, List<Splice> splices) {
+        splices.sort(Comparator.comparingInt(Splice::from));
+        int size = data.length;
+        int last = 0;
+        for (Splice splice : splices) {
+            if (splice.from < last)
+                throw new IllegalArgumentException("Overlapping patch targets");
+            last = splice.to;
+            size += splice.replacement.length - (splice.to - splice.from);
+        }
+        byte[] result = new byte[size];
+        int read = 0;
+        int write = 0;
+        for (Splice splice : splices) {
+            int untouched = splice.from - read;
+            System.arraycopy(data, read, result, write, untouched);
+            write += untouched;
+            System.arraycopy(splice.replacement, 0, result, write, splice.replacement.length);
+            write += splice.replacement.length;
+            read = splice.to;
+        }
+        System.arraycopy(data, read, result, write, data.length - read);
+        return result;
+    }
+
+    @FunctionalInterface
+    private interface Operation {
+        List<Splice> splices(byte[] data);
+    }
+
+    private record Splice(int from, int to, byte[] replacement) {
+    }
+}
@@ -0,0 +1,232 @@
+package at.haha007.edennbt.path;
+
+import at.haha007.edennbt.element.ElementType;
+import at.haha007.edennbt.element.NbtCompound;
+import at.haha007.edennbt.element.NbtElement;
+import at.haha007.edennbt.parser.NbtCursor;
+import at.haha007.edennbt.parser.SnbtParser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiled nbt path in the syntax of the vanilla /data command, e.g. {@code Inventory[{Slot:0b}].tag.display.Name}.
+ * <br>
+ * Supported nodes: {@code key}, {@code "quoted key"}, {@code key{filter}}, {@code {filter}} at the root,
+ * {@code [index]}, {@code [-index]}, {@code []} and {@code [{filter}]}.
+ * <br>
+ * A path is compiled once and can be evaluated on trees and on encoded binary nbt as written by
+ * {@link at.haha007.edennbt.parser.IOStreamParser}. On binary only the matched elements are decoded,
+ * everything else is skipped.
+ */
+public final class NbtPath {
+    private final String source;
+    private final PathNode[] nodes;
+
+    private NbtPath(String source, PathNode[] nodes) {
+        this.source = source;
+        this.nodes = nodes;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the path is malformed
+     */
+    public static NbtPath compile(String path) {
+        return new NbtPath(path, new PathCompiler(path).compile().toArray(PathNode[]::new));
+    }
+
+    public List<NbtElement> get(NbtElement root) {
+        List<NbtElement> current = List.of(root);
+        for (PathNode node : nodes) {
+            List<NbtElement> next = new ArrayList<>();
+            for (NbtElement element : current) {
+                node.apply(element, next);
+            }
+            if (next.isEmpty())
+                return next;
+            current = next;
+        }
+        return current;
+    }
+
+    /**
+     * Evaluates the path on encoded binary nbt and decodes the matched elements.
+     */
+    public List<NbtElement> get(byte[] encoded) {
+        List<NbtLocation> locations = locate(encoded);
+        List<NbtElement> elements = new ArrayList<>(locations.size());
+        for (NbtLocation location : locations) {
+            elements.add(new NbtCursor(encoded, location.payload()).readElement(location.type()));
+        }
+        return elements;
+    }
+
+    /**
+     * Evaluates the path on encoded binary nbt without decoding anything.
+     *
+     * @return the locations of the matched elements, in encoded order
+     */
+    public List<NbtLocation> locate(byte[] encoded) {
+        NbtCursor cursor = new NbtCursor(encoded);
+        ElementType rootType = cursor.readRootHeader();
+        List<NbtLocation> current = List.of(new NbtLocation(rootType, 0, cursor.getPosition(), encoded.length, -1));
+        for (PathNode node : nodes) {
+            List<NbtLocation> next = new ArrayList<>();
+            for (NbtLocation location : current) {
+                node.apply(encoded, location, next);
+            }
+            if (next.isEmpty())
+                return next;
+            current = next;
+        }
+        return current;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof NbtPath other && other.source.equals(source);
+    }
+
+    @Override
+    public int hashCode() {
+        return source.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    private static final class PathCompiler {
+        private final String input;
+        private int position = 0;
+
+        private PathCompiler(String input) {
+            this.input = input;
+        }
+
+        private List<PathNode> compile() {
+            List<PathNode> nodes = new ArrayList<>();
+            if (input.isEmpty())
+                return nodes;
+            if (peek() == '{') {
+                nodes.add(new PathNode.Filter(readCompound()));
+            } else {
+                readKey(nodes);
+            }
+            while (position < input.length()) {
+                char c = input.charAt(position);
+                if (c == '.') {
+                    position++;
+                    readKey(nodes);
+                } else if (c == '[') {
+                    position++;
+                    nodes.add(readBrackets());
+                } else {
+                    throw error("Unexpected character '" + c + "'");
+                }
+            }
+            return nodes;
+        }
+
+        private void readKey(List<PathNode> nodes) {
+            if (position >= input.length())
+                throw error("Missing key");
+            char c = peek();
+            String key;
+            if (c == '"' || c == '\'') {
+                key = readQuoted(c);
+            } else {
+                int start = position;
+                while (position < input.length() && isUnquotedKeyChar(input.charAt(position))) {
+                    position++;
+                }
+                if (start == position)
+                    throw error("Missing key");
+                key = input.substring(start, position);
+            }
+            nodes.add(new PathNode.CompoundChild(key));
+            if (position < input.length() && peek() == '{')
+                nodes.add(new PathNode.Filter(readCompound()));
+        }
+
+        private PathNode readBrackets() {
+            if (position >= input.length())
+                throw error("Unclosed '['");
+            char c = peek();
+            PathNode node;
+            if (c == ']') {
+                node = new PathNode.AllElements();
+            } else if (c == '{') {
+                node = new PathNode.MatchElement(readCompound());
+            } else {
+                int start = position;
+                while (position < input.length() && input.charAt(position) != ']') {
+                    position++;
+                }
+                try {
+                    node = new PathNode.Index(Integer.parseInt(input.substring(start, position)));
+                } catch (NumberFormatException e) {
+                    throw error("Invalid index");
+                }
+            }
+            if (position >= input.length() || peek() != ']')
+                throw error("Unclosed '['");
+            position++;
+            return node;
+        }
+
+        private String readQuoted(char quote) {
+            StringBuilder sb = new StringBuilder();
+            position++;
+            while (position < input.length()) {
+                char c = input.charAt(position++);
+                if (c == quote)
+                    return sb.toString();
+                if (c == '\\' && position < input.length())
+                    c = input.charAt(position++);
+                sb.append(c);
+            }
+            throw error("Unclosed quote");
+        }
+
+        private NbtCompound readCompound() {
+            int start = position;
+            int depth = 0;
+            while (position < input.length()) {
+                char c = input.charAt(position);
+                if (c == '"' || c == '\'') {
+                    readQuoted(c);
+                    continue;
+                }
+                position++;
+                if (c == '{') {
+                    depth++;
+                } else if (c == '}' && --depth == 0) {
+                    NbtElement filter;
+                    try {
+                        filter = new SnbtParser().read(input.substring(start, position));
+                    } catch (RuntimeException e) {
+                        throw error("Invalid filter: " + e.getMessage());
+                    }
+                    if (!(filter instanceof NbtCompound compound))
+                        throw error("Filter is not a compound");
+                    return compound;
+                }
+            }
+            throw error("Unclosed '{'");
+        }
+
+        private char peek() {
+            return input.charAt(position);
+        }
+
+        private static boolean isUnquotedKeyChar(char c) {
+            return c != ' ' && c != '"' && c != '\'' && c != '[' && c != ']' && c != '.' && c != '{' && c != '}';
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + position + " in nbt path: " + input);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package at.haha007.edennbt.path;
+
+import at.haha007.edennbt.element.*;
+import at.haha007.edennbt.parser.ModifiedUtf8;
+import at.haha007.edennbt.parser.NbtCursor;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Partial match of an element against a filter, like the vanilla path filters:
+ * compounds match if all filter entries match, lists match if every filter element matches any element,
+ * everything else has to be equal.
+ */
+abstract class PathFilter {
+    static PathFilter of(NbtElement filter) {
+        if (filter instanceof NbtCompound compound)
+            return new CompoundFilter(compound);
+        return new ElementFilter(filter);
+    }
+
+    static boolean matches(NbtElement filter, NbtElement element) {
+        if (filter instanceof NbtCompound compound) {
+            if (!(element instanceof NbtCompound other))
+                return false;
+            for (Map.Entry<String, NbtElement> entry : compound.entrySet()) {
+                NbtElement value = other.get(entry.getKey());
+                if (value == null || !matches(entry.getValue(), value))
+                    return false;
+            }
+            return true;
+        }
+        if (filter instanceof NbtList<?> list) {
+            if (!(element instanceof NbtList<?> other))
+                return false;
+            if (list.isEmpty())
+                return other.isEmpty();
+            for (NbtElement wanted : list) {
+                if (other.stream().noneMatch(e -> matches(wanted, e)))
+                    return false;
+            }
+            return true;
+        }
+        return filter.equals(element);
+    }
+
+    abstract boolean matches(NbtElement element);
+
+    /**
+     * Matches the payload at the cursor position, the cursor position is undefined afterwards.
+     */
+    abstract boolean matches(NbtCursor cursor, ElementType type);
+
+    private static final class CompoundFilter extends PathFilter {
+        private final NbtCompound filter;
+        private final byte[][] keys;
+        private final PathFilter[] values;
+
+        private CompoundFilter(NbtCompound filter) {
+            this.filter = filter;
+            keys = new byte[filter.size()][];
+            values = new PathFilter[filter.size()];
+            int i = 0;
+            for (Map.Entry<String, NbtElement> entry : filter.entrySet()) {
+                keys[i] = ModifiedUtf8.encode(entry.getKey());
+                values[i] = of(entry.getValue());
+                i++;
+            }
+        }
+
+        @Override
+        boolean matches(NbtElement element) {
+            return matches(filter, element);
+        }
+
+        @Override
+        boolean matches(NbtCursor cursor, ElementType type) {
+            if (type != ElementType.COMPOUND)
+                return false;
+            byte[] data = cursor.getData();
+            int matched = 0;
+            ElementType subType = cursor.readType();
+            while (subType != ElementType.END) {
+                int length = cursor.readUnsignedShort();
+                int keyStart = cursor.getPosition();
+                int payload = keyStart + length;
+                cursor.setPosition(payload);
+                for (int i = 0; i < keys.length; i++) {
+                    if (Arrays.equals(data, keyStart, payload, keys[i], 0, keys[i].length)) {
+                        if (!values[i].matches(cursor, subType))
+                            return false;
+                        matched++;
+                        cursor.setPosition(payload);
+                        break;
+                    }
+                }
+                cursor.skip(subType);
+                subType = cursor.readType();
+            }
+            return matched == keys.length;
+        }
+    }
+
+    private static final class ElementFilter extends PathFilter {
+        private final NbtElement filter;
+
+        private ElementFilter(NbtElement filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        boolean matches(NbtElement element) {
+            return matches(filter, element);
+        }
+
+        @Override
+        boolean matches(NbtCursor cursor, ElementType type) {
+            if (type != filter.getType())
+                return false;
+            return matches(filter, cursor.readElement(type));
+        }
+    }
+}
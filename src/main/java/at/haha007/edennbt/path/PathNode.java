@@ -0,0 +1,231 @@
+package at.haha007.edennbt.path;
+
+import at.haha007.edennbt.element.*;
+import at.haha007.edennbt.parser.ModifiedUtf8;
+import at.haha007.edennbt.parser.NbtCursor;
+
+import java.util.List;
+
+/**
+ * A single step of a compiled {@link NbtPath}.
+ * Every step maps one input element to any number of output elements, both on trees and on encoded binary.
+ */
+interface PathNode {
+    void apply(NbtElement element, List<NbtElement> out);
+
+    void apply(byte[] data, NbtLocation location, List<NbtLocation> out);
+
+    /**
+     * {@code key}
+     */
+    record CompoundChild(String name, byte[] encodedName) implements PathNode {
+        CompoundChild(String name) {
+            this(name, ModifiedUtf8.encode(name));
+        }
+
+        @Override
+        public void apply(NbtElement element, List<NbtElement> out) {
+            if (element instanceof NbtCompound compound) {
+                NbtElement child = compound.get(name);
+                if (child != null)
+                    out.add(child);
+            }
+        }
+
+        @Override
+        public void apply(byte[] data, NbtLocation location, List<NbtLocation> out) {
+            if (location.type() != ElementType.COMPOUND)
+                return;
+            NbtCursor cursor = new NbtCursor(data, location.payload());
+            while (true) {
+                int start = cursor.getPosition();
+                ElementType type = cursor.readType();
+                if (type == ElementType.END)
+                    return;
+                boolean found = cursor.readStringEquals(encodedName);
+                int payload = cursor.getPosition();
+                cursor.skip(type);
+                if (found) {
+                    //keys are unique
+                    out.add(new NbtLocation(type, start, payload, cursor.getPosition(), -1));
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * {@code {filter}}, keeps compounds matching the filter
+     */
+    record Filter(NbtCompound filter, PathFilter compiled) implements PathNode {
+        Filter(NbtCompound filter) {
+            this(filter, PathFilter.of(filter));
+        }
+
+        @Override
+        public void apply(NbtElement element, List<NbtElement> out) {
+            if (compiled.matches(element))
+                out.add(element);
+        }
+
+        @Override
+        public void apply(byte[] data, NbtLocation location, List<NbtLocation> out) {
+            if (compiled.matches(new NbtCursor(data, location.payload()), location.type()))
+                out.add(location);
+        }
+
+        @Override
+        public String toString() {
+            return filter.toString();
+        }
+    }
+
+    /**
+     * {@code [index]}, negative indices count from the end
+     */
+    record Index(int index) implements PathNode {
+        @Override
+        public void apply(NbtElement element, List<NbtElement> out) {
+            int size = size(element);
+            int i = index < 0 ? size + index : index;
+            if (i >= 0 && i < size)
+                out.add(element(element, i));
+        }
+
+        @Override
+        public void apply(byte[] data, NbtLocation location, List<NbtLocation> out) {
+            forEach(data, location, index, out, null);
+        }
+
+        @Override
+        public String toString() {
+            return "[" + index + "]";
+        }
+    }
+
+    /**
+     * {@code []}
+     */
+    record AllElements() implements PathNode {
+        @Override
+        public void apply(NbtElement element, List<NbtElement> out) {
+            int size = size(element);
+            for (int i = 0; i < size; i++) {
+                out.add(element(element, i));
+            }
+        }
+
+        @Override
+        public void apply(byte[] data, NbtLocation location, List<NbtLocation> out) {
+            forEach(data, location, null, out, null);
+        }
+
+        @Override
+        public String toString() {
+            return "[]";
+        }
+    }
+
+    /**
+     * {@code [{filter}]}, keeps list elements matching the filter
+     */
+    record MatchElement(NbtCompound filter, PathFilter compiled) implements PathNode {
+        MatchElement(NbtCompound filter) {
+            this(filter, PathFilter.of(filter));
+        }
+
+        @Override
+        public void apply(NbtElement element, List<NbtElement> out) {
+            if (!(element instanceof NbtList<?> list))
+                return;
+            for (NbtElement e : list) {
+                if (compiled.matches(e))
+                    out.add(e);
+            }
+        }
+
+        @Override
+        public void apply(byte[] data, NbtLocation location, List<NbtLocation> out) {
+            if (location.type() == ElementType.LIST)
+                forEach(data, location, null, out, compiled);
+        }
+
+        @Override
+        public String toString() {
+            return "[" + filter + "]";
+        }
+    }
+
+    private static int size(NbtElement element) {
+        if (element instanceof NbtList<?> list)
+            return list.size();
+        if (element instanceof NbtByteArray array)
+            return array.peekValue().length;
+        if (element instanceof NbtIntArray array)
+            return array.peekValue().length;
+        if (element instanceof NbtLongArray array)
+            return array.peekValue().length;
+        return 0;
+    }
+
+    private static NbtElement element(NbtElement element, int index) {
+        if (element instanceof NbtByteArray array)
+            return new NbtByte(array.peekValue()[index]);
+        if (element instanceof NbtIntArray array)
+            return new NbtInt(array.peekValue()[index]);
+        if (element instanceof NbtLongArray array)
+            return new NbtLong(array.peekValue()[index]);
+        return ((NbtList<?>) element).get(index);
+    }
+
+    /**
+     * Adds the locations of list or array elements.
+     *
+     * @param index  the only index to add, all indices if null
+     * @param filter filter elements have to match, null to add all
+     */
+    private static void forEach(byte[] data, NbtLocation location, Integer index, List<NbtLocation> out, PathFilter filter) {
+        NbtCursor cursor = new NbtCursor(data, location.payload());
+        ElementType elementType;
+        switch (location.type()) {
+            case LIST -> elementType = cursor.readType();
+            case BYTE_ARRAY -> elementType = ElementType.BYTE;
+            case INT_ARRAY -> elementType = ElementType.INT;
+            case LONG_ARRAY -> elementType = ElementType.LONG;
+            default -> {
+                return;
+            }
+        }
+        int container = cursor.getPosition();
+        int size = cursor.readInt();
+        int fixedSize = NbtCursor.fixedSize(elementType);
+        int from = 0;
+        int to = size;
+        if (index != null) {
+            from = index < 0 ? size + index : index;
+            if (from < 0 || from >= size)
+                return;
+            to = from + 1;
+            if (fixedSize >= 0) {
+                cursor.setPosition(cursor.getPosition() + from * fixedSize);
+            } else {
+                for (int i = 0; i < from; i++) {
+                    cursor.skip(elementType);
+                }
+            }
+        }
+        for (int i = from; i < to; i++) {
+            int start = cursor.getPosition();
+            boolean matches = filter == null || filter.matches(cursor, elementType);
+            cursor.setPosition(start);
+            cursor.skip(elementType);
+            if (matches)
+                out.add(new NbtLocation(elementType, start, start, cursor.getPosition(), container));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package at.haha007.edennbt.cache;
+
+import at.haha007.edennbt.element.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class NbtCacheTest {
+    private static NbtCompound chunk(int x) {
+        NbtCompound chunk = new NbtCompound();
+        chunk.put("xPos", new NbtInt(x));
+        chunk.put("heights", new NbtLongArray(new long[37]));
+        return chunk;
+    }
+
+    @Test
+    void testWeightBoundAndStats() {
+        long weight = NbtCache.estimateWeight(chunk(0));
+        NbtCache<Integer> cache = new NbtCache<>(weight * 3);
+        AtomicInteger loads = new AtomicInteger();
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertEquals(chunk(i), cache.get(i, x -> {
+                loads.incrementAndGet();
+                return chunk(x);
+            }));
+        }
+        NbtCache.Stats stats = cache.getStats();
+        Assertions.assertEquals(3, stats.size());
+        Assertions.assertEquals(2, stats.evictions());
+        Assertions.assertEquals(weight * 3, stats.weight());
+        Assertions.assertNull(cache.getIfPresent(0));
+        Assertions.assertNotNull(cache.getIfPresent(2));
+        //2 is now the most recently used, 3 is evicted next
+        cache.put(5, chunk(5));
+        Assertions.assertNull(cache.getIfPresent(3));
+        Assertions.assertNotNull(cache.getIfPresent(2));
+
+        cache.invalidate(2);
+        Assertions.assertNull(cache.getIfPresent(2));
+        Assertions.assertEquals(5, loads.get());
+        Assertions.assertEquals(2, cache.getStats().hits());
+    }
+
+    @Test
+    void testSharedAndInvalidatedLoads() {
+        NbtCache<String> cache = new NbtCache<>(1 << 20);
+        CompletableFuture<NbtElement> disk = new CompletableFuture<>();
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<NbtElement> first = cache.getAsync("player", key -> {
+            loads.incrementAndGet();
+            return disk;
+        });
+        CompletableFuture<NbtElement> second = cache.getAsync("player", key -> {
+            loads.incrementAndGet();
+            return disk;
+        });
+        Assertions.assertSame(first, second);
+        cache.invalidate("player");
+        disk.complete(chunk(1));
+        Assertions.assertEquals(chunk(1), first.join());
+        Assertions.assertEquals(1, loads.get());
+        Assertions.assertNull(cache.getIfPresent("player"));
+
+        Assertions.assertThrows(IllegalStateException.class, () -> cache.get("broken", key -> {
+            throw new IllegalStateException();
+        }));
+        Assertions.assertEquals(chunk(2), cache.get("broken", key -> chunk(2)));
+    }
+
+    @Test
+    void testNullAndFailingWeigher() {
+        NbtCache<String> cache = new NbtCache<>(1 << 20);
+        CompletableFuture<NbtElement> missing = cache.getAsync("missing", key -> CompletableFuture.completedFuture(null));
+        Assertions.assertTrue(missing.isDone());
+        Assertions.assertNull(missing.join());
+        Assertions.assertNull(cache.get("missing", key -> null));
+        Assertions.assertEquals(0, cache.getStats().size());
+
+        NbtCache<String> failing = new NbtCache<>(1 << 20, element -> {
+            throw new IllegalStateException();
+        });
+        CompletableFuture<NbtElement> future = failing.getAsync("player", key -> CompletableFuture.completedFuture(chunk(1)));
+        Assertions.assertTrue(future.isCompletedExceptionally());
+        Assertions.assertThrows(IllegalStateException.class, () -> failing.get("player", key -> chunk(1)));
+        //the failed loads are not left behind
+        Assertions.assertNull(failing.get("player", key -> null));
+    }
+}
@@ -0,0 +1,91 @@
+package at.haha007.edennbt.codec;
+
+import at.haha007.edennbt.element.*;
+import at.haha007.edennbt.parser.IOStreamParser;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+class NbtCodecsTest {
+    enum Rarity {COMMON, RARE}
+
+    record Enchantment(String id, short lvl) {
+    }
+
+    record Item(@NbtName("Slot") byte slot, String id, int count, boolean glowing, Rarity rarity,
+                List<Enchantment> enchantments, Optional<String> customName, long[] data) {
+    }
+
+    record Node(String name, List<Node> children) {
+    }
+
+    @NbtSerializable
+    static class Player {
+        private String name = "unknown";
+        private double health;
+        private int[] position;
+        private Map<String, Integer> stats;
+        private transient int ignored = 7;
+    }
+
+    @Test
+    void testRecordMatchesTreeEncoding() {
+        Item item = new Item((byte) 3, "minecraft:diamond_sword", 1, true, Rarity.RARE,
+                List.of(new Enchantment("sharpness", (short) 5)), Optional.empty(), new long[]{1, 2});
+
+        NbtCompound enchantment = new NbtCompound();
+        enchantment.put("id", new NbtString("sharpness"));
+        enchantment.put("lvl", new NbtShort((short) 5));
+        NbtCompound expected = new NbtCompound();
+        expected.put("Slot", new NbtByte((byte) 3));
+        expected.put("id", new NbtString("minecraft:diamond_sword"));
+        expected.put("count", new NbtInt(1));
+        expected.put("glowing", new NbtByte((byte) 1));
+        expected.put("rarity", new NbtString("RARE"));
+        expected.put("enchantments", new NbtList<>(List.of(enchantment), NbtCompound.class));
+        expected.put("data", new NbtLongArray(new long[]{1, 2}));
+
+        NbtCodec<Item> codec = NbtCodecs.of(Item.class);
+        byte[] bytes = codec.encode(item);
+        Assertions.assertEquals(expected, new IOStreamParser().read(new ByteArrayInputStream(bytes)));
+
+        Item read = codec.decode(((ByteArrayOutputStream) new IOStreamParser().write(expected)).toByteArray());
+        Assertions.assertEquals(item.slot(), read.slot());
+        Assertions.assertEquals(item.enchantments(), read.enchantments());
+        Assertions.assertEquals(Optional.empty(), read.customName());
+        Assertions.assertArrayEquals(item.data(), read.data());
+    }
+
+    @Test
+    void testRecursiveRecord() {
+        Node tree = new Node("root", List.of(new Node("a", List.of()), new Node("b", List.of(new Node("c", List.of())))));
+        NbtCodec<Node> codec = NbtCodecs.of(Node.class);
+        Assertions.assertEquals(tree, codec.decode(codec.encode(tree)));
+    }
+
+    @Test
+    void testAnnotatedClassSkipsUnknownKeys() {
+        NbtCompound compound = new NbtCompound();
+        compound.put("health", new NbtDouble(20));
+        compound.put("unknown", new NbtList<>(List.of(new NbtCompound(Map.of("x", new NbtInt(1)))), NbtCompound.class));
+        compound.put("position", new NbtIntArray(new int[]{1, 64, -3}));
+        compound.put("stats", new NbtCompound(Map.of("kills", new NbtInt(4))));
+
+        Player player = NbtCodecs.of(Player.class)
+                .decode(((ByteArrayOutputStream) new IOStreamParser().write(compound)).toByteArray());
+        Assertions.assertEquals("unknown", player.name);
+        Assertions.assertEquals(20, player.health);
+        Assertions.assertArrayEquals(new int[]{1, 64, -3}, player.position);
+        Assertions.assertEquals(Map.of("kills", 4), player.stats);
+
+        NbtCompound written = (NbtCompound) new IOStreamParser()
+                .read(new ByteArrayInputStream(NbtCodecs.of(Player.class).encode(player)));
+        Assertions.assertFalse(written.containsKey("ignored"));
+        Assertions.assertEquals(new NbtString("unknown"), written.get("name"));
+    }
+}
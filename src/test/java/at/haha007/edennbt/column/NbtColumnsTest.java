@@ -0,0 +1,61 @@
+package at.haha007.edennbt.column;
+
+import at.haha007.edennbt.element.*;
+import at.haha007.edennbt.parser.IOStreamParser;
+import at.haha007.edennbt.path.NbtPath;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+class NbtColumnsTest {
+    private static final NbtColumns COLUMNS = NbtColumns.builder()
+            .strings("id")
+            .ints("Count")
+            .longs("Age")
+            .doubles("Health")
+            .build();
+
+    private static NbtList<NbtCompound> entities() {
+        List<NbtCompound> entities = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            NbtCompound entity = new NbtCompound();
+            entity.put("id", new NbtString(i % 2 == 0 ? "zombie" : "skeleton"));
+            entity.put("Motion", new NbtList<>(List.of(new NbtDouble(0), new NbtDouble(1)), NbtDouble.class));
+            if (i != 3)
+                entity.put("Count", new NbtByte((byte) i));
+            entity.put("Age", i == 4 ? new NbtString("old") : new NbtLong(i * 1000L));
+            entity.put("Health", new NbtFloat(i + 0.5f));
+            entities.add(entity);
+        }
+        return new NbtList<>(entities, NbtCompound.class);
+    }
+
+    private static void assertBatch(ColumnBatch batch) {
+        Assertions.assertEquals(5, batch.size());
+        Column.StringColumn ids = batch.getStrings("id");
+        Assertions.assertArrayEquals(new String[]{"zombie", "skeleton"}, ids.getDictionary());
+        Assertions.assertArrayEquals(new int[]{0, 1, 0, 1, 0}, ids.getCodes());
+        Assertions.assertEquals("skeleton", ids.get(3));
+        Column.IntColumn counts = batch.getInts("Count");
+        Assertions.assertArrayEquals(new int[]{0, 1, 2, 0, 4}, counts.getValues());
+        Assertions.assertTrue(counts.isNull(3));
+        Assertions.assertEquals(1, counts.nullCount());
+        Column.LongColumn ages = batch.getLongs("Age");
+        Assertions.assertEquals(3000, ages.get(3));
+        Assertions.assertTrue(ages.isNull(4));
+        Assertions.assertArrayEquals(new double[]{0.5, 1.5, 2.5, 3.5, 4.5}, batch.getDoubles("Health").getValues());
+    }
+
+    @Test
+    void testTreeAndBinary() {
+        NbtCompound chunk = new NbtCompound();
+        chunk.put("Entities", entities());
+        assertBatch(COLUMNS.extract(entities()));
+        byte[] bytes = ((ByteArrayOutputStream) new IOStreamParser().write(chunk)).toByteArray();
+        assertBatch(COLUMNS.extract(bytes, NbtPath.compile("Entities")));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> COLUMNS.extract(bytes, NbtPath.compile("Entities[0]")));
+    }
+}
@@ -0,0 +1,141 @@
+package at.haha007.edennbt.delta;
+
+import at.haha007.edennbt.element.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+class NbtDeltaTest {
+    private static NbtCompound entity() {
+        NbtCompound entity = new NbtCompound();
+        entity.put("id", new NbtString("minecraft:zombie"));
+        entity.put("Health", new NbtFloat(20));
+        entity.put("Pos", new NbtList<>(List.of(new NbtDouble(1), new NbtDouble(64), new NbtDouble(-3)), NbtDouble.class));
+        entity.put("Tags", new NbtList<>(List.of(new NbtString("a"), new NbtString("b")), NbtString.class));
+        entity.put("Armor", new NbtList<>(List.of(
+                new NbtCompound(Map.of("id", new NbtString("iron_boots"))),
+                new NbtCompound(Map.of("id", new NbtString("air")))), NbtCompound.class));
+        long[] states = new long[256];
+        for (int i = 0; i < states.length; i++) {
+            states[i] = i * 31L;
+        }
+        entity.put("States", new NbtLongArray(states));
+        entity.put("UUID", new NbtIntArray(new int[]{1, 2, 3, 4}));
+        return entity;
+    }
+
+    private static void assertRoundTrip(NbtElement base, NbtElement target) {
+        byte[] delta = NbtDelta.diff(base, target);
+        NbtElement applied = NbtDelta.apply(base.deepCopy(), delta);
+        Assertions.assertEquals(target, applied);
+    }
+
+    @Test
+    void testUnchanged() {
+        NbtCompound base = entity();
+        Assertions.assertArrayEquals(new byte[]{0}, NbtDelta.diff(base, base));
+        Assertions.assertArrayEquals(new byte[]{0}, NbtDelta.diff(base, base.deepCopy()));
+        Assertions.assertArrayEquals(new byte[]{0}, NbtDelta.diff(base, entity()));
+        Assertions.assertSame(base, NbtDelta.apply(base, new byte[]{0}));
+    }
+
+    @Test
+    void testCompoundAndLists() {
+        NbtCompound base = entity();
+        NbtCompound target = base.deepCopy();
+        target.put("Health", new NbtFloat(12.5f));
+        target.remove("id");
+        target.put("Fire", new NbtShort((short) 40));
+        ((NbtList<NbtDouble>) target.get("Pos")).set(1, new NbtDouble(63.5));
+        NbtList<NbtString> tags = (NbtList<NbtString>) target.get("Tags");
+        tags.remove(1);
+        ((NbtCompound) ((NbtList<?>) target.get("Armor")).get(1)).put("id", new NbtString("iron_helmet"));
+        assertRoundTrip(base, target);
+
+        NbtCompound grown = base.deepCopy();
+        ((NbtList<NbtString>) grown.get("Tags")).addAll(List.of(new NbtString("c"), new NbtString("d")));
+        assertRoundTrip(base, grown);
+    }
+
+    @Test
+    void testArrays() {
+        NbtCompound base = entity();
+        NbtCompound target = base.deepCopy();
+        long[] states = ((NbtLongArray) target.get("States")).getValue();
+        states[3] = -1;
+        states[5] = -1;
+        states[200] = -1;
+        byte[] delta = NbtDelta.diff(base, target);
+        //two ranges of 3 and 1 longs instead of 256
+        Assertions.assertTrue(delta.length < 60, "delta of " + delta.length + " bytes");
+        assertRoundTrip(base, target);
+
+        target.put("UUID", new NbtIntArray(new int[]{1, 2, 3, 4, 5, 6}));
+        assertRoundTrip(base, target);
+        target.put("UUID", new NbtIntArray(new int[]{9}));
+        assertRoundTrip(base, target);
+
+        assertRoundTrip(new NbtByteArray(new byte[]{1, 2, 3}), new NbtByteArray(new byte[]{1, 5, 3, 7}));
+    }
+
+    @Test
+    void testReplace() {
+        assertRoundTrip(new NbtInt(1), new NbtInt(2));
+        assertRoundTrip(entity(), new NbtString("gone"));
+        NbtCompound base = entity();
+        NbtCompound target = base.deepCopy();
+        target.put("Health", new NbtDouble(20));
+        target.put("Tags", new NbtList<>(List.of(new NbtInt(1)), NbtInt.class));
+        assertRoundTrip(base, target);
+        assertRoundTrip(new NbtList<>(), new NbtList<>(List.of(new NbtLong(5)), NbtLong.class));
+    }
+
+    @Test
+    void testApplyInPlace() {
+        NbtCompound base = entity();
+        NbtCompound target = base.deepCopy();
+        target.put("Health", new NbtFloat(1));
+        NbtElement applied = NbtDelta.apply(base, NbtDelta.diff(base.deepCopy(), target));
+        Assertions.assertSame(base, applied);
+        Assertions.assertEquals(target, base);
+    }
+
+    @Test
+    void testMismatchedBase() {
+        NbtCompound base = entity();
+        NbtCompound target = base.deepCopy();
+        ((NbtCompound) ((NbtList<?>) target.get("Armor")).get(0)).put("id", new NbtString("gold_boots"));
+        byte[] delta = NbtDelta.diff(base, target);
+        NbtCompound other = entity();
+        other.remove("Armor");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> NbtDelta.apply(other, delta));
+    }
+
+    @Test
+    void testEmptyListSubTypes() {
+        NbtList<NbtInt> ints = new NbtList<>(NbtInt.class);
+        byte[] delta = NbtDelta.diff(new NbtList<>(), ints);
+        Assertions.assertNotEquals(0, delta[0]);
+        Assertions.assertEquals(ElementType.INT, ((NbtList<?>) NbtDelta.apply(new NbtList<>(), delta)).getSubType());
+
+        NbtCompound base = new NbtCompound();
+        base.put("list", new NbtList<>());
+        NbtCompound target = new NbtCompound();
+        target.put("list", ints);
+        NbtCompound applied = (NbtCompound) NbtDelta.apply(base, NbtDelta.diff(base.deepCopy(), target));
+        Assertions.assertEquals(ElementType.INT, ((NbtList<?>) applied.get("list")).getSubType());
+    }
+
+    @Test
+    void testInvalidOperations() {
+        //RANGE starting at Integer.MAX_VALUE with two values
+        byte[] range = {2, 5, -1, -1, -1, -1, 7, 2, 1, 2, 0};
+        Assertions.assertThrows(IllegalArgumentException.class, () -> NbtDelta.apply(new NbtByteArray(new byte[4]), range));
+        //RESIZE to two ints on a list of strings
+        byte[] resize = {2, 4, 3, 2, 0, 0, 0, 1, 0};
+        NbtList<NbtString> strings = new NbtList<>(List.of(new NbtString("a")), NbtString.class);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> NbtDelta.apply(strings, resize));
+    }
+}
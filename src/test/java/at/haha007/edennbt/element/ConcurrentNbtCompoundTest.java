@@ -0,0 +1,149 @@
+package at.haha007.edennbt.element;
+
+import at.haha007.edennbt.parser.IOStreamParser;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+class ConcurrentNbtCompoundTest {
+    @Test
+    void testConcurrentMerge() throws InterruptedException {
+        ConcurrentNbtCompound compound = new ConcurrentNbtCompound();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            int thread = t;
+            executor.execute(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    compound.merge("count", new NbtInt(1), (a, b) -> new NbtInt(((NbtInt) a).getValue() + 1));
+                    compound.put("thread" + thread, new NbtInt(i));
+                }
+            });
+        }
+        executor.shutdown();
+        Assertions.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assertions.assertEquals(new NbtInt(4000), compound.get("count"));
+        Assertions.assertEquals(5, compound.size());
+    }
+
+    @Test
+    void testSnapshotAndOrder() {
+        ConcurrentNbtCompound compound = new ConcurrentNbtCompound();
+        compound.put("b", new NbtInt(1));
+        compound.put("a", new NbtInt(2));
+        Map<String, NbtElement> snapshot = compound.snapshot();
+        compound.put("c", new NbtInt(3));
+        compound.remove("b");
+        Assertions.assertEquals(List.of("b", "a"), List.copyOf(snapshot.keySet()));
+        Assertions.assertEquals(List.of("a", "c"), List.copyOf(compound.keySet()));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> snapshot.put("d", new NbtInt(4)));
+        Assertions.assertNull(compound.putIfAbsent("d", new NbtInt(4)));
+        Assertions.assertEquals(new NbtInt(4), compound.putIfAbsent("d", new NbtInt(5)));
+        Assertions.assertTrue(compound.remove("d", new NbtInt(4)));
+        Assertions.assertFalse(compound.containsKey("d"));
+    }
+
+    @Test
+    void testWritersAndEquality() {
+        ConcurrentNbtCompound concurrent = new ConcurrentNbtCompound();
+        concurrent.put("id", new NbtString("stone"));
+        NbtCompound plain = new NbtCompound(Map.of("id", new NbtString("stone")));
+        Assertions.assertEquals(plain, concurrent);
+        Assertions.assertEquals(concurrent, plain);
+        Assertions.assertEquals(plain.hashCode(), concurrent.hashCode());
+        Assertions.assertEquals(plain.toString(), concurrent.toString());
+
+        NbtCompound root = new NbtCompound();
+        root.setTracking(true);
+        root.put("items", new NbtList<>(List.of(plain, concurrent), NbtCompound.class));
+        IOStreamParser parser = new IOStreamParser();
+        byte[] first = ((ByteArrayOutputStream) parser.write(root)).toByteArray();
+        Assertions.assertEquals(root, parser.read(new ByteArrayInputStream(first)));
+        concurrent.put("Count", new NbtByte((byte) 2));
+        byte[] second = ((ByteArrayOutputStream) parser.write(root)).toByteArray();
+        Assertions.assertEquals(root, parser.read(new ByteArrayInputStream(second)));
+    }
+
+    @Test
+    void testNestedChangesInvalidateTrackedRoot() {
+        NbtCompound inner = new NbtCompound(Map.of("v", new NbtInt(1)));
+        ConcurrentNbtCompound concurrent = new ConcurrentNbtCompound();
+        concurrent.put("inner", inner);
+        NbtCompound root = new NbtCompound();
+        root.put("concurrent", concurrent);
+        root.setTracking(true);
+        Assertions.assertTrue(concurrent.isTracking());
+        Assertions.assertTrue(inner.isTracking());
+
+        IOStreamParser parser = new IOStreamParser();
+        parser.write(root);
+        //only the containers below the concurrent compound cache
+        Assertions.assertNull(root.getEncodedPayload());
+        Assertions.assertNull(concurrent.getEncodedPayload());
+        Assertions.assertNotNull(inner.getEncodedPayload());
+        inner.put("v", new NbtInt(2));
+        Assertions.assertNull(inner.getEncodedPayload());
+        byte[] bytes = ((ByteArrayOutputStream) parser.write(root)).toByteArray();
+        NbtCompound read = (NbtCompound) parser.read(new ByteArrayInputStream(bytes));
+        Assertions.assertEquals(new NbtInt(2), ((NbtCompound) ((NbtCompound) read.get("concurrent")).get("inner")).get("v"));
+
+        //entries put later are attached, removed ones detached
+        NbtCompound added = new NbtCompound(Map.of("w", new NbtInt(1)));
+        concurrent.put("added", added);
+        Assertions.assertTrue(added.isTracking());
+        parser.write(root);
+        Assertions.assertNotNull(added.getEncodedPayload());
+        ((NbtInt) added.get("w")).setValue(5);
+        Assertions.assertNull(added.getEncodedPayload());
+        concurrent.remove("inner");
+        Assertions.assertFalse(inner.isTracking());
+    }
+
+    @Test
+    void testMutateWhileSaving() throws Exception {
+        ConcurrentNbtCompound stats = new ConcurrentNbtCompound();
+        NbtCompound player = new NbtCompound();
+        player.put("stats", stats);
+        NbtList<NbtInt> plain = new NbtList<>(List.of(new NbtInt(1)), NbtInt.class);
+        NbtCompound root = new NbtCompound();
+        root.put("player", player);
+        root.put("plain", plain);
+        root.setTracking(true);
+
+        IOStreamParser parser = new IOStreamParser();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> mutator = executor.submit(() -> {
+            for (int i = 0; i <= 20000; i++) {
+                stats.put("count", new NbtInt(i));
+            }
+        });
+        while (!mutator.isDone()) {
+            parser.write(root);
+        }
+        mutator.get();
+        executor.shutdown();
+
+        //the ancestors of the concurrent compound never cache, a save can't store an outdated encoding
+        Assertions.assertNull(root.getEncodedPayload());
+        Assertions.assertNull(player.getEncodedPayload());
+        Assertions.assertNotNull(plain.getEncodedPayload());
+        byte[] bytes = ((ByteArrayOutputStream) parser.write(root)).toByteArray();
+        Assertions.assertEquals(root, parser.read(new ByteArrayInputStream(bytes)));
+
+        //caching resumes once the concurrent compound is gone
+        player.remove("stats");
+        parser.write(root);
+        Assertions.assertNotNull(root.getEncodedPayload());
+        player.put("stats", stats);
+        Assertions.assertNull(root.getEncodedPayload());
+        parser.write(root);
+        Assertions.assertNull(root.getEncodedPayload());
+    }
+}
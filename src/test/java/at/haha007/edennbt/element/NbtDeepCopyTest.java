@@ -0,0 +1,121 @@
+package at.haha007.edennbt.element;
+
+import at.haha007.edennbt.parser.IOStreamParser;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+
+class NbtDeepCopyTest {
+    private static NbtCompound item() {
+        NbtCompound item = new NbtCompound();
+        item.put("id", new NbtString("minecraft:diamond_sword"));
+        item.put("Count", new NbtByte((byte) 1));
+        item.put("Damage", new NbtShort((short) 3));
+        item.put("Uses", new NbtInt(7));
+        item.put("Seed", new NbtLong(42));
+        item.put("Speed", new NbtFloat(1.5f));
+        item.put("Weight", new NbtDouble(2.5));
+        item.put("Bytes", new NbtByteArray(new byte[]{1, 2}));
+        item.put("Ints", new NbtIntArray(new int[]{3, 4}));
+        item.put("Longs", new NbtLongArray(new long[]{5, 6}));
+        NbtList<NbtCompound> enchantments = new NbtList<>(NbtCompound.class);
+        NbtCompound sharpness = new NbtCompound();
+        sharpness.put("lvl", new NbtShort((short) 5));
+        enchantments.add(sharpness);
+        item.put("Enchantments", enchantments);
+        item.put("Empty", new NbtList<>());
+        return item;
+    }
+
+    private static byte[] encode(NbtElement element) {
+        return ((ByteArrayOutputStream) new IOStreamParser().write(element)).toByteArray();
+    }
+
+    @Test
+    void testCopyIsEqualAndIndependent() {
+        NbtCompound item = item();
+        NbtCompound copy = item.deepCopy();
+        Assertions.assertEquals(item, copy);
+        Assertions.assertArrayEquals(encode(item), encode(copy));
+
+        ((NbtCompound) ((NbtList<?>) copy.get("Enchantments")).get(0)).put("lvl", new NbtShort((short) 1));
+        ((NbtInt) copy.get("Uses")).setValue(8);
+        copy.put("Extra", new NbtByte((byte) 0));
+        Assertions.assertEquals(item(), item);
+        Assertions.assertNotEquals(item, copy);
+        Assertions.assertEquals(NbtCompound.class, ((NbtList<?>) copy.get("Enchantments")).getClazz());
+    }
+
+    @Test
+    void testArraysAreCopyOnWrite() {
+        NbtLongArray original = new NbtLongArray(new long[]{1, 2, 3});
+        NbtLongArray copy = original.deepCopy();
+        Assertions.assertSame(original.peekValue(), copy.peekValue());
+
+        copy.getValue()[0] = 9;
+        Assertions.assertNotSame(original.peekValue(), copy.peekValue());
+        Assertions.assertArrayEquals(new long[]{1, 2, 3}, original.getValue());
+        Assertions.assertArrayEquals(new long[]{9, 2, 3}, copy.getValue());
+
+        NbtIntArray ints = new NbtIntArray(new int[]{1});
+        NbtIntArray intsCopy = ints.deepCopy();
+        ints.getValue()[0] = 2;
+        Assertions.assertArrayEquals(new int[]{1}, intsCopy.getValue());
+
+        NbtByteArray bytes = new NbtByteArray(new byte[]{1});
+        NbtByteArray bytesCopy = bytes.deepCopy();
+        bytes.setValue(new byte[]{2});
+        Assertions.assertArrayEquals(new byte[]{1}, bytesCopy.getValue());
+    }
+
+    @Test
+    void testArrayTakenBeforeCopy() {
+        NbtLongArray longs = new NbtLongArray(new long[]{1, 2});
+        long[] value = longs.getValue();
+        NbtLongArray copy = longs.deepCopy();
+        value[0] = 9;
+        longs.markDirty();
+        Assertions.assertArrayEquals(new long[]{1, 2}, copy.getValue());
+        Assertions.assertArrayEquals(new long[]{9, 2}, longs.peekValue());
+
+        NbtIntArray ints = new NbtIntArray(new int[]{1});
+        int[] intValue = ints.getValue();
+        NbtIntArray intsCopy = ints.deepCopy();
+        intValue[0] = 2;
+        Assertions.assertArrayEquals(new int[]{1}, intsCopy.getValue());
+
+        NbtByteArray bytes = new NbtByteArray(new byte[]{1});
+        byte[] byteValue = bytes.getValue();
+        NbtByteArray bytesCopy = bytes.deepCopy();
+        byteValue[0] = 2;
+        Assertions.assertArrayEquals(new byte[]{1}, bytesCopy.getValue());
+    }
+
+    @Test
+    void testCopyOfTrackedTree() {
+        NbtCompound item = item();
+        item.setTracking(true);
+        encode(item);
+        NbtCompound copy = item.deepCopy();
+        Assertions.assertFalse(copy.isTracking());
+        Assertions.assertNull(copy.getEncodedPayload());
+
+        copy.setTracking(true);
+        encode(copy);
+        PackedArrayView view = new PackedArrayView((NbtLongArray) copy.get("Longs"), 4, 32, PackedArrayView.Layout.NON_SPANNING);
+        view.set(0, 7);
+        Assertions.assertNull(copy.getEncodedPayload());
+        Assertions.assertNotNull(item.getEncodedPayload());
+        Assertions.assertArrayEquals(new long[]{5, 6}, ((NbtLongArray) item.get("Longs")).getValue());
+    }
+
+    @Test
+    void testConcurrentCopy() {
+        ConcurrentNbtCompound compound = new ConcurrentNbtCompound(item());
+        ConcurrentNbtCompound copy = compound.deepCopy();
+        Assertions.assertEquals(compound, copy);
+        copy.remove("id");
+        Assertions.assertTrue(compound.containsKey("id"));
+    }
+}
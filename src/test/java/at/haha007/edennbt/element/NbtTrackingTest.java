@@ -0,0 +1,101 @@
+package at.haha007.edennbt.element;
+
+import at.haha007.edennbt.parser.BinaryCodecs;
+import at.haha007.edennbt.parser.CodecRegistry;
+import at.haha007.edennbt.parser.IOStreamParser;
+import at.haha007.edennbt.parser.NbtBinaryReader;
+import at.haha007.edennbt.parser.NbtBinaryWriter;
+import at.haha007.edennbt.parser.NbtOutputBuffer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+class NbtTrackingTest {
+    private static byte[] encode(NbtElement element) {
+        return ((ByteArrayOutputStream) new IOStreamParser().write(element)).toByteArray();
+    }
+
+    private static NbtCompound world() {
+        NbtCompound root = new NbtCompound();
+        NbtCompound player = new NbtCompound();
+        player.put("Health", new NbtFloat(20));
+        player.put("Pos", new NbtList<>(List.of(new NbtDouble(1), new NbtDouble(2)), NbtDouble.class));
+        NbtCompound level = new NbtCompound();
+        level.put("Time", new NbtLong(100));
+        level.put("Heights", new NbtLongArray(new long[]{1, 2, 3}));
+        root.put("Player", player);
+        root.put("Level", level);
+        return root;
+    }
+
+    @Test
+    void testCleanSubtreesKeepTheirBytes() {
+        NbtCompound root = world();
+        root.setTracking(true);
+        encode(root);
+        NbtCompound player = (NbtCompound) root.get("Player");
+        NbtCompound level = (NbtCompound) root.get("Level");
+        byte[] levelBytes = level.getEncodedPayload();
+        Assertions.assertNotNull(root.getEncodedPayload());
+        Assertions.assertNotNull(levelBytes);
+
+        ((NbtFloat) player.get("Health")).setValue(10);
+        Assertions.assertNull(player.getEncodedPayload());
+        Assertions.assertNull(root.getEncodedPayload());
+        Assertions.assertSame(levelBytes, level.getEncodedPayload());
+        Assertions.assertNotNull(player.get("Pos").getEncodedPayload());
+
+        byte[] bytes = encode(root);
+        NbtCompound expected = world();
+        ((NbtCompound) expected.get("Player")).put("Health", new NbtFloat(10));
+        Assertions.assertArrayEquals(encode(expected), bytes);
+        Assertions.assertSame(levelBytes, level.getEncodedPayload());
+    }
+
+    @Test
+    void testStructuralChanges() {
+        NbtCompound root = world();
+        root.setTracking(true);
+        encode(root);
+        NbtCompound level = (NbtCompound) root.get("Level");
+        NbtList<?> pos = (NbtList<?>) ((NbtCompound) root.get("Player")).get("Pos");
+        pos.remove(0);
+        root.put("Extra", new NbtCompound());
+        ((NbtLongArray) level.get("Heights")).getValue()[0] = 7;
+        level.get("Heights").markDirty();
+
+        NbtCompound read = (NbtCompound) new IOStreamParser().read(new ByteArrayInputStream(encode(root)));
+        Assertions.assertEquals(root, read);
+        Assertions.assertNotNull(root.get("Extra").getEncodedPayload());
+
+        root.remove("Level");
+        Assertions.assertFalse(level.isTracking());
+        Assertions.assertNull(level.getEncodedPayload());
+    }
+
+    @Test
+    void testOtherRegistriesBypassTheCache() {
+        //writes floats as doubles
+        CodecRegistry<NbtBinaryReader, NbtBinaryWriter> custom = BinaryCodecs.DEFAULT
+                .with(ElementType.FLOAT, (NbtFloat nbt, NbtBinaryWriter out) -> out.writeDouble(nbt.getValue()), null);
+        NbtCompound root = world();
+        root.setTracking(true);
+        byte[] defaultBytes = encode(root);
+        byte[] cached = root.getEncodedPayload();
+
+        NbtBinaryWriter writer = new NbtBinaryWriter(new NbtOutputBuffer(), custom);
+        writer.write(root);
+        byte[] customBytes = writer.getBuffer().toByteArray();
+        Assertions.assertEquals(defaultBytes.length + 4, customBytes.length);
+        Assertions.assertSame(cached, root.getEncodedPayload());
+
+        root.markDirty();
+        writer = new NbtBinaryWriter(new NbtOutputBuffer(), custom);
+        writer.write(root);
+        Assertions.assertNull(root.getEncodedPayload());
+        Assertions.assertArrayEquals(defaultBytes, encode(root));
+    }
+}
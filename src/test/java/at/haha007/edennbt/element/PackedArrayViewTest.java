@@ -0,0 +1,60 @@
+package at.haha007.edennbt.element;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+class PackedArrayViewTest {
+    @Test
+    void testLayouts() {
+        //5 bits: 12 values per long without spanning, value 12 is split between two longs with spanning
+        PackedArrayView nonSpanning = PackedArrayView.create(4096, 5, PackedArrayView.Layout.NON_SPANNING);
+        PackedArrayView spanning = PackedArrayView.create(4096, 5, PackedArrayView.Layout.SPANNING);
+        Assertions.assertEquals(342, nonSpanning.getArray().getValue().length);
+        Assertions.assertEquals(320, spanning.getArray().getValue().length);
+
+        nonSpanning.set(12, 31);
+        Assertions.assertEquals(0, nonSpanning.getArray().getValue()[0]);
+        Assertions.assertEquals(31, nonSpanning.getArray().getValue()[1]);
+        spanning.set(12, 31);
+        Assertions.assertEquals(0xfL << 60, spanning.getArray().getValue()[0]);
+        Assertions.assertEquals(1, spanning.getArray().getValue()[1]);
+        Assertions.assertEquals(31, spanning.get(12));
+        Assertions.assertEquals(0, spanning.get(11));
+        Assertions.assertEquals(0, spanning.get(13));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> spanning.set(0, 32));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> spanning.get(4096));
+    }
+
+    @Test
+    void testPackUnpackResize() {
+        Random random = new Random(3);
+        for (PackedArrayView.Layout layout : PackedArrayView.Layout.values()) {
+            int[] values = new int[4096];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = random.nextInt(7);
+            }
+            PackedArrayView view = PackedArrayView.create(values.length, PackedArrayView.bitsFor(7), layout);
+            view.pack(values);
+            Assertions.assertArrayEquals(values, view.unpack());
+            for (int i = 0; i < values.length; i++) {
+                Assertions.assertEquals(values[i], view.get(i));
+            }
+
+            NbtLongArray array = view.getArray();
+            view.resize(PackedArrayView.bitsFor(40));
+            Assertions.assertEquals(6, view.getBits());
+            Assertions.assertSame(array, view.getArray());
+            Assertions.assertArrayEquals(values, view.unpack());
+            view.set(100, 39);
+            Assertions.assertEquals(39, view.get(100));
+            Assertions.assertEquals(values[99], view.get(99));
+            Assertions.assertEquals(values[101], view.get(101));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> view.resize(3));
+            Assertions.assertEquals(6, view.getBits());
+        }
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new PackedArrayView(new NbtLongArray(new long[10]), 4096, 4, PackedArrayView.Layout.SPANNING));
+    }
+}
@@ -0,0 +1,104 @@
+package at.haha007.edennbt.hash;
+
+import at.haha007.edennbt.element.*;
+import at.haha007.edennbt.parser.BinaryCodecs;
+import at.haha007.edennbt.parser.IOStreamParser;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+class NbtHashTest {
+    private static final IOStreamParser CANONICAL = new IOStreamParser(null, BinaryCodecs.CANONICAL);
+
+    private static byte[] canonical(NbtElement element) {
+        return ((ByteArrayOutputStream) CANONICAL.write(element)).toByteArray();
+    }
+
+    private static NbtCompound tree(boolean reversed) {
+        NbtCompound compound = new NbtCompound();
+        List<String> keys = List.of("a", "B", "c", "ä", "");
+        for (int i = 0; i < keys.size(); i++) {
+            String key = keys.get(reversed ? keys.size() - 1 - i : i);
+            NbtCompound child = new NbtCompound();
+            child.put(reversed ? "y" : "x", new NbtDouble(reversed ? Double.longBitsToDouble(0x7ff8000000000001L) : Double.NaN));
+            child.put(reversed ? "x" : "y", new NbtDouble(Double.NaN));
+            child.put("list", reversed ? new NbtList<>(NbtInt.class) : new NbtList<>());
+            child.put("longs", new NbtLongArray(new long[]{1, 2, 3}));
+            child.put("name", new NbtString(key));
+            compound.put(key, child);
+        }
+        return compound;
+    }
+
+    @Test
+    void testMurmur3() {
+        byte[] fox = "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.US_ASCII);
+        Assertions.assertEquals(new NbtHash(0xe34bbc7bbc071b6cL, 0x7a433ca9c49a9347L), NbtHash.of(fox));
+        Assertions.assertEquals(new NbtHash(0, 0), NbtHash.of(new byte[0]));
+
+        for (int chunk = 1; chunk < 20; chunk++) {
+            Murmur3Hasher hasher = new Murmur3Hasher();
+            for (int i = 0; i < fox.length; i += chunk) {
+                if (chunk == 1)
+                    hasher.update(fox[i]);
+                else
+                    hasher.update(fox, i, Math.min(chunk, fox.length - i));
+            }
+            Assertions.assertEquals(NbtHash.of(fox), hasher.finish());
+        }
+    }
+
+    @Test
+    void testCanonicalEncoding() {
+        NbtCompound first = tree(false);
+        NbtCompound second = tree(true);
+        Assertions.assertEquals(first, second);
+        Assertions.assertFalse(Arrays.equals(
+                ((ByteArrayOutputStream) new IOStreamParser().write(first)).toByteArray(),
+                ((ByteArrayOutputStream) new IOStreamParser().write(second)).toByteArray()));
+        Assertions.assertArrayEquals(canonical(first), canonical(second));
+        Assertions.assertEquals(NbtHash.of(first), NbtHash.of(second));
+        Assertions.assertEquals(NbtHash.of(canonical(first)), NbtHash.of(first));
+
+        ((NbtLongArray) ((NbtCompound) second.get("a")).get("longs")).getValue()[2] = 4;
+        Assertions.assertNotEquals(NbtHash.of(first), NbtHash.of(second));
+    }
+
+    @Test
+    void testLargeTree() {
+        //larger than the buffer the hash is computed through
+        NbtCompound tree = new NbtCompound();
+        NbtList<NbtCompound> list = new NbtList<>(NbtCompound.class);
+        for (int i = 0; i < 2000; i++) {
+            list.add(tree(i % 2 == 0));
+        }
+        tree.put("list", list);
+        tree.put("bytes", new NbtByteArray(new byte[20000]));
+        Assertions.assertEquals(NbtHash.of(canonical(tree)), NbtHash.of(tree));
+    }
+
+    @Test
+    void testTrackedTree() {
+        NbtCompound tree = tree(true);
+        tree.setTracking(true);
+        new IOStreamParser().write(tree);
+        Assertions.assertArrayEquals(canonical(tree(false)), canonical(tree));
+    }
+
+    @Test
+    void testHashingOutputStream() throws IOException {
+        NbtCompound tree = tree(false);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (HashingOutputStream out = new HashingOutputStream(bytes)) {
+            ((ByteArrayOutputStream) CANONICAL.write(tree)).writeTo(out);
+            Assertions.assertEquals(NbtHash.of(tree), out.getHash());
+        }
+        Assertions.assertArrayEquals(canonical(tree), bytes.toByteArray());
+        Assertions.assertEquals(32, NbtHash.of(tree).toString().length());
+    }
+}
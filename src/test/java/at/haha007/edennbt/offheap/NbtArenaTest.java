@@ -0,0 +1,104 @@
+package at.haha007.edennbt.offheap;
+
+import at.haha007.edennbt.element.*;
+import at.haha007.edennbt.parser.IOStreamParser;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Map;
+
+class NbtArenaTest {
+    private static NbtCompound level() {
+        NbtCompound level = new NbtCompound();
+        level.put("name", new NbtString("wörld"));
+        level.put("seed", new NbtLong(-42));
+        level.put("spawn", new NbtIntArray(new int[]{1, 64, -3}));
+        level.put("heights", new NbtLongArray(new long[]{Long.MAX_VALUE, 0}));
+        level.put("bytes", new NbtByteArray(new byte[]{1, 2}));
+        level.put("players", new NbtList<>(List.of(
+                new NbtCompound(Map.of("Health", new NbtFloat(20))),
+                new NbtCompound()), NbtCompound.class));
+        level.put("empty", new NbtList<>());
+        level.put("rain", new NbtByte((byte) 1));
+        level.put("time", new NbtShort((short) 7));
+        level.put("scale", new NbtDouble(0.5));
+        return level;
+    }
+
+    @Test
+    void testCopyAndDecode() {
+        byte[] bytes = ((ByteArrayOutputStream) new IOStreamParser().write(level())).toByteArray();
+        try (NbtArena arena = NbtArena.allocate(16)) {
+            OffHeapCompound copied = arena.copyOf(level());
+            OffHeapCompound decoded = arena.decode(bytes);
+            Assertions.assertEquals(level(), copied.toNbt());
+            Assertions.assertEquals(level(), decoded.toNbt());
+            Assertions.assertEquals(List.copyOf(level().keySet()), List.copyOf(decoded.keySet()));
+            Assertions.assertEquals("wörld", decoded.getString("name"));
+            Assertions.assertEquals(-42, decoded.getLong("seed"));
+            Assertions.assertEquals(20, decoded.getList("players").getCompound(0).getFloat("Health"));
+            Assertions.assertEquals(ElementType.INT_ARRAY, decoded.getType("spawn"));
+            Assertions.assertNull(decoded.getType("missing"));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> decoded.getInt("seed"));
+        }
+    }
+
+    @Test
+    void testInvalidLengths() {
+        try (NbtArena arena = NbtArena.allocate(16)) {
+            //a list of ints named l with the given size and no elements
+            for (int size : new int[]{-1, Integer.MAX_VALUE}) {
+                byte[] bytes = {10, 0, 0, 9, 0, 1, 'l', 3, (byte) (size >> 24), (byte) (size >> 16), (byte) (size >> 8), (byte) size, 0};
+                Assertions.assertThrows(IllegalArgumentException.class, () -> arena.decode(bytes));
+            }
+            byte[] array = {10, 0, 0, 11, 0, 1, 'a', -1, -1, -1, -1, 0};
+            Assertions.assertThrows(IllegalArgumentException.class, () -> arena.decode(array));
+            //0x40000001 ints, the byte length overflows int
+            byte[] overflow = {10, 0, 0, 11, 0, 1, 'a', 0x40, 0, 0, 1, 0, 0, 0, 0, 0};
+            Assertions.assertThrows(IllegalArgumentException.class, () -> arena.decode(overflow));
+        }
+    }
+
+    @Test
+    void testWrites() {
+        NbtArena arena = NbtArena.allocate(64);
+        OffHeapCompound root = arena.newCompound();
+        root.put("count", new NbtInt(1));
+        int used = arena.getUsedBytes();
+        root.put("count", new NbtInt(2));
+        Assertions.assertEquals(used, arena.getUsedBytes());
+        Assertions.assertEquals(2, root.getInt("count"));
+
+        root.put("entities", new NbtList<>());
+        OffHeapList entities = root.getList("entities");
+        for (int i = 0; i < 100; i++) {
+            OffHeapCompound entity = entities.addCompound();
+            entity.put("id", new NbtInt(i));
+            entity.put("tag", new NbtString("e" + i));
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> entities.add(new NbtInt(1)));
+        entities.remove(0);
+        entities.getCompound(0).remove("tag");
+        root.remove("count");
+        root.put("name", new NbtString("test"));
+
+        NbtCompound expected = new NbtCompound();
+        NbtList<NbtCompound> list = new NbtList<>(NbtCompound.class);
+        for (int i = 1; i < 100; i++) {
+            NbtCompound entity = new NbtCompound();
+            entity.put("id", new NbtInt(i));
+            if (i != 1)
+                entity.put("tag", new NbtString("e" + i));
+            list.add(entity);
+        }
+        expected.put("entities", list);
+        expected.put("name", new NbtString("test"));
+        Assertions.assertEquals(expected, root.toNbt());
+        Assertions.assertEquals(List.of("entities", "name"), List.copyOf(root.keySet()));
+
+        arena.close();
+        Assertions.assertThrows(IllegalStateException.class, root::size);
+    }
+}
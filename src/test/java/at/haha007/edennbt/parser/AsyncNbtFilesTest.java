@@ -0,0 +1,96 @@
+package at.haha007.edennbt.parser;
+
+import at.haha007.edennbt.element.*;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+class AsyncNbtFilesTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void testSaveAndLoad() throws Exception {
+        try (AsyncNbtFiles files = new AsyncNbtFiles(2, true)) {
+            List<CompletableFuture<Void>> saves = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                NbtCompound player = new NbtCompound();
+                player.put("id", new NbtInt(i));
+                saves.add(files.save(dir.resolve(i + ".dat"), player));
+            }
+            CompletableFuture.allOf(saves.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+            for (int i = 0; i < 10; i++) {
+                NbtCompound player = (NbtCompound) files.load(dir.resolve(i + ".dat")).get(10, TimeUnit.SECONDS);
+                Assertions.assertEquals(new NbtInt(i), player.get("id"));
+            }
+            try (var stream = Files.list(dir)) {
+                Assertions.assertEquals(10, stream.count());
+            }
+        }
+    }
+
+    @Test
+    void testFailure() {
+        try (AsyncNbtFiles files = new AsyncNbtFiles(1, false)) {
+            ExecutionException e = Assertions.assertThrows(ExecutionException.class,
+                    () -> files.load(dir.resolve("missing.dat")).get(10, TimeUnit.SECONDS));
+            Assertions.assertInstanceOf(NoSuchFileException.class, e.getCause());
+        }
+    }
+
+    @Test
+    void testCancel() throws Exception {
+        Path path = dir.resolve("blocked.dat");
+        Files.write(path, new byte[]{3, 0, 0, 0, 0, 0, 1});
+        CountDownLatch started = new CountDownLatch(1);
+        IOStreamParser blocking = new IOStreamParser() {
+            @Override
+            @SneakyThrows
+            public NbtElement read(InputStream input) {
+                started.countDown();
+                new CountDownLatch(1).await();
+                return null;
+            }
+        };
+        try (AsyncNbtFiles files = new AsyncNbtFiles(blocking, 1, false)) {
+            CompletableFuture<NbtElement> running = files.load(path);
+            Assertions.assertTrue(started.await(10, TimeUnit.SECONDS));
+            CompletableFuture<NbtElement> pending = files.load(path);
+            Assertions.assertTrue(pending.cancel(true));
+            Assertions.assertTrue(running.cancel(true));
+            Assertions.assertTrue(pending.isCancelled());
+            Assertions.assertTrue(running.isCancelled());
+        }
+    }
+
+    @Test
+    void testPermissionsKept() throws Exception {
+        Assumptions.assumeTrue(Files.getFileAttributeView(dir, PosixFileAttributeView.class) != null);
+        Path path = dir.resolve("level.dat");
+        Files.write(path, new byte[0]);
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-r--r--");
+        Files.setPosixFilePermissions(path, permissions);
+        try (AsyncNbtFiles files = new AsyncNbtFiles(1, true)) {
+            files.save(path, new NbtInt(1)).get(10, TimeUnit.SECONDS);
+            Assertions.assertEquals(new NbtInt(1), files.load(path).get(10, TimeUnit.SECONDS));
+        }
+        Assertions.assertEquals(permissions, Files.getPosixFilePermissions(path));
+    }
+}
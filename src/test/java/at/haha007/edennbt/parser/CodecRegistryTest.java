@@ -0,0 +1,48 @@
+package at.haha007.edennbt.parser;
+
+import at.haha007.edennbt.element.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+class CodecRegistryTest {
+    @Test
+    void testTypeIds() {
+        for (ElementType type : ElementType.values()) {
+            Assertions.assertSame(type, ElementType.byId(type.getId()));
+            Assertions.assertSame(type, ElementType.getType(type.getNbtClass()));
+        }
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ElementType.byId(13));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ElementType.byId(-1));
+    }
+
+    @Test
+    void testReplacedDecoder() {
+        CodecRegistry<NbtBinaryReader, NbtBinaryWriter> codecs = BinaryCodecs.DEFAULT
+                .with(ElementType.STRING, null, in -> new NbtString(in.readString().intern()));
+        IOStreamParser parser = new IOStreamParser(null, codecs);
+        NbtCompound compound = new NbtCompound();
+        compound.put("a", new NbtString(new String(new char[]{'i', 'd'})));
+        compound.put("b", new NbtList<>(List.of(new NbtString("id")), NbtString.class));
+        byte[] bytes = ((ByteArrayOutputStream) parser.write(compound)).toByteArray();
+        Assertions.assertArrayEquals(bytes, ((ByteArrayOutputStream) new IOStreamParser().write(compound)).toByteArray());
+
+        NbtCompound read = (NbtCompound) parser.read(new ByteArrayInputStream(bytes));
+        Assertions.assertEquals(compound, read);
+        Assertions.assertSame(((NbtString) read.get("a")).getValue(),
+                ((NbtString) ((NbtList<?>) read.get("b")).get(0)).getValue());
+    }
+
+    @Test
+    void testEmptyUntypedList() {
+        NbtCompound compound = new NbtCompound();
+        compound.put("list", new NbtList<>());
+        IOStreamParser parser = new IOStreamParser();
+        byte[] bytes = ((ByteArrayOutputStream) parser.write(compound)).toByteArray();
+        NbtList<?> list = (NbtList<?>) ((NbtCompound) parser.read(new ByteArrayInputStream(bytes))).get("list");
+        Assertions.assertTrue(list.isEmpty());
+    }
+}
@@ -7,6 +7,7 @@ import org.junit.jupiter.api.Test;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -65,6 +66,44 @@ class IOStreamParserTest {
         Assertions.assertEquals(list, parser.read(new ByteArrayInputStream(bytes)));
     }
 
+    @Test
+    void testModifiedUtf8Strings() {
+        String value = "\u00e9\u0000\ud83d\ude00";
+        IOStreamParser parser = new IOStreamParser();
+        //noinspection resource
+        byte[] bytes = ((ByteArrayOutputStream) parser.write(new NbtString(value))).toByteArray();
+        Assertions.assertEquals("08 00 00 00 0A C3 A9 C0 80 ED A0 BD ED B8 80", toHexString(bytes));
+        Assertions.assertEquals(new NbtString(value), parser.read(new ByteArrayInputStream(bytes)));
+
+        NbtCompound compound = new NbtCompound();
+        compound.put("gr\u00fc\u00dfe", new NbtString("\u65e5\u672c"));
+        compound.put("ascii", new NbtString("plain"));
+        //noinspection resource
+        bytes = ((ByteArrayOutputStream) parser.write(compound)).toByteArray();
+        Assertions.assertEquals(compound, parser.read(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test
+    void testLargeArrays() {
+        //larger than one read chunk, not a multiple of it
+        int[] ints = new int[5000];
+        long[] longs = new long[3000];
+        for (int i = 0; i < ints.length; i++) {
+            ints[i] = i * 0x01020305 - 7;
+        }
+        for (int i = 0; i < longs.length; i++) {
+            longs[i] = i * 0x0102030405060709L + Long.MIN_VALUE;
+        }
+        NbtCompound section = new NbtCompound();
+        section.put("ints", new NbtIntArray(ints));
+        section.put("longs", new NbtLongArray(longs));
+        IOStreamParser parser = new IOStreamParser();
+        //noinspection resource
+        byte[] bytes = ((ByteArrayOutputStream) parser.write(section)).toByteArray();
+        Assertions.assertEquals("0B 00 04 69 6E 74 73 00 00 13 88 FF FF FF F9", toHexString(Arrays.copyOfRange(bytes, 3, 18)));
+        Assertions.assertEquals(section, parser.read(new ByteArrayInputStream(bytes)));
+    }
+
     private String toHexString(byte[] bytes) {
         StringBuilder sb = new StringBuilder();
         for (byte b : bytes) {
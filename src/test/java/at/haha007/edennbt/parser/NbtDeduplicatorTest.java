@@ -0,0 +1,72 @@
+package at.haha007.edennbt.parser;
+
+import at.haha007.edennbt.element.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Map;
+
+class NbtDeduplicatorTest {
+    private static NbtCompound item(String id) {
+        NbtCompound item = new NbtCompound();
+        item.put("id", new NbtString(id));
+        item.put("Count", new NbtByte((byte) 64));
+        item.put("tag", new NbtCompound(Map.of("Damage", new NbtInt(0))));
+        return item;
+    }
+
+    @Test
+    void testEqualSubtreesAreShared() {
+        NbtCompound chest = new NbtCompound();
+        chest.put("Items", new NbtList<>(List.of(item("stone"), item("stone"), item("dirt")), NbtCompound.class));
+        byte[] bytes = ((ByteArrayOutputStream) new IOStreamParser().write(chest)).toByteArray();
+
+        NbtDeduplicator deduplicator = new NbtDeduplicator(1024);
+        IOStreamParser parser = new IOStreamParser(deduplicator);
+        NbtCompound first = (NbtCompound) parser.read(new ByteArrayInputStream(bytes));
+        NbtCompound second = (NbtCompound) parser.read(new ByteArrayInputStream(bytes));
+
+        Assertions.assertEquals(chest, first);
+        Assertions.assertSame(first, second);
+        NbtList<?> items = (NbtList<?>) first.get("Items");
+        Assertions.assertSame(items.get(0), items.get(1));
+        Assertions.assertNotSame(items.get(0), items.get(2));
+        Assertions.assertSame(((NbtCompound) items.get(0)).get("tag"), ((NbtCompound) items.get(2)).get("tag"));
+        Assertions.assertTrue(deduplicator.getHits() > 0);
+    }
+
+    @Test
+    void testCollisionsKeepContent() {
+        NbtDeduplicator deduplicator = new NbtDeduplicator(1);
+        NbtElement a = deduplicator.deduplicate(new NbtCompound(Map.of("a", new NbtInt(1))));
+        NbtElement b = deduplicator.deduplicate(new NbtCompound(Map.of("a", new NbtInt(2))));
+        Assertions.assertEquals(new NbtCompound(Map.of("a", new NbtInt(1))), a);
+        Assertions.assertEquals(new NbtCompound(Map.of("a", new NbtInt(2))), b);
+    }
+
+    @Test
+    void testNumbersDoNotEvict() {
+        NbtDeduplicator deduplicator = new NbtDeduplicator(1);
+        NbtElement stone = deduplicator.deduplicate(new NbtString("stone"));
+        NbtInt number = new NbtInt(5);
+        Assertions.assertSame(number, deduplicator.deduplicate(number));
+        Assertions.assertNotSame(number, deduplicator.deduplicate(new NbtInt(5)));
+        Assertions.assertSame(stone, deduplicator.deduplicate(new NbtString("stone")));
+        Assertions.assertEquals(1, deduplicator.getHits());
+        Assertions.assertEquals(1, deduplicator.getMisses());
+    }
+
+    @Test
+    void testEmptyListsKeepSubType() {
+        NbtDeduplicator deduplicator = new NbtDeduplicator(1024);
+        NbtList<NbtInt> ints = new NbtList<>(List.of(), NbtInt.class);
+        NbtList<NbtString> strings = new NbtList<>(List.of(), NbtString.class);
+        Assertions.assertSame(ints, deduplicator.deduplicate(ints));
+        NbtElement result = deduplicator.deduplicate(strings);
+        Assertions.assertSame(strings, result);
+        Assertions.assertEquals(ElementType.STRING, ((NbtList<?>) result).getSubType());
+    }
+}
@@ -0,0 +1,113 @@
+package at.haha007.edennbt.parser;
+
+import at.haha007.edennbt.element.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.text.ParseException;
+import java.util.List;
+
+class NbtJsonTranscoderTest {
+    private static NbtCompound all() {
+        NbtCompound compound = new NbtCompound();
+        compound.put("byte", new NbtByte((byte) -1));
+        compound.put("short", new NbtShort((short) 300));
+        compound.put("int", new NbtInt(70000));
+        compound.put("long", new NbtLong(Long.MAX_VALUE));
+        compound.put("float", new NbtFloat(0.1f));
+        compound.put("double", new NbtDouble(Double.NaN));
+        compound.put("string", new NbtString("quote \" slash \\ newline \n tab \t ctrl \u0001 umlaut ä"));
+        compound.put("minecraft:key", new NbtByteArray(new byte[]{1, -2}));
+        compound.put("ints", new NbtIntArray(new int[]{3, -4}));
+        compound.put("longs", new NbtLongArray(new long[0]));
+        compound.put("empty", new NbtList<>());
+        NbtList<NbtList<?>> nested = new NbtList<>();
+        nested.add(new NbtList<>(List.of(new NbtInt(1)), NbtInt.class));
+        nested.add(new NbtList<>(List.of(new NbtString("a")), NbtString.class));
+        compound.put("nested", nested);
+        NbtCompound inner = new NbtCompound();
+        inner.put("x", new NbtFloat(Float.NEGATIVE_INFINITY));
+        compound.put("compounds", new NbtList<>(List.of(inner, new NbtCompound()), NbtCompound.class));
+        return compound;
+    }
+
+    private static byte[] encode(NbtElement element) {
+        return ((ByteArrayOutputStream) new IOStreamParser().write(element)).toByteArray();
+    }
+
+    private static NbtElement decode(byte[] bytes) {
+        return new IOStreamParser().read(new ByteArrayInputStream(bytes));
+    }
+
+    @Test
+    void testTypedRoundTrip() {
+        byte[] bytes = encode(all());
+        for (NbtJsonTranscoder.TypeMode mode : List.of(NbtJsonTranscoder.TypeMode.SUFFIX, NbtJsonTranscoder.TypeMode.WRAPPER)) {
+            NbtJsonTranscoder transcoder = new NbtJsonTranscoder(mode);
+            String json = transcoder.toJson(bytes);
+            Assertions.assertArrayEquals(bytes, transcoder.toNbt(json), json);
+        }
+    }
+
+    @Test
+    void testSuffixFormat() {
+        NbtCompound compound = new NbtCompound();
+        compound.put("Count", new NbtByte((byte) 1));
+        compound.put("Pos", new NbtList<>(List.of(new NbtDouble(0.5), new NbtDouble(64)), NbtDouble.class));
+        String json = new NbtJsonTranscoder(NbtJsonTranscoder.TypeMode.SUFFIX).toJson(encode(compound));
+        Assertions.assertEquals("{\":compound\":{\"Count:byte\":1,\"Pos:list<double>\":[0.5,64.0]}}", json);
+        String wrapped = new NbtJsonTranscoder(NbtJsonTranscoder.TypeMode.WRAPPER).toJson(encode(new NbtShort((short) 2)));
+        Assertions.assertEquals("{\"type\":\"short\",\"value\":2}", wrapped);
+    }
+
+    @Test
+    void testPlain() {
+        NbtJsonTranscoder transcoder = new NbtJsonTranscoder(NbtJsonTranscoder.TypeMode.NONE);
+        NbtCompound compound = new NbtCompound();
+        compound.put("Count", new NbtByte((byte) 1));
+        compound.put("Pos", new NbtList<>(List.of(new NbtDouble(0.5), new NbtDouble(64)), NbtDouble.class));
+        compound.put("Name", new NbtString("x"));
+        Assertions.assertEquals("{\"Count\":1,\"Pos\":[0.5,64.0],\"Name\":\"x\"}", transcoder.toJson(encode(compound)));
+
+        NbtCompound expected = new NbtCompound();
+        expected.put("a", new NbtInt(1));
+        expected.put("b", new NbtLong(5_000_000_000L));
+        expected.put("c", new NbtDouble(1.5));
+        expected.put("d", new NbtByte((byte) 1));
+        expected.put("e", new NbtList<>(List.of(new NbtDouble(1), new NbtDouble(2.5)), NbtDouble.class));
+        expected.put("f", new NbtList<>(List.of(new NbtLong(1), new NbtLong(5_000_000_000L)), NbtLong.class));
+        expected.put("g", new NbtList<>(List.of(new NbtString("s")), NbtString.class));
+        expected.put("h", new NbtList<>());
+        expected.put("i", new NbtCompound());
+        String json = " {\"a\": 1, \"b\": 5000000000, \"c\": 1.5, \"d\": true, \"e\": [1, 2.5], "
+                + "\"f\": [1, 5000000000], \"g\": [\"s\"], \"h\": [], \"i\": {}}\n";
+        Assertions.assertEquals(expected, decode(transcoder.toNbt(json)));
+
+        Assertions.assertEquals(new NbtInt(5), decode(transcoder.toNbt("5")));
+        Assertions.assertEquals(new NbtLong(-5_000_000_000L), decode(transcoder.toNbt(" -5000000000 ")));
+        Assertions.assertEquals(new NbtDouble(0.25), decode(transcoder.toNbt("2.5e-1")));
+    }
+
+    @Test
+    void testMalformed() {
+        NbtJsonTranscoder plain = new NbtJsonTranscoder(NbtJsonTranscoder.TypeMode.NONE);
+        Assertions.assertThrows(ParseException.class, () -> plain.toNbt("{\"a\": 1"));
+        Assertions.assertThrows(ParseException.class, () -> plain.toNbt("{\"a\": [1, \"b\"]}"));
+        Assertions.assertThrows(ParseException.class, () -> plain.toNbt("{} {}"));
+        Assertions.assertThrows(ParseException.class, () -> plain.toNbt("[1, 2.3.4]"));
+        Assertions.assertThrows(ParseException.class, () -> plain.toNbt("1.2.3"));
+        //tokens end at whitespace
+        Assertions.assertThrows(ParseException.class, () -> plain.toNbt("{\"a\": [1 2]}"));
+        Assertions.assertThrows(ParseException.class, () -> plain.toNbt("{\"b\": 3 4}"));
+        Assertions.assertThrows(ParseException.class, () -> plain.toNbt("{\"c\": tr ue}"));
+        Assertions.assertThrows(ParseException.class, () -> plain.toNbt("1 2"));
+        NbtJsonTranscoder suffix = new NbtJsonTranscoder(NbtJsonTranscoder.TypeMode.SUFFIX);
+        Assertions.assertThrows(ParseException.class, () -> suffix.toNbt("{\":compound\": {\"a\": 1}}"));
+        Assertions.assertThrows(ParseException.class, () -> suffix.toNbt("{\":compound\": {\"a:byte\": 300}}"));
+        Assertions.assertThrows(ParseException.class, () -> suffix.toNbt("{\":compound\": {\"a:int\": 1 2}}"));
+        NbtJsonTranscoder wrapper = new NbtJsonTranscoder(NbtJsonTranscoder.TypeMode.WRAPPER);
+        Assertions.assertThrows(ParseException.class, () -> wrapper.toNbt("{\"value\": 1, \"type\": \"int\"}"));
+    }
+}
@@ -0,0 +1,117 @@
+package at.haha007.edennbt.parser;
+
+import at.haha007.edennbt.element.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Random;
+
+class NbtPushParserTest {
+    private static NbtCompound sample(int i) {
+        NbtCompound compound = new NbtCompound();
+        compound.put("id", new NbtInt(i));
+        compound.put("name", new NbtString("entity ä€" + i));
+        compound.put("pos", new NbtList<>(List.of(new NbtDouble(i), new NbtDouble(64), new NbtDouble(-i)), NbtDouble.class));
+        compound.put("empty", new NbtList<>());
+        compound.put("bytes", new NbtByteArray(new byte[300]));
+        compound.put("ints", new NbtIntArray(new int[]{i, 2, 3}));
+        compound.put("longs", new NbtLongArray(new long[]{Long.MIN_VALUE, i}));
+        compound.put("nested", new NbtCompound());
+        compound.put("values", new NbtList<>(List.of(new NbtCompound(), sample()), NbtCompound.class));
+        return compound;
+    }
+
+    private static NbtCompound sample() {
+        NbtCompound compound = new NbtCompound();
+        compound.put("b", new NbtByte((byte) -1));
+        compound.put("s", new NbtShort((short) -2));
+        compound.put("l", new NbtLong(3));
+        compound.put("f", new NbtFloat(4.5f));
+        return compound;
+    }
+
+    @Test
+    void testFragmentedRoots() {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        IOStreamParser writer = new IOStreamParser();
+        for (int i = 0; i < 3; i++) {
+            stream.writeBytes(((ByteArrayOutputStream) writer.write(sample(i))).toByteArray());
+        }
+        byte[] bytes = stream.toByteArray();
+
+        Random random = new Random(1);
+        for (int maxChunk : new int[]{1, 7, 1000}) {
+            NbtPushParser parser = new NbtPushParser();
+            int position = 0;
+            while (position < bytes.length) {
+                int length = Math.min(bytes.length - position, 1 + random.nextInt(maxChunk));
+                parser.feed(bytes, position, length);
+                position += length;
+            }
+            Assertions.assertFalse(parser.isPartial());
+            for (int i = 0; i < 3; i++) {
+                Assertions.assertEquals(sample(i), parser.poll());
+            }
+            Assertions.assertNull(parser.poll());
+        }
+    }
+
+    @Test
+    void testPartialAndInvalid() {
+        byte[] bytes = ((ByteArrayOutputStream) new IOStreamParser().write(sample(1))).toByteArray();
+        NbtPushParser parser = new NbtPushParser();
+        parser.feed(bytes, 0, bytes.length - 1);
+        Assertions.assertTrue(parser.isPartial());
+        Assertions.assertNull(parser.poll());
+        parser.feed(bytes, bytes.length - 1, 1);
+        Assertions.assertEquals(sample(1), parser.poll());
+
+        NbtPushParser unnamed = new NbtPushParser(false);
+        unnamed.feed(new byte[]{3, 0, 0, 0, 42});
+        Assertions.assertEquals(new NbtInt(42), unnamed.poll());
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new NbtPushParser().feed(new byte[]{13}));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new NbtPushParser().feed(new byte[]{11, 0, 0, -1, -1, -1, -1}));
+    }
+
+    @Test
+    void testLargeArraysInChunks() {
+        long[] longs = new long[1000];
+        int[] ints = new int[777];
+        for (int i = 0; i < longs.length; i++) {
+            longs[i] = i * 0x100000001L;
+        }
+        for (int i = 0; i < ints.length; i++) {
+            ints[i] = -i;
+        }
+        NbtCompound compound = new NbtCompound();
+        compound.put("longs", new NbtLongArray(longs));
+        compound.put("ints", new NbtIntArray(ints));
+        byte[] bytes = ((ByteArrayOutputStream) new IOStreamParser().write(compound)).toByteArray();
+        NbtPushParser parser = new NbtPushParser();
+        for (int position = 0; position < bytes.length; position += 7) {
+            parser.feed(bytes, position, Math.min(7, bytes.length - position));
+        }
+        Assertions.assertEquals(compound, parser.poll());
+    }
+
+    @Test
+    void testMaxBytes() {
+        //an int array announcing 8 GiB is rejected after its length, without allocating
+        NbtPushParser unnamed = new NbtPushParser(false);
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> unnamed.feed(new byte[]{11, 0x7f, -1, -1, -1}));
+
+        byte[] bytes = ((ByteArrayOutputStream) new IOStreamParser().write(sample(1))).toByteArray();
+        NbtPushParser exact = new NbtPushParser(true, bytes.length);
+        exact.feed(bytes);
+        exact.feed(bytes);
+        Assertions.assertEquals(sample(1), exact.poll());
+        Assertions.assertEquals(sample(1), exact.poll());
+        NbtPushParser small = new NbtPushParser(true, bytes.length - 1);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> small.feed(bytes));
+    }
+}
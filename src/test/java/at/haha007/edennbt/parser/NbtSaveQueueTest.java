@@ -0,0 +1,121 @@
+package at.haha007.edennbt.parser;
+
+import at.haha007.edennbt.element.NbtCompound;
+import at.haha007.edennbt.element.NbtElement;
+import at.haha007.edennbt.element.NbtInt;
+import at.haha007.edennbt.element.NbtLongArray;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+class NbtSaveQueueTest {
+    @TempDir
+    Path dir;
+
+    private static NbtCompound player(int level) {
+        NbtCompound player = new NbtCompound();
+        player.put("XpLevel", new NbtInt(level));
+        return player;
+    }
+
+    private NbtElement load(String name) throws Exception {
+        try (AsyncNbtFiles files = new AsyncNbtFiles(1, false)) {
+            return files.load(dir.resolve(name + ".dat")).get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void testSaveAndClose() throws Exception {
+        NbtSaveQueue<String> saves = new NbtSaveQueue<>(name -> dir.resolve(name + ".dat"), 2, false);
+        NbtCompound player = player(1);
+        for (int i = 0; i < 20; i++) {
+            saves.save("p" + i, player);
+        }
+        //changing the element after save does not change what is written
+        player.put("XpLevel", new NbtInt(2));
+        saves.close();
+        Assertions.assertEquals(20, saves.getWritten());
+        Assertions.assertEquals(0, saves.getQueueDepth());
+        for (int i = 0; i < 20; i++) {
+            Assertions.assertEquals(player(1), load("p" + i));
+        }
+        try (var stream = Files.list(dir)) {
+            Assertions.assertEquals(20, stream.count());
+        }
+        Assertions.assertThrows(IllegalStateException.class, () -> saves.save("late", player));
+    }
+
+    @Test
+    void testArrayChangedAfterSave() throws Exception {
+        NbtCompound player = player(1);
+        NbtLongArray uuid = new NbtLongArray(new long[]{1, 2});
+        player.put("UUID", uuid);
+        long[] value = uuid.getValue();
+        NbtCompound expected = player(1);
+        expected.put("UUID", new NbtLongArray(new long[]{1, 2}));
+        try (NbtSaveQueue<String> saves = new NbtSaveQueue<>(name -> dir.resolve(name + ".dat"), 1, false)) {
+            saves.save("p", player);
+            //changed in place while the worker may be encoding it
+            value[0] = 3;
+            uuid.markDirty();
+        }
+        Assertions.assertEquals(expected, load("p"));
+    }
+
+    @Test
+    void testCoalesce() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        IOStreamParser blocking = new IOStreamParser() {
+            @Override
+            @SneakyThrows
+            public OutputStream write(NbtElement nbt) {
+                if (((NbtCompound) nbt).get("XpLevel").equals(new NbtInt(0))) {
+                    started.countDown();
+                    release.await();
+                }
+                return super.write(nbt);
+            }
+        };
+        try (NbtSaveQueue<String> saves = new NbtSaveQueue<>(name -> dir.resolve(name + ".dat"), blocking, 1, false)) {
+            CompletableFuture<Void> first = saves.save("p", player(0));
+            Assertions.assertTrue(started.await(10, TimeUnit.SECONDS));
+            List<CompletableFuture<Void>> later = new ArrayList<>();
+            for (int i = 1; i <= 5; i++) {
+                later.add(saves.save("p", player(i)));
+            }
+            Assertions.assertEquals(1, saves.getQueueDepth());
+            Assertions.assertEquals(1, saves.getInFlight());
+            Assertions.assertEquals(4, saves.getCoalesced());
+            Assertions.assertNotSame(first, later.getFirst());
+            Assertions.assertSame(later.getFirst(), later.getLast());
+            CompletableFuture<Void> flushed = saves.flush();
+            Assertions.assertFalse(flushed.isDone());
+            release.countDown();
+            flushed.get(10, TimeUnit.SECONDS);
+            Assertions.assertTrue(first.isDone());
+            Assertions.assertEquals(2, saves.getWritten());
+            Assertions.assertEquals(player(5), load("p"));
+        }
+    }
+
+    @Test
+    void testFailure() throws Exception {
+        try (NbtSaveQueue<String> saves = new NbtSaveQueue<>(name -> dir.resolve("missing").resolve(name), 1, false)) {
+            CompletableFuture<Void> save = saves.save("p", player(1));
+            saves.flush().get(10, TimeUnit.SECONDS);
+            Assertions.assertTrue(save.isCompletedExceptionally());
+            Assertions.assertEquals(1, saves.getFailed());
+        }
+    }
+}
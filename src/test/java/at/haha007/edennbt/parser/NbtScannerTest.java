@@ -0,0 +1,82 @@
+package at.haha007.edennbt.parser;
+
+import at.haha007.edennbt.element.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.text.ParseException;
+import java.util.Arrays;
+
+class NbtScannerTest {
+    private static byte[] encode(NbtElement element) {
+        return ((ByteArrayOutputStream) new IOStreamParser().write(element)).toByteArray();
+    }
+
+    private static NbtCompound chunk() {
+        NbtCompound chunk = new NbtCompound();
+        chunk.put("xPos", new NbtInt(1));
+        chunk.put("Status", new NbtString("full"));
+        NbtList<NbtCompound> sections = new NbtList<>(NbtCompound.class);
+        for (int i = 0; i < 3; i++) {
+            NbtCompound section = new NbtCompound();
+            section.put("Y", new NbtByte((byte) i));
+            section.put("BlockStates", new NbtLongArray(new long[16]));
+            sections.add(section);
+        }
+        chunk.put("sections", sections);
+        chunk.put("Heights", new NbtList<>(Arrays.asList(new NbtShort((short) 1), new NbtShort((short) 2)), NbtShort.class));
+        chunk.put("Empty", new NbtList<>());
+        return chunk;
+    }
+
+    @Test
+    void testStats() throws ParseException {
+        byte[] bytes = encode(chunk());
+        NbtScanner.Stats stats = new NbtScanner().scan(bytes);
+        Assertions.assertEquals(bytes.length, stats.getBytes());
+        Assertions.assertEquals(4, stats.getCount(ElementType.COMPOUND));
+        Assertions.assertEquals(3, stats.getCount(ElementType.LIST));
+        Assertions.assertEquals(3, stats.getCount(ElementType.LONG_ARRAY));
+        Assertions.assertEquals(2, stats.getCount(ElementType.SHORT));
+        Assertions.assertEquals(17, stats.getNodes());
+        Assertions.assertEquals(4, stats.getMaxDepth());
+    }
+
+    @Test
+    void testMalformed() {
+        byte[] bytes = encode(chunk());
+        NbtScanner scanner = new NbtScanner();
+        for (int length = 0; length < bytes.length; length++) {
+            int cut = length;
+            Assertions.assertThrows(ParseException.class, () -> scanner.scan(bytes, 0, cut));
+        }
+        Assertions.assertThrows(ParseException.class, () -> scanner.scan(Arrays.copyOf(bytes, bytes.length + 1)));
+
+        byte[] invalidType = bytes.clone();
+        invalidType[3] = 42;
+        ParseException e = Assertions.assertThrows(ParseException.class, () -> scanner.scan(invalidType));
+        Assertions.assertEquals(3, e.getErrorOffset());
+
+        //root compound, empty name, INT_ARRAY "a" of length -1
+        byte[] negative = {10, 0, 0, 11, 0, 1, 'a', -1, -1, -1, -1, 0};
+        Assertions.assertThrows(ParseException.class, () -> scanner.scan(negative));
+        //list of 2 END tags
+        byte[] endList = {9, 0, 0, 0, 0, 0, 0, 2};
+        Assertions.assertThrows(ParseException.class, () -> scanner.scan(endList));
+    }
+
+    @Test
+    void testMaxDepth() throws ParseException {
+        NbtCompound root = new NbtCompound();
+        NbtCompound current = root;
+        for (int i = 0; i < 9; i++) {
+            NbtCompound child = new NbtCompound();
+            current.put("c", child);
+            current = child;
+        }
+        byte[] bytes = encode(root);
+        Assertions.assertEquals(10, new NbtScanner(10).scan(bytes).getMaxDepth());
+        Assertions.assertThrows(ParseException.class, () -> new NbtScanner(9).scan(bytes));
+    }
+}
@@ -0,0 +1,104 @@
+package at.haha007.edennbt.parser;
+
+import at.haha007.edennbt.element.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+class NbtSchemaTest {
+    private static final NbtSchema ITEM = NbtSchema.builder()
+            .put("Slot", ElementType.BYTE)
+            .put("id", ElementType.STRING)
+            .put("Count", ElementType.BYTE)
+            .put("tag", NbtSchema.builder().put("Damage", ElementType.INT).build())
+            .build();
+    private static final NbtSchema CHEST = NbtSchema.builder()
+            .put("id", ElementType.STRING)
+            .putList("Items", ITEM)
+            .build();
+
+    private static NbtCompound item(int slot) {
+        NbtCompound tag = new NbtCompound();
+        tag.put("Damage", new NbtInt(slot * 3));
+        NbtCompound item = new NbtCompound();
+        item.put("Slot", new NbtByte((byte) slot));
+        item.put("id", new NbtString("minecraft:stone"));
+        item.put("Count", new NbtByte((byte) 64));
+        item.put("tag", tag);
+        return item;
+    }
+
+    private static void assertDecodes(NbtSchema schema, NbtCompound compound) {
+        byte[] bytes = ((ByteArrayOutputStream) new IOStreamParser().write(compound)).toByteArray();
+        Assertions.assertEquals(compound, schema.decode(bytes));
+        Assertions.assertEquals(new IOStreamParser().read(new ByteArrayInputStream(bytes)), schema.decode(bytes));
+    }
+
+    @Test
+    void testMatchingLayout() {
+        NbtCompound chest = new NbtCompound();
+        chest.put("id", new NbtString("minecraft:chest"));
+        chest.put("Items", new NbtList<>(List.of(item(0), item(1), item(2)), NbtCompound.class));
+        assertDecodes(CHEST, chest);
+        assertDecodes(NbtSchema.of(chest), chest);
+    }
+
+    @Test
+    void testMismatchFallsBack() {
+        NbtCompound odd = new NbtCompound();
+        odd.put("id", new NbtString("minecraft:stone"));
+        odd.put("Slot", new NbtByte((byte) 1));
+        odd.put("Count", new NbtInt(1000));
+        odd.put("extra", new NbtLongArray(new long[]{1, 2}));
+        NbtCompound missing = item(4);
+        missing.remove("Count");
+        NbtCompound chest = new NbtCompound();
+        chest.put("CustomName", new NbtString("loot"));
+        chest.put("Items", new NbtList<>(List.of(item(0), odd, missing, item(5)), NbtCompound.class));
+        chest.put("id", new NbtString("minecraft:chest"));
+        assertDecodes(CHEST, chest);
+
+        NbtCompound strings = new NbtCompound();
+        strings.put("Items", new NbtList<>(List.of(new NbtString("a")), NbtString.class));
+        assertDecodes(CHEST, strings);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CHEST.decode(new byte[]{3, 0, 0, 0, 0, 0, 1}));
+    }
+
+    @Test
+    void testMissingKeyKeepsMatching() {
+        //keys of matched entries are the schema's instances
+        String c = new String("c");
+        NbtSchema schema = NbtSchema.builder()
+                .put("a", ElementType.INT)
+                .put("b", ElementType.INT)
+                .put(c, ElementType.INT)
+                .build();
+        NbtCompound compound = new NbtCompound();
+        compound.put("b", new NbtInt(2));
+        compound.put("c", new NbtInt(3));
+        assertDecodes(schema, compound);
+        byte[] bytes = ((ByteArrayOutputStream) new IOStreamParser().write(compound)).toByteArray();
+        NbtCompound decoded = schema.decode(bytes);
+        Assertions.assertSame(c, decoded.keySet().stream().filter("c"::equals).findFirst().orElseThrow());
+
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 1);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> schema.decode(truncated));
+    }
+
+    @Test
+    void testTruncatedPayload() {
+        NbtCompound compound = new NbtCompound();
+        compound.put("CustomName", new NbtString("loot"));
+        compound.put("Items", new NbtList<>(List.of(item(0), item(1)), NbtCompound.class));
+        compound.put("extra", new NbtIntArray(new int[]{1, 2, 3}));
+        byte[] bytes = ((ByteArrayOutputStream) new IOStreamParser().write(compound)).toByteArray();
+        for (int length = 0; length < bytes.length; length++) {
+            byte[] truncated = Arrays.copyOf(bytes, length);
+            Assertions.assertThrows(IllegalArgumentException.class, () -> CHEST.decode(truncated), "length " + length);
+        }
+    }
+}
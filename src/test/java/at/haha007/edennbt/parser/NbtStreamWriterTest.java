@@ -0,0 +1,118 @@
+package at.haha007.edennbt.parser;
+
+import at.haha007.edennbt.element.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+class NbtStreamWriterTest {
+    private static NbtCompound entity(int i) {
+        NbtCompound entity = new NbtCompound();
+        entity.put("id", new NbtString("minecraft:zombie"));
+        entity.put("UUID", new NbtIntArray(new int[]{i, i, i, i}));
+        entity.put("Health", new NbtFloat(i / 2f));
+        return entity;
+    }
+
+    @Test
+    void testSameAsTree() {
+        int count = 10_000;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (NbtStreamWriter writer = new NbtStreamWriter(out)) {
+            writer.beginCompound();
+            writer.writeEntry("DataVersion", new NbtInt(3465));
+            writer.writeList("Entities", ElementType.COMPOUND, count, IntStream.range(0, count).mapToObj(NbtStreamWriterTest::entity));
+            writer.beginCompound("Meta");
+            writer.writeEntry("Name", new NbtString("export"));
+            writer.writeList("Empty", ElementType.END, 0, List.<NbtElement>of().iterator());
+            writer.endCompound();
+            writer.endCompound();
+        }
+
+        NbtCompound expected = new NbtCompound();
+        expected.put("DataVersion", new NbtInt(3465));
+        NbtList<NbtCompound> entities = new NbtList<>(NbtCompound.class);
+        for (int i = 0; i < count; i++) {
+            entities.add(entity(i));
+        }
+        expected.put("Entities", entities);
+        NbtCompound meta = new NbtCompound();
+        meta.put("Name", new NbtString("export"));
+        meta.put("Empty", new NbtList<>());
+        expected.put("Meta", meta);
+
+        byte[] bytes = out.toByteArray();
+        Assertions.assertArrayEquals(((ByteArrayOutputStream) new IOStreamParser().write(expected)).toByteArray(), bytes);
+        Assertions.assertEquals(expected, new IOStreamParser().read(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test
+    void testRootList() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (NbtStreamWriter writer = new NbtStreamWriter(out)) {
+            writer.writeList(ElementType.INT, 3, List.of(new NbtInt(1), new NbtInt(2), new NbtInt(3)).iterator());
+        }
+        NbtList<NbtInt> expected = new NbtList<>(List.of(new NbtInt(1), new NbtInt(2), new NbtInt(3)), NbtInt.class);
+        Assertions.assertEquals(expected, new IOStreamParser().read(new ByteArrayInputStream(out.toByteArray())));
+    }
+
+    @Test
+    void testInvalidUse() {
+        NbtStreamWriter writer = new NbtStreamWriter(new ByteArrayOutputStream());
+        Assertions.assertThrows(IllegalStateException.class, () -> writer.writeEntry("a", new NbtInt(1)));
+        writer.beginCompound();
+        Assertions.assertThrows(IllegalStateException.class, writer::beginCompound);
+        Assertions.assertThrows(IllegalStateException.class, writer::close);
+
+        NbtStreamWriter mismatch = new NbtStreamWriter(new ByteArrayOutputStream());
+        mismatch.beginCompound();
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> mismatch.writeList("b", ElementType.INT, 1, List.<NbtElement>of(new NbtString("x")).iterator()));
+    }
+
+    @Test
+    void testFailedWrite() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        NbtStreamWriter writer = new NbtStreamWriter(out);
+        writer.beginCompound();
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> writer.writeList("a", ElementType.INT, 2, List.of(new NbtInt(1)).iterator()));
+        //the partial list is never continued nor flushed
+        Assertions.assertThrows(IllegalStateException.class, () -> writer.writeEntry("b", new NbtInt(1)));
+        Assertions.assertThrows(IllegalStateException.class, writer::endCompound);
+        Assertions.assertThrows(IllegalStateException.class, writer::flush);
+        writer.close();
+        Assertions.assertEquals(0, out.size());
+    }
+
+    @Test
+    void testInvalidListArguments() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (NbtStreamWriter writer = new NbtStreamWriter(out)) {
+            writer.beginCompound();
+            Assertions.assertThrows(IllegalArgumentException.class,
+                    () -> writer.writeList("a", ElementType.INT, -1, List.<NbtElement>of().iterator()));
+            Assertions.assertThrows(IllegalArgumentException.class,
+                    () -> writer.writeList("a", ElementType.END, 1, List.<NbtElement>of().iterator()));
+            writer.writeEntry("b", new NbtInt(1));
+            writer.endCompound();
+        }
+        Assertions.assertEquals(new NbtCompound(Map.of("b", new NbtInt(1))),
+                new IOStreamParser().read(new ByteArrayInputStream(out.toByteArray())));
+
+        ByteArrayOutputStream rootOut = new ByteArrayOutputStream();
+        try (NbtStreamWriter writer = new NbtStreamWriter(rootOut)) {
+            Assertions.assertThrows(IllegalArgumentException.class,
+                    () -> writer.writeList(ElementType.INT, -1, Stream.<NbtElement>empty()));
+            writer.writeList(ElementType.INT, 2, Stream.of(new NbtInt(1), new NbtInt(2)));
+        }
+        Assertions.assertEquals(new NbtList<>(List.of(new NbtInt(1), new NbtInt(2)), NbtInt.class),
+                new IOStreamParser().read(new ByteArrayInputStream(rootOut.toByteArray())));
+    }
+}
@@ -0,0 +1,80 @@
+package at.haha007.edennbt.parser;
+
+import at.haha007.edennbt.element.*;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.ForkJoinPool;
+
+class ParallelNbtWriterTest {
+    private static NbtCompound world() {
+        NbtCompound world = new NbtCompound();
+        world.put("name", new NbtString("world"));
+        NbtList<NbtCompound> chunks = new NbtList<>(NbtCompound.class);
+        for (int c = 0; c < 20; c++) {
+            NbtCompound chunk = new NbtCompound();
+            chunk.put("xPos", new NbtInt(c));
+            NbtList<NbtCompound> sections = new NbtList<>(NbtCompound.class);
+            for (int s = 0; s < 4; s++) {
+                NbtCompound section = new NbtCompound();
+                section.put("Y", new NbtByte((byte) s));
+                long[] states = new long[64];
+                states[s] = c;
+                section.put("BlockStates", new NbtLongArray(states));
+                sections.add(section);
+            }
+            chunk.put("sections", sections);
+            chunk.put("entities", new NbtList<>());
+            chunks.add(chunk);
+        }
+        world.put("chunks", chunks);
+        world.put("time", new NbtLong(1234));
+        return world;
+    }
+
+    private static byte[] sequential(NbtElement element) {
+        return ((ByteArrayOutputStream) new IOStreamParser().write(element)).toByteArray();
+    }
+
+    @Test
+    void testIdenticalOutput() {
+        for (long threshold : new long[]{1, 100, 1000, 1 << 20}) {
+            ParallelNbtWriter writer = new ParallelNbtWriter(ForkJoinPool.commonPool(), threshold, BinaryCodecs.DEFAULT);
+            Assertions.assertArrayEquals(sequential(world()), writer.write(world()).toByteArray());
+            Assertions.assertArrayEquals(sequential(new NbtInt(3)), writer.write(new NbtInt(3)).toByteArray());
+        }
+    }
+
+    @Test
+    void testTracking() {
+        ParallelNbtWriter writer = new ParallelNbtWriter(ForkJoinPool.commonPool(), 100, BinaryCodecs.DEFAULT);
+        NbtCompound world = world();
+        world.setTracking(true);
+        byte[] first = writer.write(world).toByteArray();
+        Assertions.assertNotNull(world.getEncodedPayload());
+        NbtCompound chunk = (NbtCompound) ((NbtList<?>) world.get("chunks")).get(3);
+        chunk.put("xPos", new NbtInt(-1));
+        Assertions.assertNull(world.getEncodedPayload());
+        byte[] second = writer.write(world).toByteArray();
+        Assertions.assertEquals(first.length, second.length);
+        Assertions.assertArrayEquals(sequential(world), second);
+        world.setTracking(false);
+        Assertions.assertArrayEquals(sequential(world), second);
+    }
+
+    @Test
+    void testCanonical() {
+        ParallelNbtWriter writer = new ParallelNbtWriter(ForkJoinPool.commonPool(), 100, BinaryCodecs.CANONICAL);
+        IOStreamParser canonical = new IOStreamParser(null, BinaryCodecs.CANONICAL);
+        NbtCompound world = world();
+        world.setTracking(true);
+        byte[] expected = ((ByteArrayOutputStream) canonical.write(world)).toByteArray();
+        Assertions.assertArrayEquals(expected, writer.write(world).toByteArray());
+        //writing canonical neither fills the caches nor changes later default output
+        Assertions.assertNull(world.getEncodedPayload());
+        NbtCompound plain = world();
+        Assertions.assertArrayEquals(sequential(plain), sequential(world));
+        Assertions.assertArrayEquals(sequential(plain), new ParallelNbtWriter().write(world).toByteArray());
+    }
+}
@@ -0,0 +1,76 @@
+package at.haha007.edennbt.path;
+
+import at.haha007.edennbt.element.*;
+import at.haha007.edennbt.parser.IOStreamParser;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+class NbtIndexTest {
+    @TempDir
+    Path dir;
+
+    private static NbtCompound level() {
+        NbtCompound data = new NbtCompound();
+        data.put("LevelName", new NbtString("world"));
+        data.put("Spawn", new NbtIntArray(new int[]{1, 64, 2}));
+        data.put("Players", new NbtList<>(List.of(
+                new NbtCompound(Map.of("Name", new NbtString("a"), "Health", new NbtFloat(20))),
+                new NbtCompound(Map.of("Name", new NbtString("b"), "Health", new NbtFloat(5)))), NbtCompound.class));
+        data.put("odd key", new NbtByte((byte) 1));
+        NbtCompound root = new NbtCompound();
+        root.put("data", data);
+        return root;
+    }
+
+    private Path write(NbtElement element) throws IOException {
+        Path file = dir.resolve("level.dat");
+        Files.write(file, ((ByteArrayOutputStream) new IOStreamParser().write(element)).toByteArray());
+        return file;
+    }
+
+    @Test
+    void testBuildSaveRead() throws IOException {
+        NbtCompound level = level();
+        Path file = write(level);
+        NbtIndex.build(file, 4).save(NbtIndex.sidecar(file));
+        NbtIndex index = NbtIndex.load(NbtIndex.sidecar(file));
+
+        Assertions.assertEquals(level, index.read(file, ""));
+        Assertions.assertEquals(new NbtString("world"), index.read(file, "data.LevelName"));
+        Assertions.assertEquals(new NbtFloat(5), index.read(file, "data.Players[1].Health"));
+        Assertions.assertEquals(new NbtByte((byte) 1), index.read(file, "data.\"odd key\""));
+        Assertions.assertEquals(NbtPath.compile("data.Players[0]").get(level).get(0), index.read(file, "data.Players[0]"));
+        Assertions.assertNull(index.read(file, "data.Missing"));
+
+        NbtIndex.Entry entry = index.lookup("data.Spawn").orElseThrow();
+        Assertions.assertEquals(ElementType.INT_ARRAY, entry.type());
+        Assertions.assertEquals(4 + 3 * 4, entry.length());
+    }
+
+    @Test
+    void testMaxDepth() throws IOException {
+        Path file = write(level());
+        NbtIndex index = NbtIndex.build(file, 2);
+        Assertions.assertTrue(index.lookup("data.Players").isPresent());
+        Assertions.assertTrue(index.lookup("data.Players[0]").isEmpty());
+        Assertions.assertEquals(6, index.size());
+    }
+
+    @Test
+    void testStaleIndex() throws IOException {
+        Path file = write(level());
+        NbtIndex index = NbtIndex.build(file, 3);
+        NbtCompound changed = level();
+        ((NbtCompound) changed.get("data")).put("LevelName", new NbtString("renamed"));
+        write(changed);
+        Assertions.assertThrows(IllegalStateException.class, () -> index.read(file, "data.LevelName"));
+    }
+}
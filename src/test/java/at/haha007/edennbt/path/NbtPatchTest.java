@@ -0,0 +1,77 @@
+package at.haha007.edennbt.path;
+
+import at.haha007.edennbt.element.*;
+import at.haha007.edennbt.parser.IOStreamParser;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Map;
+
+class NbtPatchTest {
+    private static NbtCompound player() {
+        NbtCompound player = new NbtCompound();
+        player.put("Health", new NbtFloat(20));
+        player.put("XpLevel", new NbtInt(3));
+        player.put("Inventory", new NbtList<>(List.of(
+                new NbtCompound(Map.of("Slot", new NbtByte((byte) 0), "id", new NbtString("stone"))),
+                new NbtCompound(Map.of("Slot", new NbtByte((byte) 1), "id", new NbtString("dirt"))),
+                new NbtCompound(Map.of("Slot", new NbtByte((byte) 2), "id", new NbtString("stone")))), NbtCompound.class));
+        player.put("UUID", new NbtIntArray(new int[]{1, 2, 3, 4}));
+        return player;
+    }
+
+    private static byte[] encode(NbtElement element) {
+        return ((ByteArrayOutputStream) new IOStreamParser().write(element)).toByteArray();
+    }
+
+    private static NbtElement decode(byte[] bytes) {
+        return new IOStreamParser().read(new ByteArrayInputStream(bytes));
+    }
+
+    @Test
+    void testSetPutRemove() {
+        NbtCompound expected = player();
+        expected.put("XpLevel", new NbtInt(30));
+        expected.put("Health", new NbtString("full"));
+        ((NbtCompound) ((NbtList<?>) expected.get("Inventory")).get(1)).put("Count", new NbtByte((byte) 64));
+        expected.put("Dimension", new NbtString("minecraft:overworld"));
+        NbtList<?> inventory = (NbtList<?>) expected.get("Inventory");
+        inventory.remove(2);
+        inventory.remove(0);
+        expected.put("UUID", new NbtIntArray(new int[]{1, 2, 4}));
+
+        byte[] patched = new NbtPatch()
+                .set("XpLevel", new NbtInt(30))
+                .set("Health", new NbtString("full"))
+                .put("Inventory[{Slot:1b}]", "Count", new NbtByte((byte) 64))
+                .put("", "Dimension", new NbtString("minecraft:overworld"))
+                .remove("Inventory[{id:stone}]")
+                .remove("UUID[2]")
+                .apply(encode(player()));
+        Assertions.assertEquals(expected, decode(patched));
+    }
+
+    @Test
+    void testUntouchedBytesAreKept() {
+        byte[] original = encode(player());
+        byte[] patched = new NbtPatch().set("XpLevel", new NbtInt(7)).apply(original);
+        Assertions.assertEquals(original.length, patched.length);
+        int offset = NbtPath.compile("XpLevel").locate(original).get(0).payload();
+        for (int i = 0; i < original.length; i++) {
+            if (i < offset || i >= offset + 4)
+                Assertions.assertEquals(original[i], patched[i]);
+        }
+        Assertions.assertEquals(new NbtInt(7), ((NbtCompound) decode(patched)).get("XpLevel"));
+    }
+
+    @Test
+    void testInvalidPatches() {
+        byte[] bytes = encode(player());
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> new NbtPatch().set("UUID[0]", new NbtLong(1)).apply(bytes));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new NbtPatch().remove("").apply(bytes));
+    }
+}
@@ -0,0 +1,112 @@
+package at.haha007.edennbt.path;
+
+import at.haha007.edennbt.element.*;
+import at.haha007.edennbt.parser.IOStreamParser;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.Map;
+
+class NbtPathTest {
+    private static NbtCompound item(byte slot, String id, String name) {
+        NbtCompound item = new NbtCompound();
+        item.put("Slot", new NbtByte(slot));
+        item.put("id", new NbtString(id));
+        item.put("Count", new NbtByte((byte) 1));
+        if (name != null) {
+            NbtCompound display = new NbtCompound(Map.of("Name", new NbtString(name)));
+            item.put("tag", new NbtCompound(Map.of("display", display)));
+        }
+        return item;
+    }
+
+    private static NbtCompound player() {
+        NbtCompound player = new NbtCompound();
+        player.put("Health", new NbtFloat(20));
+        player.put("Pos", new NbtList<>(List.of(new NbtDouble(1), new NbtDouble(64), new NbtDouble(-3)), NbtDouble.class));
+        player.put("Inventory", new NbtList<>(List.of(
+                item((byte) 1, "stone", null),
+                item((byte) 0, "diamond_sword", "Excalibur"),
+                item((byte) 2, "dirt", "Dirt")), NbtCompound.class));
+        player.put("UUID", new NbtIntArray(new int[]{4, 5, 6, 7}));
+        player.put("weird key", new NbtString("quoted"));
+        return player;
+    }
+
+    private static byte[] encode(NbtElement element) {
+        return ((ByteArrayOutputStream) new IOStreamParser().write(element)).toByteArray();
+    }
+
+    private static void assertPath(String path, List<NbtElement> expected) {
+        NbtPath compiled = NbtPath.compile(path);
+        NbtCompound player = player();
+        Assertions.assertEquals(expected, compiled.get(player), path);
+        Assertions.assertEquals(expected, compiled.get(encode(player)), path);
+    }
+
+    @Test
+    void testPaths() {
+        assertPath("Inventory[{Slot:0b}].tag.display.Name", List.of(new NbtString("Excalibur")));
+        assertPath("Inventory[].tag.display.Name", List.of(new NbtString("Excalibur"), new NbtString("Dirt")));
+        assertPath("Inventory[-1].id", List.of(new NbtString("dirt")));
+        assertPath("Inventory[3]", List.of());
+        assertPath("Pos[1]", List.of(new NbtDouble(64)));
+        assertPath("UUID[2]", List.of(new NbtInt(6)));
+        assertPath("\"weird key\"", List.of(new NbtString("quoted")));
+        assertPath("{Health:20.0f}.Health", List.of(new NbtFloat(20)));
+        assertPath("{Health:1.0f}.Health", List.of());
+        assertPath("Inventory[{tag:{display:{}}}].Slot", List.of(new NbtByte((byte) 0), new NbtByte((byte) 2)));
+        assertPath("Missing.key", List.of());
+    }
+
+    @Test
+    void testLocate() {
+        NbtCompound player = player();
+        byte[] bytes = encode(player);
+        NbtLocation location = NbtPath.compile("Health").locate(bytes).get(0);
+        Assertions.assertEquals(ElementType.FLOAT, location.type());
+        Assertions.assertEquals(4, location.length());
+        Assertions.assertTrue(location.isCompoundEntry());
+        Assertions.assertEquals(5, bytes[location.start()]);
+    }
+
+    @Test
+    void testLocateRootAndListElement() {
+        byte[] bytes = encode(player());
+        //the root has a name between start and payload too, but is no compound entry
+        NbtLocation root = NbtPath.compile("").locate(bytes).get(0);
+        Assertions.assertTrue(root.isRoot());
+        Assertions.assertFalse(root.isCompoundEntry());
+        Assertions.assertEquals(bytes.length, root.end());
+
+        NbtLocation inventory = NbtPath.compile("Inventory").locate(bytes).get(0);
+        NbtLocation slot = NbtPath.compile("Inventory[0]").locate(bytes).get(0);
+        Assertions.assertFalse(slot.isRoot());
+        Assertions.assertFalse(slot.isCompoundEntry());
+        //container points at the list length, behind the element type
+        Assertions.assertEquals(inventory.payload() + 1, slot.container());
+    }
+
+    @Test
+    void testInvalidPaths() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> NbtPath.compile("a["));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> NbtPath.compile("a[x]"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> NbtPath.compile("a..b"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> NbtPath.compile("a{b:1"));
+    }
+
+    @Test
+    void testOverflowingLengths() {
+        NbtPath path = NbtPath.compile("b");
+        //an int array of 0x40000001 elements, its byte length overflows int, followed by b:1
+        byte[] ints = {10, 0, 0, 11, 0, 1, 'a', 0x40, 0, 0, 1, 3, 0, 1, 'b', 0, 0, 0, 1, 0};
+        Assertions.assertThrows(IllegalArgumentException.class, () -> path.get(ints));
+        //a list of 0x20000001 longs
+        byte[] list = {10, 0, 0, 9, 0, 1, 'a', 4, 0x20, 0, 0, 1, 3, 0, 1, 'b', 0, 0, 0, 1, 0};
+        Assertions.assertThrows(IllegalArgumentException.class, () -> path.get(list));
+        byte[] negative = {10, 0, 0, 7, 0, 1, 'a', -1, -1, -1, -8, 3, 0, 1, 'b', 0, 0, 0, 1, 0};
+        Assertions.assertThrows(IllegalArgumentException.class, () -> path.get(negative));
+    }
+}